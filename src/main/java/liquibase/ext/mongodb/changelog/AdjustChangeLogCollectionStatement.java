@@ -21,26 +21,49 @@ package liquibase.ext.mongodb.changelog;
  */
 
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.BsonUtils;
+import liquibase.ext.mongodb.statement.ListCollectionNamesStatement;
 import liquibase.ext.mongodb.statement.RunCommandStatement;
 import lombok.Getter;
 import org.bson.Document;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+
+import static java.util.Objects.nonNull;
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toSet;
 
 public class AdjustChangeLogCollectionStatement extends RunCommandStatement {
 
     public static final String UI = "ui_";
+    /**
+     * Prefix of the index covering the projected History Change Log reads sorted by orderExecuted
+     */
+    public static final String CI = "ci_";
     public static String OPTIONS = "{ collMod: \"%s\"," + CreateChangeLogCollectionStatement.VALIDATOR + "}";
 
     @Getter
     private final String collectionName;
 
+    /**
+     * Options of the collection when already known, read before adjusting otherwise
+     */
+    @Getter
+    private final Document currentOptions;
+
     public AdjustChangeLogCollectionStatement(final String collectionName) {
+        this(collectionName, null);
+    }
+
+    public AdjustChangeLogCollectionStatement(final String collectionName, final Document currentOptions) {
         super(String.format(OPTIONS, collectionName));
         this.collectionName = collectionName;
+        this.currentOptions = currentOptions;
     }
 
     @Override
@@ -53,30 +76,90 @@ public class AdjustChangeLogCollectionStatement extends RunCommandStatement {
 
         adjustIndexes(database);
 
-        if (database.getSupportsValidator()) {
+        // collMod takes an exclusive collection lock, skipped when the validator is already current
+        if (database.getSupportsValidator() && !isValidatorCurrent(nonNull(currentOptions) ? currentOptions : findOptions(database))) {
             super.execute(database);
         }
     }
 
+    /**
+     * @param options the options of the collection as returned by listCollections, null when unknown
+     * @return true if the collection already has the validator set by this statement
+     */
+    public boolean isValidatorCurrent(final Document options) {
+        return nonNull(options) && BsonUtils.validatorHash(options).equals(BsonUtils.validatorHash(command));
+    }
+
+    private Document findOptions(final MongoLiquibaseDatabase database) {
+        return ofNullable(database.getMongoDatabase().listCollections()
+                .filter(Filters.eq(ListCollectionNamesStatement.NAME, getCollectionName())).first())
+                .map(c -> c.get(ListCollectionNamesStatement.OPTIONS, Document.class))
+                .orElse(null);
+    }
+
+    /**
+     * Creates the indexes whose keys and uniqueness, compared by {@link BsonUtils#indexHash(Document, boolean)},
+     * are missing from the collection. An index of the same name with an outdated spec is dropped first.
+     */
     private void adjustIndexes(final MongoLiquibaseDatabase database) {
         final MongoCollection<Document> collection = database.getMongoDatabase().getCollection(getCollectionName());
-        List<Document> indexes = new ArrayList<>();
+        final List<Document> indexes = new ArrayList<>();
         collection.listIndexes().into(indexes);
-        // Only default _id_ exists
-        if (indexes.size() == 1) {
-            final Document keys = new Document()
-                    .append(MongoRanChangeSet.Fields.fileName, 1)
-                    .append(MongoRanChangeSet.Fields.author, 1)
-                    .append(MongoRanChangeSet.Fields.changeSetId, 1);
+        final Set<String> currentHashes = indexes.stream()
+                .map(i -> BsonUtils.indexHash(i.get(BsonUtils.INDEX_KEY, Document.class), i.getBoolean(BsonUtils.INDEX_UNIQUE, false)))
+                .collect(toSet());
+        final Set<Object> currentNames = indexes.stream().map(i -> i.get(ListCollectionNamesStatement.NAME)).collect(toSet());
 
+        for (final Document expected : expectedIndexes(database)) {
+            final Document keys = expected.get(BsonUtils.INDEX_KEY, Document.class);
             final IndexOptions options = new IndexOptions()
-                    .name(UI + getCollectionName())
-                    .unique(true);
+                    .name(expected.getString(ListCollectionNamesStatement.NAME))
+                    .unique(expected.getBoolean(BsonUtils.INDEX_UNIQUE));
 
+            if (currentHashes.contains(BsonUtils.indexHash(keys, options.isUnique()))) {
+                continue;
+            }
+            if (currentNames.contains(options.getName())) {
+                collection.dropIndex(options.getName());
+            }
             collection.createIndex(keys, options);
         }
     }
 
+    /**
+     * @return the name, keys and uniqueness of the indexes the History Change Log Collection should have
+     */
+    List<Document> expectedIndexes(final MongoLiquibaseDatabase database) {
+        final List<Document> expected = new ArrayList<>();
+        expected.add(new Document()
+                .append(ListCollectionNamesStatement.NAME, UI + getCollectionName())
+                .append(BsonUtils.INDEX_KEY, new Document()
+                        .append(MongoRanChangeSet.Fields.fileName, 1)
+                        .append(MongoRanChangeSet.Fields.author, 1)
+                        .append(MongoRanChangeSet.Fields.changeSetId, 1))
+                .append(BsonUtils.INDEX_UNIQUE, true));
+
+        // Eleven keys, only worth maintaining when the History is read projected
+        if (database.getProjectedHistory()) {
+            expected.add(new Document()
+                    .append(ListCollectionNamesStatement.NAME, CI + getCollectionName())
+                    .append(BsonUtils.INDEX_KEY, new Document()
+                            .append(MongoRanChangeSet.Fields.orderExecuted, 1)
+                            .append(MongoRanChangeSet.Fields.fileName, 1)
+                            .append(MongoRanChangeSet.Fields.changeSetId, 1)
+                            .append(MongoRanChangeSet.Fields.author, 1)
+                            .append(MongoRanChangeSet.Fields.md5sum, 1)
+                            .append(MongoRanChangeSet.Fields.dateExecuted, 1)
+                            .append(MongoRanChangeSet.Fields.tag, 1)
+                            .append(MongoRanChangeSet.Fields.execType, 1)
+                            .append(MongoRanChangeSet.Fields.contexts, 1)
+                            .append(MongoRanChangeSet.Fields.labels, 1)
+                            .append(MongoRanChangeSet.Fields.deploymentId, 1))
+                    .append(BsonUtils.INDEX_UNIQUE, false));
+        }
+        return expected;
+    }
+
     @Override
     public Document run(final MongoLiquibaseDatabase database) {
         return database.getMongoDatabase().runCommand(command);
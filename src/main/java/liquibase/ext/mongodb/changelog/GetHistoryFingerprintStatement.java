@@ -0,0 +1,107 @@
+package liquibase.ext.mongodb.changelog;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.AbstractCollectionStatement;
+import liquibase.nosql.statement.NoSqlQueryForObjectStatement;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.bson.Document;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static java.util.Optional.ofNullable;
+import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
+
+/**
+ * Computes the {@link HistoryFingerprint} of a History Change Log with a single $group aggregation,
+ * so a loaded history can be checked without reading the entries again.
+ */
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class GetHistoryFingerprintStatement extends AbstractCollectionStatement
+        implements NoSqlQueryForObjectStatement<MongoLiquibaseDatabase> {
+
+    public static final String COMMAND_NAME = "historyFingerprint";
+
+    public GetHistoryFingerprintStatement(final String collectionName) {
+        super(collectionName);
+    }
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public String toJs() {
+        return
+                SHELL_DB_PREFIX +
+                        getCollectionName() +
+                        ".aggregate(" +
+                        Collections.singletonList(group()) +
+                        ");";
+    }
+
+    @Override
+    public <T> T queryForObject(final MongoLiquibaseDatabase database, final Class<T> requiredType) {
+        final Document result = database.getMongoDatabase(getCollectionName()).getCollection(getCollectionName())
+                .aggregate(Collections.singletonList(group())).first();
+        if (result == null) {
+            return requiredType.cast(new HistoryFingerprint(0L, null, null, 0L, 0L));
+        }
+        return requiredType.cast(new HistoryFingerprint(
+                HistoryFingerprint.toLong(result.get("count")),
+                HistoryFingerprint.toLong(result.get("maxOrderExecuted")),
+                HistoryFingerprint.toLong(result.get("maxDateExecuted")),
+                HistoryFingerprint.toLong(result.get("tagged")),
+                ofNullable(HistoryFingerprint.toLong(result.get("entriesHash"))).orElse(0L)));
+    }
+
+    static Document group() {
+        final Document entry = new Document("$concat", Arrays.asList(
+                ifNull(MongoRanChangeSet.Fields.md5sum), "|", ifNull(MongoRanChangeSet.Fields.execType), "|", ifNull(MongoRanChangeSet.Fields.tag)));
+        // Same polynomial hash as HistoryFingerprint.entryHash, one character at a time
+        final Document entryHash = new Document("$let", new Document("vars", new Document("entry", entry))
+                .append("in", new Document("$reduce", new Document("input",
+                        new Document("$range", Arrays.asList(0, new Document("$strLenCP", "$$entry"))))
+                        .append("initialValue", 0L)
+                        .append("in", new Document("$mod", Arrays.asList(new Document("$add", Arrays.asList(
+                                new Document("$multiply", Arrays.asList("$$value", 31L)),
+                                new Document("$indexOfCP", Arrays.asList(HistoryFingerprint.CHARACTERS,
+                                        new Document("$substrCP", Arrays.asList("$$entry", "$$this", 1)))),
+                                2L)), HistoryFingerprint.MODULUS))))));
+
+        return new Document("$group", new Document("_id", null)
+                .append("count", new Document("$sum", 1L))
+                .append("maxOrderExecuted", new Document("$max", "$" + MongoRanChangeSet.Fields.orderExecuted))
+                .append("maxDateExecuted", new Document("$max", "$" + MongoRanChangeSet.Fields.dateExecuted))
+                .append("tagged", new Document("$sum", new Document("$cond",
+                        Arrays.asList(new Document("$gt", Arrays.asList("$" + MongoRanChangeSet.Fields.tag, null)), 1L, 0L))))
+                .append("entriesHash", new Document("$sum", entryHash)));
+    }
+
+    private static Document ifNull(final String field) {
+        return new Document("$ifNull", Arrays.asList("$" + field, ""));
+    }
+}
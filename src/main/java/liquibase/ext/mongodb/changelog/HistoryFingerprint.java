@@ -0,0 +1,112 @@
+package liquibase.ext.mongodb.changelog;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import liquibase.changelog.RanChangeSet;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Objects;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Summary of a History Change Log telling whether a loaded history is still the stored one.
+ * Computed on the server by {@link GetHistoryFingerprintStatement} and on the client by {@link #of(Collection)}.
+ * Besides added and removed entries, it changes when an entry is re-run, tagged, or has its checksum or execType updated.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@AllArgsConstructor
+public class HistoryFingerprint {
+
+    /**
+     * Characters weighted by {@link #entryHash(String, String, String)}, as there is no character code operator on the server
+     */
+    static final String CHARACTERS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ:_-.|";
+
+    static final long MODULUS = 1_000_000_007L;
+
+    private final long count;
+
+    private final Long maxOrderExecuted;
+
+    private final Long maxDateExecuted;
+
+    private final long tagged;
+
+    /**
+     * Sum of the {@link #entryHash(String, String, String)} of the entries
+     */
+    private final long entriesHash;
+
+    /**
+     * @param ranChangeSets the loaded history
+     * @return the fingerprint the stored history has when it holds the same entries
+     */
+    public static HistoryFingerprint of(final Collection<? extends RanChangeSet> ranChangeSets) {
+        Long maxOrderExecuted = null;
+        Long maxDateExecuted = null;
+        long tagged = 0L;
+        long entriesHash = 0L;
+        for (final RanChangeSet ranChangeSet : ranChangeSets) {
+            if (ranChangeSet.getOrderExecuted() != null) {
+                maxOrderExecuted = Math.max(ofNullable(maxOrderExecuted).orElse(Long.MIN_VALUE), ranChangeSet.getOrderExecuted());
+            }
+            if (ranChangeSet.getDateExecuted() != null) {
+                maxDateExecuted = Math.max(ofNullable(maxDateExecuted).orElse(Long.MIN_VALUE), ranChangeSet.getDateExecuted().getTime());
+            }
+            if (ranChangeSet.getTag() != null) {
+                tagged++;
+            }
+            entriesHash += entryHash(
+                    ofNullable(ranChangeSet.getLastCheckSum()).map(Objects::toString).orElse(null),
+                    ofNullable(ranChangeSet.getExecType()).map(e -> e.value).orElse(null),
+                    ranChangeSet.getTag());
+        }
+        return new HistoryFingerprint(ranChangeSets.size(), maxOrderExecuted, maxDateExecuted, tagged, entriesHash);
+    }
+
+    /**
+     * Polynomial hash of "md5sum|execType|tag", the same as computed by {@link GetHistoryFingerprintStatement}
+     */
+    static long entryHash(final String md5sum, final String execType, final String tag) {
+        final String entry = ofNullable(md5sum).orElse("") + "|" + ofNullable(execType).orElse("") + "|" + ofNullable(tag).orElse("");
+        long hash = 0L;
+        for (final int codePoint : entry.codePoints().toArray()) {
+            // Unknown characters weigh 1, as -1 + 2 on the server
+            hash = (hash * 31L + CHARACTERS.indexOf(codePoint) + 2L) % MODULUS;
+        }
+        return hash;
+    }
+
+    static Long toLong(final Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+}
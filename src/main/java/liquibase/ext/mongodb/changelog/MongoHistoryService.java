@@ -21,25 +21,44 @@ package liquibase.ext.mongodb.changelog;
  */
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateManyModel;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import liquibase.ChecksumVersion;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
 import liquibase.Scope;
 import liquibase.change.Change;
+import liquibase.change.CheckSum;
 import liquibase.change.core.TagDatabaseChange;
 import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
 import liquibase.changelog.RanChangeSet;
 import liquibase.database.Database;
 import liquibase.exception.DatabaseException;
+import liquibase.exception.LockException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.ext.mongodb.configuration.MongoConfiguration;
+import liquibase.ext.mongodb.database.CommandMetrics;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.lockservice.MongoLockService;
+import liquibase.ext.mongodb.statement.BulkWriteStatement;
 import liquibase.ext.mongodb.statement.CountCollectionByNameStatement;
 import liquibase.ext.mongodb.statement.CountDocumentsInCollectionStatement;
 import liquibase.ext.mongodb.statement.DeleteManyStatement;
 import liquibase.ext.mongodb.statement.DropCollectionStatement;
+import liquibase.ext.mongodb.statement.FindAllAsStatement;
 import liquibase.ext.mongodb.statement.FindAllStatement;
 import liquibase.ext.mongodb.statement.FindOneAndUpdateStatement;
 import liquibase.ext.mongodb.statement.InsertOneStatement;
 import liquibase.ext.mongodb.statement.UpdateManyStatement;
+import liquibase.lockservice.LockService;
+import liquibase.lockservice.LockServiceFactory;
 import liquibase.logging.Logger;
 import liquibase.nosql.changelog.AbstractNoSqlHistoryService;
 import liquibase.util.LiquibaseUtil;
@@ -48,20 +67,104 @@ import lombok.Getter;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
-
+import static java.util.Optional.ofNullable;
+
+/**
+ * History Change Log backed by a MongoDB collection.
+ * <p>
+ * By default every changeSet is recorded with its own round trip before the next one runs.
+ * When {@link MongoLiquibaseDatabase#getHistoryWriteBehind()} is enabled the entries are buffered and stored in one
+ * unordered bulkWrite when {@link MongoConfiguration#HISTORY_WRITE_BEHIND_BATCH_SIZE} entries are pending, when the
+ * oldest pending entry is older than {@link MongoConfiguration#HISTORY_WRITE_BEHIND_MAX_AGE},
+ * before any other History read or write and before the changelog lock is released.
+ * Both thresholds are checked as a changeSet is recorded; nothing is flushed in the background.
+ * Write-behind trades durability for throughput: a process killed between a flush and the next one leaves the
+ * applied changeSets unrecorded, so they will be executed again by the next run.
+ */
 public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquibaseDatabase> {
 
+    public static final String SEQUENCE_SUFFIX = "SEQUENCE";
+
+    public static final String ARCHIVE_SUFFIX = "ARCHIVE";
+
+    /**
+     * File name and author of the checkpoint entries written by {@link #baseline(String)}, the tag being the id
+     */
+    public static final String BASELINE_FILE_NAME = "liquibase-baseline";
+    public static final String BASELINE_AUTHOR = "liquibase";
+
+    /**
+     * Fields needed to decide what to run, covered by {@link AdjustChangeLogCollectionStatement#CI} index
+     */
+    public static final Bson HISTORY_PROJECTION = Projections.fields(Projections.include(
+            MongoRanChangeSet.Fields.fileName, MongoRanChangeSet.Fields.changeSetId, MongoRanChangeSet.Fields.author,
+            MongoRanChangeSet.Fields.md5sum, MongoRanChangeSet.Fields.dateExecuted, MongoRanChangeSet.Fields.tag,
+            MongoRanChangeSet.Fields.execType, MongoRanChangeSet.Fields.contexts, MongoRanChangeSet.Fields.labels,
+            MongoRanChangeSet.Fields.deploymentId, MongoRanChangeSet.Fields.orderExecuted), Projections.excludeId());
+
+    /**
+     * Fields left out by {@link #HISTORY_PROJECTION}, read on demand
+     */
+    public static final Bson DETAILS_PROJECTION = Projections.fields(Projections.include(
+            MongoRanChangeSet.Fields.fileName, MongoRanChangeSet.Fields.changeSetId, MongoRanChangeSet.Fields.author,
+            MongoRanChangeSet.Fields.description, MongoRanChangeSet.Fields.comments, MongoRanChangeSet.Fields.liquibase),
+            Projections.excludeId());
+
+    /**
+     * Order in which the entries folded by a baseline are hashed
+     */
+    public static final Bson ARCHIVE_SORT = Sorts.ascending(MongoRanChangeSet.Fields.orderExecuted, "_id");
+
     private final Logger log = Scope.getCurrentScope().getLog(getClass());
 
     @Getter
     private final MongoRanChangeSetToDocumentConverter converter;
 
+    /**
+     * History entries recorded in write-behind mode which are not yet stored
+     */
+    private final List<WriteModel<Document>> pendingChangeSetRuns = new ArrayList<>();
+
+    private long pendingSince;
+
+    /**
+     * Block of orderExecuted values reserved from the counter document: (lastSequenceValue, lastReservedSequenceValue]
+     */
+    private Integer lastSequenceValue;
+
+    private Integer lastReservedSequenceValue;
+
+    /**
+     * Whether the counter already caught up with the history collection in this run
+     */
+    private boolean sequenceCaughtUp;
+
+    /**
+     * ChangeSets of the changelog being run, limiting the history read when serverSidePendingChangeSets is enabled
+     */
+    @Getter
+    private Collection<ChangeSet> expectedChangeSets;
+
     public MongoHistoryService() {
         super();
         this.converter = new MongoRanChangeSetToDocumentConverter();
@@ -92,8 +195,20 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
         return false;
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        sequenceCaughtUp = false;
+        if (nonNull(getDatabase())) {
+            getNoSqlDatabase().getTrackingCollections().reset();
+        }
+    }
+
     @Override
     protected Boolean existsRepository() throws DatabaseException {
+        if (getNoSqlDatabase().getConsolidatedBootstrap()) {
+            return getNoSqlDatabase().getTrackingCollections().exists(getExecutor(), getDatabaseChangeLogTableName());
+        }
         return getExecutor().queryForLong(
                 new CountCollectionByNameStatement(getDatabaseChangeLogTableName())) == 1L;
     }
@@ -103,6 +218,7 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
         final CreateChangeLogCollectionStatement createChangeLogCollectionStatement =
                 new CreateChangeLogCollectionStatement(getDatabaseChangeLogTableName());
         getExecutor().execute(createChangeLogCollectionStatement);
+        getNoSqlDatabase().getTrackingCollections().created(getDatabaseChangeLogTableName());
     }
 
     @Override
@@ -114,7 +230,11 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
             this.getLogger().info("Adjusted database history Collection with name: "
                     + getDatabase().getConnection().getCatalog() + "." + getDatabaseChangeLogTableName());
 
-            getExecutor().execute(new AdjustChangeLogCollectionStatement(getDatabaseChangeLogTableName()));
+            // Options already discovered by the bootstrap are not read again
+            final Document currentOptions = getNoSqlDatabase().getConsolidatedBootstrap()
+                    ? getNoSqlDatabase().getTrackingCollections().getOptions(getExecutor(), getDatabaseChangeLogTableName())
+                    : null;
+            getExecutor().execute(new AdjustChangeLogCollectionStatement(getDatabaseChangeLogTableName(), currentOptions));
 
         } else {
             this.getLogger().info("Skipped Adjusting database history Collection with name: "
@@ -126,28 +246,464 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
     protected void dropRepository() throws DatabaseException {
         getExecutor().execute(
                 new DropCollectionStatement(getDatabaseChangeLogTableName()));
+        getNoSqlDatabase().getTrackingCollections().dropped(getDatabaseChangeLogTableName());
+        if (getExecutor().queryForLong(new CountCollectionByNameStatement(getChangeLogArchiveTableName())) == 1L) {
+            getExecutor().execute(new DropCollectionStatement(getChangeLogArchiveTableName()));
+        }
+        if (getNoSqlDatabase().getChangeSetSequenceCounter()
+                && getExecutor().queryForLong(new CountCollectionByNameStatement(getChangeSetSequenceTableName())) == 1L) {
+            getExecutor().execute(new DropCollectionStatement(getChangeSetSequenceTableName()));
+        }
+        lastSequenceValue = null;
+        lastReservedSequenceValue = null;
+        sequenceCaughtUp = false;
+    }
+
+    public String getChangeSetSequenceTableName() {
+        return getDatabaseChangeLogTableName() + SEQUENCE_SUFFIX;
+    }
+
+    public String getChangeLogArchiveTableName() {
+        return getDatabaseChangeLogTableName() + ARCHIVE_SUFFIX;
+    }
+
+    /**
+     * Folds the History Change Log up to the last entry tagged with the given tag into a single checkpoint entry,
+     * so the History Change Log only holds the checkpoint and the entries recorded after it.
+     * <p>
+     * The folded entries are copied to the archive collection, marked with the tag, then the checkpoint is stored
+     * with a rolling SHA-256 of the archived (fileName, id, author, md5sum) in orderExecuted order and their count,
+     * then the folded entries are removed from the History. The checkpoint keeps the tag and the orderExecuted
+     * of the last folded entry.
+     * <p>
+     * The steps are not atomic but each one is idempotent: an interrupted baseline is completed by running it again.
+     * Until its checkpoint is stored the archived copies are ignored, the entries being still in the History.
+     * <p>
+     * Folded changeSets are still reported as ran, read from the archive and checked against their checkpoint.
+     * Rolling back past the baseline is not possible.
+     *
+     * @param tag the tag closing the baseline
+     * @throws DatabaseException if the tag does not exist or in case of a failure
+     */
+    public void baseline(final String tag) throws DatabaseException {
+        checkNotReadOnly("baseline");
+        flushHistory();
+
+        final List<Integer> tagged = new ArrayList<>();
+        getExecutor().queryForEach(new FindAllAsStatement<>(getDatabaseChangeLogTableName(), MongoRanChangeSet.class,
+                        Filters.eq(MongoRanChangeSet.Fields.tag, tag), Sorts.descending(MongoRanChangeSet.Fields.orderExecuted),
+                        HISTORY_PROJECTION), MongoRanChangeSet.class,
+                r -> tagged.add(r.getOrderExecuted()));
+        if (tagged.isEmpty() || isNull(tagged.get(0))) {
+            throw new DatabaseException("Cannot baseline History Change Log, tag not found: " + tag);
+        }
+        final Integer baselineOrder = tagged.get(0);
+        final Bson folded = Filters.and(Filters.lte(MongoRanChangeSet.Fields.orderExecuted, baselineOrder),
+                Filters.nor(checkpointFilter(tag)));
+
+        final int batchSize = Math.max(1, MongoConfiguration.QUERY_BATCH_SIZE.getCurrentValue());
+        final List<WriteModel<Document>> archived = new ArrayList<>();
+        getExecutor().queryForEach(new FindAllStatement(getDatabaseChangeLogTableName(), folded, new Document()),
+                Document.class, d -> {
+                    // Upsert by _id so an interrupted baseline can be run again
+                    archived.add(new ReplaceOneModel<>(Filters.eq("_id", d.get("_id")),
+                            d.append(MongoRanChangeSet.Fields.baselineTag, tag), new ReplaceOptions().upsert(true)));
+                    if (archived.size() >= batchSize) {
+                        archive(archived);
+                    }
+                });
+        archive(archived);
+
+        // Computed over the archive, which also holds the entries removed by an interrupted run
+        final BaselineDigest digest = new BaselineDigest();
+        getExecutor().queryForEach(new FindAllStatement(getChangeLogArchiveTableName(),
+                Filters.eq(MongoRanChangeSet.Fields.baselineTag, tag), ARCHIVE_SORT), Document.class, digest::update);
+
+        final Document checkpoint = getConverter().toDocument(new MongoRanChangeSet(
+                BASELINE_FILE_NAME
+                , tag
+                , BASELINE_AUTHOR
+                , null
+                , new Date(getClock().instant().toEpochMilli())
+                , tag
+                , ChangeSet.ExecType.EXECUTED
+                , "Baseline of " + digest.getCount() + " changeSets"
+                , null
+                , null
+                , null
+                , null
+                , getDeploymentId()
+                , baselineOrder
+                , LiquibaseUtil.getBuildVersion()))
+                .append(MongoRanChangeSet.Fields.baselineHash, digest.getHash())
+                .append(MongoRanChangeSet.Fields.baselineCount, digest.getCount());
+        getExecutor().update(new BulkWriteStatement(getDatabaseChangeLogTableName(), Collections.singletonList(
+                new ReplaceOneModel<>(checkpointFilter(tag), checkpoint, new ReplaceOptions().upsert(true)))));
+
+        getExecutor().update(new DeleteManyStatement(getDatabaseChangeLogTableName(), folded));
+
+        getLogger().info(String.format("Baselined %d History Change Log entries up to tag %s into %s, hash %s"
+                , digest.getCount(), tag, getChangeLogArchiveTableName(), digest.getHash()));
+        reset();
+    }
+
+    private static Bson checkpointFilter(final String tag) {
+        return Filters.and(
+                Filters.eq(MongoRanChangeSet.Fields.fileName, BASELINE_FILE_NAME),
+                Filters.eq(MongoRanChangeSet.Fields.author, BASELINE_AUTHOR),
+                Filters.eq(MongoRanChangeSet.Fields.changeSetId, tag));
+    }
+
+    private static boolean isCheckpoint(final RanChangeSet ranChangeSet) {
+        return BASELINE_FILE_NAME.equals(ranChangeSet.getChangeLog()) && BASELINE_AUTHOR.equals(ranChangeSet.getAuthor());
+    }
+
+    /**
+     * Reads the entries folded by the baselines having a checkpoint.
+     *
+     * @param filter      entries to read
+     * @param checkpoints checkpoint documents by tag
+     * @param verify      true to check each baseline against its checkpoint, only meaningful when reading them whole
+     * @throws DatabaseException if the archive does not match a checkpoint
+     */
+    private List<RanChangeSet> queryArchivedRanChangeSets(final Bson filter, final Map<String, Document> checkpoints,
+                                                          final boolean verify) throws DatabaseException {
+        final Map<String, BaselineDigest> digests = new HashMap<>();
+        final List<RanChangeSet> archived = new ArrayList<>();
+        getExecutor().queryForEach(new FindAllStatement(getChangeLogArchiveTableName(), filter, ARCHIVE_SORT), Document.class, d -> {
+            final String tag = d.getString(MongoRanChangeSet.Fields.baselineTag);
+            if (!checkpoints.containsKey(tag)) {
+                // Interrupted baseline, the entries are still in the History
+                return;
+            }
+            digests.computeIfAbsent(tag, t -> new BaselineDigest()).update(d);
+            final MongoRanChangeSet ranChangeSet = getConverter().fromDocument(d);
+            ranChangeSet.setArchived(true);
+            archived.add(ranChangeSet);
+        });
+
+        if (verify) {
+            for (final Map.Entry<String, Document> checkpoint : checkpoints.entrySet()) {
+                final BaselineDigest digest = digests.getOrDefault(checkpoint.getKey(), new BaselineDigest());
+                final Number count = checkpoint.getValue().get(MongoRanChangeSet.Fields.baselineCount, Number.class);
+                final String hash = checkpoint.getValue().getString(MongoRanChangeSet.Fields.baselineHash);
+                if (isNull(count) || count.longValue() != digest.getCount() || !digest.getHash().equals(hash)) {
+                    throw new DatabaseException(String.format("Baseline %s does not match %s: %d entries with hash %s " +
+                                    "archived, %s entries with hash %s recorded"
+                            , checkpoint.getKey(), getChangeLogArchiveTableName(), digest.getCount(), digest.getHash(), count, hash));
+                }
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Checkpoints of the completed baselines, the older ones being folded into the archive by the later ones
+     */
+    private Map<String, Document> queryBaselineCheckpoints() throws DatabaseException {
+        final Map<String, Document> checkpoints = new HashMap<>();
+        final Bson filter = Filters.and(
+                Filters.eq(MongoRanChangeSet.Fields.fileName, BASELINE_FILE_NAME),
+                Filters.eq(MongoRanChangeSet.Fields.author, BASELINE_AUTHOR));
+        for (final String collectionName : Arrays.asList(getChangeLogArchiveTableName(), getDatabaseChangeLogTableName())) {
+            getExecutor().queryForEach(new FindAllStatement(collectionName, filter, new Document()), Document.class,
+                    d -> checkpoints.put(d.getString(MongoRanChangeSet.Fields.changeSetId), d));
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Rolling SHA-256 of the entries folded by a baseline, fed in {@link #ARCHIVE_SORT} order
+     */
+    private static final class BaselineDigest {
+
+        private final MessageDigest digest;
+
+        @Getter
+        private long count;
+
+        private BaselineDigest() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (final NoSuchAlgorithmException e) {
+                throw new UnexpectedLiquibaseException(e);
+            }
+        }
+
+        private void update(final Document entry) {
+            digest.update((entry.getString(MongoRanChangeSet.Fields.fileName) + ":" + entry.getString(MongoRanChangeSet.Fields.changeSetId)
+                    + ":" + entry.getString(MongoRanChangeSet.Fields.author) + ":" + entry.getString(MongoRanChangeSet.Fields.md5sum)
+                    + ":" + ofNullable(entry.getString(MongoRanChangeSet.Fields.baselineHash)).orElse("") + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            count++;
+        }
+
+        private String getHash() {
+            try {
+                // Cloned so the hash can be read while entries are still added
+                return String.format("%064x", new BigInteger(1, ((MessageDigest) digest.clone()).digest()));
+            } catch (final CloneNotSupportedException e) {
+                throw new UnexpectedLiquibaseException(e);
+            }
+        }
+    }
+
+    /**
+     * Refuses to record a changeSet under the shared Lock or once the Lock lease held by this instance was lost
+     */
+    private void checkLock() throws DatabaseException {
+        if (!getNoSqlDatabase().getLockLease() && !getNoSqlDatabase().getSharedLock()) {
+            return;
+        }
+        final LockService lockService = LockServiceFactory.getInstance().getLockService(getDatabase());
+        if (lockService instanceof MongoLockService) {
+            try {
+                ((MongoLockService) lockService).checkWritable();
+            } catch (final LockException e) {
+                throw new DatabaseException(e);
+            }
+        }
+    }
+
+    private void archive(final List<WriteModel<Document>> archived) {
+        if (archived.isEmpty()) {
+            return;
+        }
+        try {
+            getExecutor().update(new BulkWriteStatement(getChangeLogArchiveTableName(), new ArrayList<>(archived)));
+        } catch (final DatabaseException e) {
+            throw new UnexpectedLiquibaseException(e);
+        }
+        archived.clear();
+    }
+
+    /**
+     * With {@link MongoLiquibaseDatabase#getChangeSetSequenceCounter()} enabled the values are taken from blocks
+     * reserved on the server, so concurrent JVMs never hand out the same orderExecuted. The counter catches up with
+     * the max orderExecuted of the history once per run, later reservations only increment it. Every JVM sharing
+     * the history should therefore use the counter. Otherwise the max orderExecuted is read once and incremented locally.
+     * With a Lock scope the counter is always used, one value at a time: blocks held by concurrent scopes
+     * would otherwise interleave their orderExecuted values. Each changeSet then costs one findAndModify on the
+     * counter document by _id, never a history scan.
+     */
+    @Override
+    public int getNextSequenceValue() throws DatabaseException {
+        if (!getNoSqlDatabase().getChangeSetSequenceCounter() || getDatabase().getConnection() == null) {
+            return super.getNextSequenceValue();
+        }
+
+        if (lastSequenceValue == null || lastSequenceValue >= lastReservedSequenceValue) {
+            final int blockSize = getNoSqlDatabase().getLockScope() != null
+                    ? 1 : Math.max(1, MongoConfiguration.CHANGESET_SEQUENCE_BLOCK_SIZE.getCurrentValue());
+            lastReservedSequenceValue = (int) getExecutor().queryForLong(new ReserveChangeSetSequenceStatement(
+                    getChangeSetSequenceTableName(), getDatabaseChangeLogTableName(), blockSize, !sequenceCaughtUp));
+            sequenceCaughtUp = true;
+            lastSequenceValue = lastReservedSequenceValue - blockSize;
+        }
+
+        lastSequenceValue++;
+        return lastSequenceValue;
+    }
+
+    /**
+     * Registers the changeSets of the changelog about to be run. With serverSidePendingChangeSets enabled the history
+     * is then read only for these changeSets, in chunks, instead of downloading the whole History Change Log.
+     * Only suited to commands working on the changelog (update, status, validate): entries of changeSets
+     * missing from the changelog are not read, so they are neither reported nor taken into account by rollbacks.
+     * Called with the changelog of the run by {@link #upgradeChecksums(DatabaseChangeLog, Contexts, LabelExpression)}.
+     *
+     * @param expectedChangeSets the changelog changeSets or null to read the whole history again
+     */
+    public void setExpectedChangeSets(final Collection<ChangeSet> expectedChangeSets) {
+        this.expectedChangeSets = expectedChangeSets;
+        reset();
+    }
+
+    /**
+     * Invoked by Liquibase with the changelog being run before its changeSets are matched against the History,
+     * which is the only point where the changelog is known to the History service.
+     */
+    @Override
+    public void upgradeChecksums(final DatabaseChangeLog databaseChangeLog, final Contexts contexts,
+                                 final LabelExpression labels) throws DatabaseException {
+        if (nonNull(databaseChangeLog) && getNoSqlDatabase().getServerSidePendingChangeSets()) {
+            setExpectedChangeSets(databaseChangeLog.getChangeSets());
+        }
+        super.upgradeChecksums(databaseChangeLog, contexts, labels);
+    }
+
+    private boolean isServerSidePendingChangeSets() {
+        return nonNull(expectedChangeSets) && getNoSqlDatabase().getServerSidePendingChangeSets();
     }
 
     @Override
     protected List<RanChangeSet> queryRanChangeSets() throws DatabaseException {
+        if (isServerSidePendingChangeSets()) {
+            return queryExpectedRanChangeSets();
+        }
+        final List<RanChangeSet> ranChangeSets = queryRanChangeSets(new Document());
+        if (ranChangeSets.stream().anyMatch(MongoHistoryService::isCheckpoint)) {
+            // Entries folded by a baseline
+            ranChangeSets.addAll(queryArchivedRanChangeSets(new Document(), queryBaselineCheckpoints(), true));
+            ranChangeSets.sort(Comparator.comparing(RanChangeSet::getOrderExecuted, Comparator.nullsFirst(Comparator.naturalOrder())));
+        }
+        return ranChangeSets;
+    }
+
+    /**
+     * Matches on (fileName, author, id), the prefix of the {@link AdjustChangeLogCollectionStatement#UI} index,
+     * one $in of ids per changelog file and author.
+     * The match is exact: entries recorded under another path or case of the same changeSet, which
+     * {@link RanChangeSet#isSameAs(ChangeSet)} would accept, are not read.
+     * Checksums are not part of the match, otherwise modified changeSets would be reported as not ran.
+     */
+    private List<RanChangeSet> queryExpectedRanChangeSets() throws DatabaseException {
+        final List<ChangeSet> changeSets = new ArrayList<>(expectedChangeSets);
+        final int chunkSize = Math.max(1, MongoConfiguration.SERVER_SIDE_PENDING_CHANGESETS_CHUNK_SIZE.getCurrentValue());
+
+        final Map<String, Document> checkpoints =
+                getExecutor().queryForLong(new CountCollectionByNameStatement(getChangeLogArchiveTableName())) == 1L
+                        ? queryBaselineCheckpoints() : Collections.emptyMap();
+
+        final List<RanChangeSet> ranChangeSets = new ArrayList<>();
+        for (int from = 0; from < changeSets.size(); from += chunkSize) {
+            final Bson filter = expectedChangeSetsFilter(changeSets.subList(from, Math.min(changeSets.size(), from + chunkSize)));
+            ranChangeSets.addAll(queryRanChangeSets(filter));
+            if (!checkpoints.isEmpty()) {
+                // Entries folded by a baseline
+                ranChangeSets.addAll(queryArchivedRanChangeSets(filter, checkpoints, false));
+            }
+        }
+        ranChangeSets.sort(Comparator.comparing(RanChangeSet::getOrderExecuted, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        getLogger().fine(String.format("Read %d History Change Log entries for %d changelog changeSets"
+                , ranChangeSets.size(), expectedChangeSets.size()));
+        return ranChangeSets;
+    }
+
+    static Bson expectedChangeSetsFilter(final List<ChangeSet> changeSets) {
+        final Map<String, Map<String, Set<String>>> ids = new LinkedHashMap<>();
+        for (final ChangeSet changeSet : changeSets) {
+            ids.computeIfAbsent(changeSet.getFilePath(), f -> new LinkedHashMap<>())
+                    .computeIfAbsent(changeSet.getAuthor(), a -> new LinkedHashSet<>())
+                    .add(changeSet.getId());
+        }
+
+        final List<Bson> filters = new ArrayList<>();
+        ids.forEach((fileName, byAuthor) -> byAuthor.forEach((author, changeSetIds) -> filters.add(Filters.and(
+                Filters.eq(MongoRanChangeSet.Fields.fileName, fileName),
+                Filters.eq(MongoRanChangeSet.Fields.author, author),
+                Filters.in(MongoRanChangeSet.Fields.changeSetId, changeSetIds)))));
+        return filters.size() == 1 ? filters.get(0) : Filters.or(filters);
+    }
+
+    @Override
+    protected List<RanChangeSet> queryRanChangeSetsAfter(final Integer orderExecuted) throws DatabaseException {
+        return queryRanChangeSets(Filters.gt(MongoRanChangeSet.Fields.orderExecuted, orderExecuted));
+    }
+
+    private List<RanChangeSet> queryRanChangeSets(final Bson filter) throws DatabaseException {
 
-        final Bson filter = new Document();
+        flushHistory();
         final Bson sort = Sorts.ascending(MongoRanChangeSet.Fields.orderExecuted);
 
-        return getExecutor()
-                .queryForList(new FindAllStatement(getDatabaseChangeLogTableName(), filter, sort), Document.class)
-                .stream().map(Document.class::cast).map(getConverter()::fromDocument).collect(Collectors.toList());
+        // Entries are decoded by MongoRanChangeSetCodec as the cursor goes, only one batch is held at a time
+        final List<RanChangeSet> ranChangeSets = new ArrayList<>();
+        final Bson projection = getNoSqlDatabase().getProjectedHistory() ? HISTORY_PROJECTION : null;
+        getExecutor().queryForEach(new FindAllAsStatement<>(getDatabaseChangeLogTableName(), MongoRanChangeSet.class,
+                filter, sort, projection), MongoRanChangeSet.class, ranChangeSets::add);
+        return ranChangeSets;
+    }
+
+    /**
+     * Reads, in a single query, the description, comments and liquibase version left out of the entries read when
+     * {@link MongoLiquibaseDatabase#getProjectedHistory()} is enabled.
+     *
+     * @param ranChangeSets entries returned by {@link #getRanChangeSets()}
+     * @throws DatabaseException if the History Change Log can not be read
+     */
+    public void loadHistoryDetails(final Collection<? extends RanChangeSet> ranChangeSets) throws DatabaseException {
+        final Map<String, MongoRanChangeSet> projected = new HashMap<>();
+        for (final RanChangeSet ranChangeSet : ranChangeSets) {
+            if (ranChangeSet instanceof MongoRanChangeSet) {
+                projected.put(detailsKey(ranChangeSet.getChangeLog(), ranChangeSet.getId(), ranChangeSet.getAuthor()),
+                        (MongoRanChangeSet) ranChangeSet);
+            }
+        }
+        if (projected.isEmpty()) {
+            return;
+        }
+
+        flushHistory();
+        getExecutor().queryForEach(new FindAllStatement(getDatabaseChangeLogTableName(), new Document(), new Document(),
+                        DETAILS_PROJECTION), Document.class,
+                d -> ofNullable(projected.get(detailsKey(d.getString(MongoRanChangeSet.Fields.fileName),
+                        d.getString(MongoRanChangeSet.Fields.changeSetId),
+                        d.getString(MongoRanChangeSet.Fields.author)))).ifPresent(r -> r.setDetails(d)));
+    }
+
+    private static String detailsKey(final String fileName, final String id, final String author) {
+        return fileName + "::" + id + "::" + author;
+    }
+
+    @Override
+    protected boolean isIncrementalHistoryCacheEnabled() {
+        // A partial history can not be checked against the stored entries count
+        return getNoSqlDatabase().getIncrementalHistoryCache() && !isServerSidePendingChangeSets();
+    }
+
+    @Override
+    protected boolean matchesStoredHistory(final List<RanChangeSet> loaded) throws DatabaseException {
+        flushHistory();
+        final HistoryFingerprint stored = getExecutor().queryForObject(
+                new GetHistoryFingerprintStatement(getDatabaseChangeLogTableName()), HistoryFingerprint.class);
+        // Entries read from a baseline archive are not part of the History Change Log
+        final HistoryFingerprint expected = HistoryFingerprint.of(loaded.stream()
+                .filter(r -> !(r instanceof MongoRanChangeSet) || !((MongoRanChangeSet) r).isArchived())
+                .collect(Collectors.toList()));
+        if (!expected.equals(stored)) {
+            getLogger().fine("History Change Log fingerprint " + stored + " does not match the loaded " + expected);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected long getTrackingCollectionCacheTtl() {
+        return getNoSqlDatabase().getTrackingCollectionCacheTtl();
+    }
+
+    @Override
+    protected boolean isReadOnly() {
+        return nonNull(getDatabase()) && Boolean.TRUE.equals(getNoSqlDatabase().getReadOnly());
     }
 
     @Override
     protected Integer generateNextSequence() throws DatabaseException {
+        flushHistory();
         return (int) getExecutor().queryForLong(new GetMaxChangeSetSequenceStatement(getDatabaseChangeLogTableName()));
     }
 
+    @Override
+    public void setExecType(final ChangeSet changeSet, final ChangeSet.ExecType execType) throws DatabaseException {
+        super.setExecType(changeSet, execType);
+        final CommandMetrics commandMetrics = getNoSqlDatabase().getCommandMetrics();
+        if (nonNull(commandMetrics)) {
+            commandMetrics.changeSetRecorded(changeSet.toString(false));
+        }
+    }
+
     @Override
     protected void markChangeSetRun(final ChangeSet changeSet, final ChangeSet.ExecType execType, final Integer nextSequenceValue)
             throws DatabaseException {
 
+        checkLock();
+
+        if (getNoSqlDatabase().getCoalesceWrites()) {
+            // The changeSet is only recorded once its buffered writes are stored
+            getExecutor().flushWrites();
+        }
+
         final String tag = extractTag(changeSet);
         final Date dateExecuted = new Date(getClock().instant().toEpochMilli());
 
@@ -171,7 +727,13 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
             }
 
             final Bson update = Updates.combine(updates);
-            getExecutor().update(new UpdateManyStatement(getDatabaseChangeLogTableName(), filter, update));
+            if (getNoSqlDatabase().getParallelChangeSets()) {
+                getExecutor().executeAfterChangeSet(changeSet, new UpdateManyStatement(getDatabaseChangeLogTableName(), filter, update));
+            } else if (getNoSqlDatabase().getHistoryWriteBehind()) {
+                bufferChangeSetRun(new UpdateManyModel<>(filter, update));
+            } else {
+                getExecutor().update(new UpdateManyStatement(getDatabaseChangeLogTableName(), filter, update));
+            }
 
         } else {
 
@@ -193,9 +755,46 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
                     , LiquibaseUtil.getBuildVersion()
             );
 
-            getExecutor().execute(new InsertOneStatement(getDatabaseChangeLogTableName(),
-                    getConverter().toDocument(insertRanChangeSet), new Document()));
+            if (getNoSqlDatabase().getParallelChangeSets()) {
+                // Stored once the statements of the changeSet are stored
+                getExecutor().executeAfterChangeSet(changeSet, new InsertOneStatement(getDatabaseChangeLogTableName(),
+                        getConverter().toDocument(insertRanChangeSet), new Document()));
+            } else if (getNoSqlDatabase().getHistoryWriteBehind()) {
+                bufferChangeSetRun(new InsertOneModel<>(getConverter().toDocument(insertRanChangeSet)));
+            } else {
+                getExecutor().executeTracking(new InsertOneStatement(getDatabaseChangeLogTableName(),
+                        getConverter().toDocument(insertRanChangeSet), new Document()));
+            }
+        }
+    }
+
+    private void bufferChangeSetRun(final WriteModel<Document> changeSetRun) throws DatabaseException {
+        final long now = getClock().millis();
+        if (pendingChangeSetRuns.isEmpty()) {
+            pendingSince = now;
+        }
+        pendingChangeSetRuns.add(changeSetRun);
+
+        if (pendingChangeSetRuns.size() >= MongoConfiguration.HISTORY_WRITE_BEHIND_BATCH_SIZE.getCurrentValue()
+                || now - pendingSince >= MongoConfiguration.HISTORY_WRITE_BEHIND_MAX_AGE.getCurrentValue()) {
+            flushHistory();
+        }
+    }
+
+    @Override
+    public void flushHistory() throws DatabaseException {
+        if (nonNull(getDatabase()) && getNoSqlDatabase().getParallelChangeSets()) {
+            getExecutor().awaitParallel();
         }
+        if (pendingChangeSetRuns.isEmpty()) {
+            return;
+        }
+        final List<WriteModel<Document>> changeSetRuns = new ArrayList<>(pendingChangeSetRuns);
+        // Not kept for a retry: a partially applied unordered batch cannot be replayed safely
+        pendingChangeSetRuns.clear();
+
+        getExecutor().update(new BulkWriteStatement(getDatabaseChangeLogTableName(), changeSetRuns, false));
+        getLogger().fine("Stored " + changeSetRuns.size() + " buffered History Change Log entries");
     }
 
     //TODO: Raise with Liquibase to make it as part of ChangeSet class
@@ -212,6 +811,7 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
 
     @Override
     protected void removeRanChangeSet(final ChangeSet changeSet) throws DatabaseException {
+        flushHistory();
         final Bson filter = Filters.and(
                 Filters.eq(MongoRanChangeSet.Fields.fileName, changeSet.getFilePath()),
                 Filters.eq(MongoRanChangeSet.Fields.changeSetId, changeSet.getId()),
@@ -223,6 +823,7 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
 
     @Override
     protected void clearChekSums() throws DatabaseException {
+        flushHistory();
         final Document filter = new Document();
         final Bson update = Updates.set(MongoRanChangeSet.Fields.md5sum, null);
 
@@ -231,6 +832,7 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
 
     @Override
     protected long countTags(final String tag) throws DatabaseException {
+        flushHistory();
         final Bson filter = Filters.eq(MongoRanChangeSet.Fields.tag, tag);
         return getExecutor().queryForLong(
                 new CountDocumentsInCollectionStatement(getDatabaseChangeLogTableName(), filter));
@@ -238,6 +840,7 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
 
     @Override
     protected void tagLast(final String tagString) throws DatabaseException {
+        flushHistory();
         final Document filter = new Document();
         final Bson update = Updates.set(MongoRanChangeSet.Fields.tag, tagString);
         final Bson sort = Sorts.descending(MongoRanChangeSet.Fields.dateExecuted, MongoRanChangeSet.Fields.orderExecuted);
@@ -247,11 +850,14 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
 
     @Override
     protected long countRanChangeSets() throws DatabaseException {
+        flushHistory();
         return getExecutor().queryForLong(new CountDocumentsInCollectionStatement(getDatabaseChangeLogTableName()));
     }
 
     @Override
     public void updateCheckSum(final ChangeSet changeSet) throws DatabaseException {
+        checkNotReadOnly("update a checksum");
+        flushHistory();
         final Bson filter = Filters.and(
                 Filters.eq(MongoRanChangeSet.Fields.fileName, changeSet.getFilePath()),
                 Filters.eq(MongoRanChangeSet.Fields.changeSetId, changeSet.getId()),
@@ -260,8 +866,32 @@ public class MongoHistoryService extends AbstractNoSqlHistoryService<MongoLiquib
         ChecksumVersion currentChecksumVersion = changeSet.getStoredCheckSum() != null ?
                 ChecksumVersion.enumFromChecksumVersion(changeSet.getStoredCheckSum().getVersion()) : ChecksumVersion.latest();
 
-        final Bson update = Updates.set(MongoRanChangeSet.Fields.md5sum, changeSet.generateCheckSum(currentChecksumVersion).toString());
+        final CheckSum checkSum = changeSet.generateCheckSum(currentChecksumVersion);
+        final Bson update = Updates.set(MongoRanChangeSet.Fields.md5sum, checkSum.toString());
 
         getExecutor().update(new UpdateManyStatement(getDatabaseChangeLogTableName(), filter, update));
+
+        ofNullable(getRanChangeSetList()).flatMap(l -> l.stream().filter(r -> r.isSameAs(changeSet)).findFirst())
+                .ifPresent(r -> replaceRanChangeSet(withCheckSum(r, checkSum)));
+    }
+
+    private MongoRanChangeSet withCheckSum(final RanChangeSet ranChangeSet, final CheckSum checkSum) {
+        return new MongoRanChangeSet(
+                ranChangeSet.getChangeLog()
+                , ranChangeSet.getId()
+                , ranChangeSet.getAuthor()
+                , checkSum
+                , ranChangeSet.getDateExecuted()
+                , ranChangeSet.getTag()
+                , ranChangeSet.getExecType()
+                , ranChangeSet.getDescription()
+                , ranChangeSet.getComments()
+                , ranChangeSet.getContextExpression()
+                , null
+                , ranChangeSet.getLabels()
+                , ranChangeSet.getDeploymentId()
+                , ranChangeSet.getOrderExecuted()
+                , ranChangeSet.getLiquibaseVersion()
+        );
     }
 }
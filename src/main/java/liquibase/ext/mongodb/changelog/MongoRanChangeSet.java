@@ -8,10 +8,13 @@ import liquibase.changelog.RanChangeSet;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
+import org.bson.Document;
 
 import java.util.Collection;
 import java.util.Date;
 
+import static java.util.Objects.nonNull;
+
 @EqualsAndHashCode(callSuper = true)
 public class MongoRanChangeSet extends RanChangeSet {
 
@@ -30,12 +33,31 @@ public class MongoRanChangeSet extends RanChangeSet {
         public static final String deploymentId = "deploymentId";
         public static final String orderExecuted = "orderExecuted";
         public static final String liquibase = "liquibase";
+        public static final String baselineHash = "baselineHash";
+        public static final String baselineCount = "baselineCount";
+        public static final String baselineTag = "baselineTag";
     }
 
     @Getter
     @Setter
     private Collection<ContextExpression> inheritableContexts;
 
+    /**
+     * Description, comments and liquibase version of an entry read without them,
+     * set by {@link MongoHistoryService#loadHistoryDetails(Collection)}
+     */
+    @Setter
+    @EqualsAndHashCode.Exclude
+    private transient Document details;
+
+    /**
+     * Set on entries read from the archive of a baseline rather than from the History Change Log
+     */
+    @Getter
+    @Setter
+    @EqualsAndHashCode.Exclude
+    private transient boolean archived;
+
     public MongoRanChangeSet(final String changeLog, final String id, final String author, final CheckSum lastCheckSum, final Date dateExecuted
             , final String tag, final ChangeSet.ExecType execType, final String description, final String comments, final ContextExpression contextExpression, final Collection<ContextExpression> inheritableContexts
             , final Labels labels, final String deploymentId, final Integer orderExecuted, final String liquibase) {
@@ -48,4 +70,19 @@ public class MongoRanChangeSet extends RanChangeSet {
     public MongoRanChangeSet(final ChangeSet changeSet, final ChangeSet.ExecType execType, final ContextExpression contextExpression, final Labels labels) {
         super(changeSet, execType, contextExpression, labels);
     }
+
+    @Override
+    public String getDescription() {
+        return nonNull(details) ? details.getString(Fields.description) : super.getDescription();
+    }
+
+    @Override
+    public String getComments() {
+        return nonNull(details) ? details.getString(Fields.comments) : super.getComments();
+    }
+
+    @Override
+    public String getLiquibaseVersion() {
+        return nonNull(details) ? details.getString(Fields.liquibase) : super.getLiquibaseVersion();
+    }
 }
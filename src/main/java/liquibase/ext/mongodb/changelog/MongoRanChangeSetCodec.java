@@ -0,0 +1,157 @@
+package liquibase.ext.mongodb.changelog;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.util.Date;
+
+import static java.util.Objects.isNull;
+import static java.util.Optional.ofNullable;
+
+/**
+ * Reads and writes History Change Log entries straight from and to BSON, without an intermediate {@link org.bson.Document}.
+ * Produces the same documents as {@link MongoRanChangeSetToDocumentConverter}, fields not known are skipped on read.
+ */
+public class MongoRanChangeSetCodec implements Codec<MongoRanChangeSet> {
+
+    private final MongoRanChangeSetToDocumentConverter converter = new MongoRanChangeSetToDocumentConverter();
+
+    @Override
+    public MongoRanChangeSet decode(final BsonReader reader, final DecoderContext decoderContext) {
+
+        String fileName = null;
+        String id = null;
+        String author = null;
+        String md5sum = null;
+        Date dateExecuted = null;
+        String tag = null;
+        String execType = null;
+        String description = null;
+        String comments = null;
+        String contexts = null;
+        String labels = null;
+        String deploymentId = null;
+        Integer orderExecuted = null;
+        String liquibase = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            final String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            switch (name) {
+                case MongoRanChangeSet.Fields.fileName:
+                    fileName = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.changeSetId:
+                    id = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.author:
+                    author = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.md5sum:
+                    md5sum = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.dateExecuted:
+                    dateExecuted = new Date(reader.readDateTime());
+                    break;
+                case MongoRanChangeSet.Fields.tag:
+                    tag = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.execType:
+                    execType = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.description:
+                    description = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.comments:
+                    comments = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.contexts:
+                    contexts = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.labels:
+                    labels = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.deploymentId:
+                    deploymentId = reader.readString();
+                    break;
+                case MongoRanChangeSet.Fields.orderExecuted:
+                    orderExecuted = readInteger(reader);
+                    break;
+                case MongoRanChangeSet.Fields.liquibase:
+                    liquibase = reader.readString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return converter.fromValues(fileName, id, author, md5sum, dateExecuted, tag, execType, description, comments,
+                contexts, labels, deploymentId, orderExecuted, liquibase);
+    }
+
+    private Integer readInteger(final BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT64:
+                return (int) reader.readInt64();
+            case DOUBLE:
+                return (int) reader.readDouble();
+            default:
+                return reader.readInt32();
+        }
+    }
+
+    @Override
+    public void encode(final BsonWriter writer, final MongoRanChangeSet value, final EncoderContext encoderContext) {
+
+        writer.writeStartDocument();
+        writeString(writer, MongoRanChangeSet.Fields.fileName, value.getChangeLog());
+        writeString(writer, MongoRanChangeSet.Fields.changeSetId, value.getId());
+        writeString(writer, MongoRanChangeSet.Fields.author, value.getAuthor());
+        writeString(writer, MongoRanChangeSet.Fields.md5sum, ofNullable(value.getLastCheckSum()).map(Object::toString).orElse(null));
+        writer.writeName(MongoRanChangeSet.Fields.dateExecuted);
+        if (isNull(value.getDateExecuted())) {
+            writer.writeNull();
+        } else {
+            writer.writeDateTime(value.getDateExecuted().getTime());
+        }
+        writeString(writer, MongoRanChangeSet.Fields.tag, value.getTag());
+        writeString(writer, MongoRanChangeSet.Fields.execType, ofNullable(value.getExecType()).map(e -> e.value).orElse(null));
+        writeString(writer, MongoRanChangeSet.Fields.description, value.getDescription());
+        writeString(writer, MongoRanChangeSet.Fields.comments, value.getComments());
+        writeString(writer, MongoRanChangeSet.Fields.contexts,
+                converter.buildFullContext(value.getContextExpression(), value.getInheritableContexts()));
+        writeString(writer, MongoRanChangeSet.Fields.labels, converter.buildLabels(value.getLabels()));
+        writeString(writer, MongoRanChangeSet.Fields.deploymentId, value.getDeploymentId());
+        writer.writeName(MongoRanChangeSet.Fields.orderExecuted);
+        if (isNull(value.getOrderExecuted())) {
+            writer.writeNull();
+        } else {
+            writer.writeInt32(value.getOrderExecuted());
+        }
+        writeString(writer, MongoRanChangeSet.Fields.liquibase, value.getLiquibaseVersion());
+        writer.writeEndDocument();
+    }
+
+    private void writeString(final BsonWriter writer, final String name, final String value) {
+        writer.writeName(name);
+        if (isNull(value)) {
+            writer.writeNull();
+        } else {
+            writer.writeString(value);
+        }
+    }
+
+    @Override
+    public Class<MongoRanChangeSet> getEncoderClass() {
+        return MongoRanChangeSet.class;
+    }
+}
@@ -8,11 +8,27 @@ import liquibase.nosql.changelog.AbstractNoSqlItemToDocumentConverter;
 import org.bson.Document;
 
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.Optional.ofNullable;
 
+/**
+ * Converts the History Change Log documents.
+ * <p>
+ * Large histories repeat the same few file names, authors, deployment ids, Liquibase versions, contexts and labels
+ * across thousands of entries. {@link #fromDocument(Document)} shares one String per distinct value
+ * between the entries read by this converter, instead of keeping a copy per entry in memory.
+ * Only immutable Strings are shared: {@link ContextExpression} and {@link Labels} are mutable and built per entry.
+ * The converter backs the client wide codec, so the pool is concurrent and stops growing at
+ * {@link #MAX_SHARED_STRINGS} values, later distinct values are then kept as read.
+ */
 public class MongoRanChangeSetToDocumentConverter extends AbstractNoSqlItemToDocumentConverter<MongoRanChangeSet, Document> {
 
+    static final int MAX_SHARED_STRINGS = 1024;
+
+    private final Map<String, String> sharedStrings = new ConcurrentHashMap<>();
+
     @Override
     public Document toDocument(final MongoRanChangeSet item) {
 
@@ -41,25 +57,64 @@ public class MongoRanChangeSetToDocumentConverter extends AbstractNoSqlItemToDoc
     @Override
     public MongoRanChangeSet fromDocument(final Document document) {
 
-        return new MongoRanChangeSet(
+        return fromValues(
                 (String) document.get(MongoRanChangeSet.Fields.fileName),
                 // Change Set Id which is populated to id POJO field
                 (String) document.get(MongoRanChangeSet.Fields.changeSetId),
                 (String) document.get(MongoRanChangeSet.Fields.author),
-                CheckSum.parse((String) document.get(MongoRanChangeSet.Fields.md5sum)),
+                (String) document.get(MongoRanChangeSet.Fields.md5sum),
                 (Date) document.get(MongoRanChangeSet.Fields.dateExecuted),
                 (String) document.get(MongoRanChangeSet.Fields.tag),
-                ofNullable(document.get(MongoRanChangeSet.Fields.execType))
-                        .map(s -> ChangeSet.ExecType.valueOf((String) s)).orElse(null),
+                (String) document.get(MongoRanChangeSet.Fields.execType),
                 (String) document.get(MongoRanChangeSet.Fields.description),
                 (String) document.get(MongoRanChangeSet.Fields.comments),
-                new ContextExpression((String)document.get(MongoRanChangeSet.Fields.contexts)),
-                // not parsed out
-                null,
-                new Labels((String)document.get(MongoRanChangeSet.Fields.labels)),
+                (String) document.get(MongoRanChangeSet.Fields.contexts),
+                (String) document.get(MongoRanChangeSet.Fields.labels),
                 (String) document.get(MongoRanChangeSet.Fields.deploymentId),
                 (Integer) ofNullable(document.get(MongoRanChangeSet.Fields.orderExecuted)).orElse(null),
                 (String) document.get(MongoRanChangeSet.Fields.liquibase)
         );
     }
+
+    /**
+     * Builds the entry from the stored field values, shared with {@link MongoRanChangeSetCodec}
+     */
+    MongoRanChangeSet fromValues(final String fileName, final String id, final String author, final String md5sum
+            , final Date dateExecuted, final String tag, final String execType, final String description, final String comments
+            , final String contexts, final String labels, final String deploymentId, final Integer orderExecuted, final String liquibase) {
+
+        return new MongoRanChangeSet(
+                shared(fileName),
+                id,
+                shared(author),
+                CheckSum.parse(md5sum),
+                dateExecuted,
+                tag,
+                ofNullable(execType).map(ChangeSet.ExecType::valueOf).orElse(null),
+                description,
+                comments,
+                new ContextExpression(shared(contexts)),
+                // not parsed out
+                null,
+                new Labels(shared(labels)),
+                shared(deploymentId),
+                orderExecuted,
+                shared(liquibase)
+        );
+    }
+
+    String shared(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final String existing = sharedStrings.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (sharedStrings.size() >= MAX_SHARED_STRINGS) {
+            return value;
+        }
+        final String previous = sharedStrings.putIfAbsent(value, value);
+        return previous == null ? value : previous;
+    }
 }
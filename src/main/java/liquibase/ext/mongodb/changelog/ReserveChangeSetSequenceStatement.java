@@ -0,0 +1,135 @@
+package liquibase.ext.mongodb.changelog;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2020 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.AbstractCollectionStatement;
+import liquibase.nosql.statement.NoSqlQueryForLongStatement;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.bson.Document;
+
+import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
+
+/**
+ * Reserves a block of orderExecuted values by incrementing a counter document with a single findAndModify.
+ * Returns the highest value of the reserved block, the block being (returned - blockSize, returned].
+ * <p>
+ * With catchUp, or when the counter document does not exist yet, the counter is first raised with $max to the
+ * current max orderExecuted of the history collection, so it continues the existing sequence even when entries were
+ * recorded without the counter. That max is an unindexed sort of the history collection, so callers catch up once
+ * per run and afterwards every reservation is the single $inc on the counter document.
+ * The counter is only ever raised and the $max can safely run concurrently.
+ */
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class ReserveChangeSetSequenceStatement extends AbstractCollectionStatement
+        implements NoSqlQueryForLongStatement<MongoLiquibaseDatabase> {
+
+    public static final String COMMAND_NAME = "reserveSequence";
+    public static final String COUNTER_ID = MongoRanChangeSet.Fields.orderExecuted;
+    public static final String VALUE = "value";
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+
+    private final String changeLogCollectionName;
+    private final int blockSize;
+    private final boolean catchUp;
+
+    public ReserveChangeSetSequenceStatement(final String collectionName, final String changeLogCollectionName, final int blockSize) {
+        this(collectionName, changeLogCollectionName, blockSize, true);
+    }
+
+    public ReserveChangeSetSequenceStatement(final String collectionName, final String changeLogCollectionName,
+                                             final int blockSize, final boolean catchUp) {
+        super(collectionName);
+        this.changeLogCollectionName = changeLogCollectionName;
+        this.blockSize = blockSize;
+        this.catchUp = catchUp;
+    }
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public String toJs() {
+        return
+                SHELL_DB_PREFIX +
+                        getCollectionName() +
+                        "." +
+                        getCommandName() +
+                        "(" +
+                        blockSize +
+                        (catchUp ? ", catchUp" : "") +
+                        ");";
+    }
+
+    @Override
+    public long queryForLong(final MongoLiquibaseDatabase database) {
+        final MongoCollection<Document> counters = database.getMongoDatabase().getCollection(getCollectionName());
+
+        if (catchUp) {
+            catchUp(database, counters);
+        }
+        Document counter = reserve(counters);
+        if (counter == null && !catchUp) {
+            // First reservation ever: seed the counter from the history collection
+            catchUp(database, counters);
+            counter = reserve(counters);
+        }
+        if (counter == null) {
+            throw new MongoException("Could not reserve orderExecuted values from " + getCollectionName());
+        }
+        return counter.get(VALUE, Number.class).longValue();
+    }
+
+    /**
+     * Catches up with entries recorded without the counter (another node, an older version, a restored backup)
+     */
+    private void catchUp(final MongoLiquibaseDatabase database, final MongoCollection<Document> counters) {
+        final long max = new GetMaxChangeSetSequenceStatement(changeLogCollectionName).queryForLong(database);
+        try {
+            counters.updateOne(Filters.eq(COUNTER_ID), Updates.max(VALUE, max), new UpdateOptions().upsert(true));
+        } catch (MongoException e) {
+            // Another node seeded the counter concurrently
+            if (e.getCode() != DUPLICATE_KEY_ERROR_CODE) {
+                throw e;
+            }
+            counters.updateOne(Filters.eq(COUNTER_ID), Updates.max(VALUE, max));
+        }
+    }
+
+    private Document reserve(final MongoCollection<Document> counters) {
+        return counters.findOneAndUpdate(
+                Filters.eq(COUNTER_ID),
+                Updates.inc(VALUE, (long) blockSize),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+        );
+    }
+}
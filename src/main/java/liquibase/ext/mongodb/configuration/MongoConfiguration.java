@@ -3,6 +3,7 @@ package liquibase.ext.mongodb.configuration;
 import liquibase.configuration.AutoloadedConfigurations;
 import liquibase.configuration.ConfigurationDefinition;
 
+import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 
 public class MongoConfiguration implements AutoloadedConfigurations {
@@ -12,6 +13,30 @@ public class MongoConfiguration implements AutoloadedConfigurations {
     public static final ConfigurationDefinition<Boolean>  ADJUST_TRACKING_TABLES_ON_STARTUP;
     public static final ConfigurationDefinition<Boolean>  SUPPORTS_VALIDATOR;
     public static final ConfigurationDefinition<Boolean>  RETRY_WRITES;
+    public static final ConfigurationDefinition<Boolean>  INCREMENTAL_HISTORY_CACHE;
+    public static final ConfigurationDefinition<Boolean>  HISTORY_WRITE_BEHIND;
+    public static final ConfigurationDefinition<Integer>  HISTORY_WRITE_BEHIND_BATCH_SIZE;
+    public static final ConfigurationDefinition<Long>  HISTORY_WRITE_BEHIND_MAX_AGE;
+    public static final ConfigurationDefinition<Boolean>  CHANGESET_SEQUENCE_COUNTER;
+    public static final ConfigurationDefinition<Integer>  CHANGESET_SEQUENCE_BLOCK_SIZE;
+    public static final ConfigurationDefinition<Boolean>  PROJECTED_HISTORY;
+    public static final ConfigurationDefinition<Boolean>  SERVER_SIDE_PENDING_CHANGESETS;
+    public static final ConfigurationDefinition<Integer>  SERVER_SIDE_PENDING_CHANGESETS_CHUNK_SIZE;
+    public static final ConfigurationDefinition<Integer>  QUERY_BATCH_SIZE;
+    public static final ConfigurationDefinition<Boolean>  LOCK_CHANGE_STREAM;
+    public static final ConfigurationDefinition<Boolean>  LOCK_COMPARE_AND_SET;
+    public static final ConfigurationDefinition<Boolean>  LOCK_LEASE;
+    public static final ConfigurationDefinition<Long>  LOCK_LEASE_DURATION;
+    public static final ConfigurationDefinition<Boolean>  SHARED_LOCK;
+    public static final ConfigurationDefinition<Long>  SHARED_LOCK_DURATION;
+    public static final ConfigurationDefinition<String>  LOCK_SCOPE;
+    public static final ConfigurationDefinition<Long>  TRACKING_COLLECTION_CACHE_TTL;
+    public static final ConfigurationDefinition<Boolean>  CONSOLIDATED_BOOTSTRAP;
+    public static final ConfigurationDefinition<Boolean>  READ_ONLY;
+    public static final ConfigurationDefinition<Boolean>  COALESCE_WRITES;
+    public static final ConfigurationDefinition<Boolean>  PARALLEL_CHANGESETS;
+    public static final ConfigurationDefinition<Integer>  PARALLEL_CHANGESET_THREADS;
+    public static final ConfigurationDefinition<Boolean>  COMMAND_METRICS;
 
     static {
         ConfigurationDefinition.Builder builder = new ConfigurationDefinition.Builder(LIQUIBASE_MONGO_NAMESPACE);
@@ -35,5 +60,184 @@ public class MongoConfiguration implements AutoloadedConfigurations {
                         "This will permit usage on Mongo Versions not supporting retryWrites, like Amazon DocumentDB")
                 .setDefaultValue(TRUE)
                 .build();
+
+        INCREMENTAL_HISTORY_CACHE = builder.define("incrementalHistoryCache", Boolean.class)
+                .setDescription("Enabling this property will keep the History Change Log loaded by a previous read and, " +
+                        "on the next read, fetch only the entries recorded after the highest known orderExecuted. " +
+                        "The whole History is reloaded when a fingerprint of the stored entries, computed on the server " +
+                        "from their count, max orderExecuted, max dateExecuted, tags, checksums and execTypes, " +
+                        "does not match the loaded ones.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        HISTORY_WRITE_BEHIND = builder.define("historyWriteBehind", Boolean.class)
+                .setDescription("Enabling this property will buffer History Change Log entries and store them in one unordered bulkWrite " +
+                        "instead of a round trip per changeSet. Buffered entries are stored when the batch size or the max age " +
+                        "is reached as a changeSet is recorded, before the History is read or modified and always before the Lock is released. " +
+                        "If the process dies before a flush, changeSets already applied are not recorded and will run again.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        HISTORY_WRITE_BEHIND_BATCH_SIZE = builder.define("historyWriteBehindBatchSize", Integer.class)
+                .setDescription("Number of buffered History Change Log entries which triggers a flush when historyWriteBehind is enabled.")
+                .setDefaultValue(100)
+                .build();
+
+        HISTORY_WRITE_BEHIND_MAX_AGE = builder.define("historyWriteBehindMaxAge", Long.class)
+                .setDescription("Age in milliseconds of the oldest buffered History Change Log entry which triggers a flush " +
+                        "when historyWriteBehind is enabled. The age is checked each time a changeSet is recorded, there is no " +
+                        "background flush: entries stay buffered while a long running changeSet executes.")
+                .setDefaultValue(5000L)
+                .build();
+
+        CHANGESET_SEQUENCE_COUNTER = builder.define("changeSetSequenceCounter", Boolean.class)
+                .setDescription("Enabling this property will allocate orderExecuted values from a counter document " +
+                        "incremented atomically on the server instead of reading the max orderExecuted of the History Change Log. " +
+                        "The counter is raised to the max orderExecuted of the History each time a block is reserved.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        CHANGESET_SEQUENCE_BLOCK_SIZE = builder.define("changeSetSequenceBlockSize", Integer.class)
+                .setDescription("Number of orderExecuted values reserved per round trip when changeSetSequenceCounter is enabled. " +
+                        "Values reserved but not used by a run are left as gaps. Ignored with a lockScope, which reserves one value at a time.")
+                .setDefaultValue(50)
+                .build();
+
+        PROJECTED_HISTORY = builder.define("projectedHistory", Boolean.class)
+                .setDescription("Enabling this property will read the History Change Log without description, comments and liquibase version, " +
+                        "which stay empty unless read with MongoHistoryService.loadHistoryDetails. " +
+                        "The reads are then covered by an additional index on the History Change Log Collection.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        SERVER_SIDE_PENDING_CHANGESETS = builder.define("serverSidePendingChangeSets", Boolean.class)
+                .setDescription("Enabling this property will read only the History Change Log entries of the changeSets " +
+                        "of the changelog being run, matched on the server by fileName, author and id. " +
+                        "Entries of changeSets not in the changelog are then not reported.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        SERVER_SIDE_PENDING_CHANGESETS_CHUNK_SIZE = builder.define("serverSidePendingChangeSetsChunkSize", Integer.class)
+                .setDescription("Number of changeSets matched per History Change Log query when serverSidePendingChangeSets is enabled.")
+                .setDefaultValue(1000)
+                .build();
+
+        QUERY_BATCH_SIZE = builder.define("queryBatchSize", Integer.class)
+                .setDescription("Number of documents fetched per cursor batch when reading the History Change Log and Lock Collections. " +
+                        "0 keeps the driver default.")
+                .setDefaultValue(1000)
+                .build();
+
+        LOCK_CHANGE_STREAM = builder.define("lockChangeStream", Boolean.class)
+                .setDescription("Enabling this property will let waitForLock watch the Lock Collection with a change stream " +
+                        "and retry as soon as the lock is released instead of sleeping between attempts. " +
+                        "Falls back to polling with a jittered backoff when change streams are not available, " +
+                        "like on standalone servers, Amazon DocumentDB without change streams enabled or FerretDB.")
+                .setDefaultValue(TRUE)
+                .build();
+
+        LOCK_COMPARE_AND_SET = builder.define("lockCompareAndSet", Boolean.class)
+                .setDescription("Enabling this property will update the Lock document by reading it, checking it on the client " +
+                        "and replacing it only if unchanged, with plain equality filters and a separate insert when missing, " +
+                        "instead of a single upsert with $or and $elemMatch conditions. " +
+                        "For servers with partial query support, like Amazon DocumentDB. Takes one more round trip per attempt.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        LOCK_LEASE = builder.define("lockLease", Boolean.class)
+                .setDescription("Enabling this property will acquire the Lock as a lease which expires unless renewed " +
+                        "by a background heartbeat, so the Lock left by a crashed process is taken over by the next waiter. " +
+                        "Each acquisition increments a fencing token and a holder which lost its lease stops recording changeSets. " +
+                        "The token is checked by the holder before each History write, not by the server: this is best-effort, " +
+                        "a holder paused between the check and the write can still record one changeSet after losing its lease. " +
+                        "All the instances sharing a Lock Collection are expected to use the same mode.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        LOCK_LEASE_DURATION = builder.define("lockLeaseDuration", Long.class)
+                .setDescription("Duration in milliseconds of the Lock lease when lockLease is enabled, renewed every third of it. " +
+                        "Has to exceed the clock skew between the hosts.")
+                .setDefaultValue(60000L)
+                .build();
+
+        SHARED_LOCK = builder.define("sharedLock", Boolean.class)
+                .setDescription("Enabling this property will acquire the Lock in shared mode, for read-only commands like " +
+                        "status, validate or history. Shared holders run concurrently with each other but never with an exclusive " +
+                        "holder. Recording a changeSet while holding the shared Lock fails. The mode is set per invocation, not per command, " +
+                        "as Liquibase acquires the Lock without telling which command runs: enable it only on the invocations of " +
+                        "read-only commands. Shared holds are renewed while held.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        SHARED_LOCK_DURATION = builder.define("sharedLockDuration", Long.class)
+                .setDescription("Duration in milliseconds after which a shared Lock holder which did not release it, " +
+                        "like a crashed process, no longer blocks exclusive holders. Held shared Locks are renewed every third of it.")
+                .setDefaultValue(600000L)
+                .build();
+
+        LOCK_SCOPE = builder.define("lockScope", String.class)
+                .setDescription("Name of the Lock scope, like the root changelog file or a team key. Each scope has its own " +
+                        "Lock document, so changelogs deploying independent collections into the same database can run at " +
+                        "the same time. As the scopes share the History Change Log, setting a scope enables changeSetSequenceCounter " +
+                        "with one orderExecuted value reserved per changeSet, so concurrent scopes never record the same value " +
+                        "and orderExecuted follows the execution order across scopes. Each changeSet then costs one findAndModify " +
+                        "on the counter document by _id; the History Change Log is only scanned once per run. Left empty, the single global Lock is used.")
+                .build();
+
+        TRACKING_COLLECTION_CACHE_TTL = builder.define("trackingCollectionCacheTtl", Long.class)
+                .setDescription("Time in milliseconds during which the History Change Log and Lock Collections verified as created " +
+                        "and adjusted by a Liquibase invocation are not checked again by the next invocations in the same JVM. " +
+                        "0 disables the cache. Dropping the collections through Liquibase invalidates it.")
+                .setDefaultValue(0L)
+                .build();
+
+        CONSOLIDATED_BOOTSTRAP = builder.define("consolidatedBootstrap", Boolean.class)
+                .setDescription("Enabling this property will discover the History Change Log and Lock Collections with their " +
+                        "options in a single listCollections shared by both services on startup, instead of one existence check " +
+                        "and one options read per collection.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        READ_ONLY = builder.define("readOnly", Boolean.class)
+                .setDescription("Enabling this property will only read the History Change Log and Lock Collections, " +
+                        "preferring secondaries for these reads: they are never created nor adjusted, a missing one is read as empty " +
+                        "and the Lock is not taken. Any write fails before reaching the server, changeSet statements included. " +
+                        "Meant for status and history reads from read-only accounts.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        COALESCE_WRITES = builder.define("coalesceWrites", Boolean.class)
+                .setDescription("Enabling this property will buffer consecutive insert, update and delete statements " +
+                        "of a change against the same collection and send them as one ordered bulkWrite. " +
+                        "The buffer is sent at the end of the change, before any other statement and on commit or rollback, " +
+                        "so the writes are counted in the rows affected of their change and a failure fails their changeSet.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        PARALLEL_CHANGESETS = builder.define("parallelChangeSets", Boolean.class)
+                .setDescription("Enabling this property will run each changeSet on the parallelChangeSetThreads pool once " +
+                        "the previous changeSets using the same collections are done, so changeSets on other collections run " +
+                        "concurrently. Collection statements, createCollection, createIndex, dropCollection and dropIndex included, " +
+                        "are limited to their collection. Views, admin and free form commands, and queries wait for all the " +
+                        "changeSets. A History Change Log entry is stored right after the statements of its changeSet. " +
+                        "The first failure cancels the changeSets not started yet and is reported, naming the failed changeSet, " +
+                        "by every later statement until the lock release, which fails the run. The started changeSets complete and " +
+                        "are recorded. ChangeSets with failOnError disabled, or with preconditions which do not halt, run serially.")
+                .setDefaultValue(FALSE)
+                .build();
+
+        PARALLEL_CHANGESET_THREADS = builder.define("parallelChangeSetThreads", Integer.class)
+                .setDescription("Number of threads of the pool running the parallelChangeSets statements in the JVM, " +
+                        "read once when the pool is first used.")
+                .setDefaultValue(4)
+                .build();
+
+        COMMAND_METRICS = builder.define("commandMetrics", Boolean.class)
+                .setDescription("Enabling this property will monitor the commands sent by the driver and report, " +
+                        "per changeSet and per statement, the command count, latency histogram, request and response " +
+                        "bytes and error codes. The report is logged as JSON and passed to the CommandMetricsListener " +
+                        "services when the connection is closed.")
+                .setDefaultValue(FALSE)
+                .build();
     }
 }
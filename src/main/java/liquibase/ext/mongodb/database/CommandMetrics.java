@@ -0,0 +1,186 @@
+package liquibase.ext.mongodb.database;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import liquibase.Scope;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Monitors the commands sent by the driver of a {@link MongoConnection} when {@link liquibase.ext.mongodb.configuration.MongoConfiguration#COMMAND_METRICS}
+ * is enabled. A command is attributed to the statement type and changeSet found in the {@link Scope} of the thread sending it,
+ * as set by the executor. Without a changeSet in scope, the commands belong to the next changeSet recorded in the History Change Log.
+ */
+public class CommandMetrics implements CommandListener {
+
+    /**
+     * Scope key of the name of the statement type sending the commands
+     */
+    public static final String STATEMENT_SCOPE_KEY = "liquibase.mongodb.commandMetrics.statement";
+
+    /**
+     * Scope key of the {@link CommandStats} of the changeSet sending the commands, see {@link #getPendingChangeSet()}
+     */
+    public static final String CHANGE_SET_SCOPE_KEY = "liquibase.mongodb.commandMetrics.changeSet";
+
+    /**
+     * Statement name of the commands sent outside an executor statement
+     */
+    static final String OTHER_STATEMENT = "other";
+
+    private static final BsonDocumentCodec CODEC = new BsonDocumentCodec();
+
+    @Getter
+    private final CommandStats total = new CommandStats();
+
+    private final Map<String, CommandStats> changeSets = new LinkedHashMap<>();
+
+    private final Map<String, CommandStats> statements = new ConcurrentHashMap<>();
+
+    private final Map<Integer, StartedCommand> startedCommands = new ConcurrentHashMap<>();
+
+    private CommandStats pendingChangeSet = new CommandStats();
+
+    @Override
+    public void commandStarted(final CommandStartedEvent event) {
+        final Scope scope = Scope.getCurrentScope();
+        CommandStats changeSet = scope.get(CHANGE_SET_SCOPE_KEY, CommandStats.class);
+        if (isNull(changeSet)) {
+            changeSet = getPendingChangeSet();
+        }
+        final String statement = scope.get(STATEMENT_SCOPE_KEY, OTHER_STATEMENT);
+        startedCommands.put(event.getRequestId(), new StartedCommand(changeSet,
+                statements.computeIfAbsent(statement, name -> new CommandStats()), sizeOf(event.getCommand())));
+    }
+
+    @Override
+    public void commandSucceeded(final CommandSucceededEvent event) {
+        final StartedCommand started = startedCommands.remove(event.getRequestId());
+        if (isNull(started)) {
+            return;
+        }
+        final long elapsedNanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        final long responseBytes = sizeOf(event.getResponse());
+        total.succeeded(elapsedNanos, started.requestBytes, responseBytes);
+        started.changeSet.succeeded(elapsedNanos, started.requestBytes, responseBytes);
+        started.statement.succeeded(elapsedNanos, started.requestBytes, responseBytes);
+    }
+
+    @Override
+    public void commandFailed(final CommandFailedEvent event) {
+        final StartedCommand started = startedCommands.remove(event.getRequestId());
+        if (isNull(started)) {
+            return;
+        }
+        final long elapsedNanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        total.failed(elapsedNanos, started.requestBytes, event.getThrowable());
+        started.changeSet.failed(elapsedNanos, started.requestBytes, event.getThrowable());
+        started.statement.failed(elapsedNanos, started.requestBytes, event.getThrowable());
+    }
+
+    /**
+     * @return the metrics of the changeSet not recorded yet, to be set in the {@link Scope} of its statements run
+     * on other threads so they stay attributed to it
+     */
+    public synchronized CommandStats getPendingChangeSet() {
+        return pendingChangeSet;
+    }
+
+    /**
+     * Attributes the commands sent since the previous changeSet was recorded to this one.
+     *
+     * @param changeSet the changeSet key
+     */
+    public synchronized void changeSetRecorded(final String changeSet) {
+        changeSets.put(changeSet, pendingChangeSet);
+        pendingChangeSet = new CommandStats();
+    }
+
+    /**
+     * @return the metrics per changeSet key, in the order they were recorded
+     */
+    public synchronized Map<String, CommandStats> getChangeSets() {
+        return new LinkedHashMap<>(changeSets);
+    }
+
+    /**
+     * @return the metrics per statement type, {@value #OTHER_STATEMENT} for the commands sent outside an executor statement
+     */
+    public Map<String, CommandStats> getStatements() {
+        return new TreeMap<>(statements);
+    }
+
+    /**
+     * @return the report with the total, the per changeSet and per statement metrics, and the commands sent after
+     * the last recorded changeSet, as the lock release
+     */
+    public String toJson() {
+        final Document changeSetsDocument = new Document();
+        getChangeSets().forEach((key, stats) -> changeSetsDocument.append(key, stats.toDocument()));
+        final Document statementsDocument = new Document();
+        getStatements().forEach((key, stats) -> statementsDocument.append(key, stats.toDocument()));
+        return new Document("total", total.toDocument())
+                .append("changeSets", changeSetsDocument)
+                .append("statements", statementsDocument)
+                .append("afterLastChangeSet", getPendingChangeSet().toDocument())
+                .toJson();
+    }
+
+    private static long sizeOf(final BsonDocument document) {
+        if (isNull(document)) {
+            return 0L;
+        }
+        final RawBsonDocument raw = document instanceof RawBsonDocument
+                ? (RawBsonDocument) document : new RawBsonDocument(document, CODEC);
+        return raw.getByteBuffer().remaining();
+    }
+
+    @Override
+    public String toString() {
+        return total + ", changeSets=" + getChangeSets().size();
+    }
+
+    @RequiredArgsConstructor
+    private static class StartedCommand {
+
+        private final CommandStats changeSet;
+
+        private final CommandStats statement;
+
+        private final long requestBytes;
+    }
+}
@@ -0,0 +1,35 @@
+package liquibase.ext.mongodb.database;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Receives the {@link CommandMetrics} of a {@link MongoConnection} when it is closed, at the end of the Liquibase command.
+ * Implementations are discovered with the Liquibase service locator, listed in
+ * {@code META-INF/services/liquibase.ext.mongodb.database.CommandMetricsListener}.
+ */
+public interface CommandMetricsListener {
+
+    /**
+     * @param databaseName the name of the database
+     * @param metrics      the metrics of the commands sent on the connection
+     */
+    void onCommandMetrics(String databaseName, CommandMetrics metrics);
+}
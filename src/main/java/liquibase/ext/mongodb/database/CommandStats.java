@@ -0,0 +1,147 @@
+package liquibase.ext.mongodb.database;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.mongodb.MongoException;
+import org.bson.Document;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commands sent by the driver for one changeSet, one statement type or the whole run: count, latency histogram,
+ * request and response sizes and the error codes of the failed commands.
+ */
+public class CommandStats {
+
+    /**
+     * Upper bounds of the latency histogram buckets in milliseconds, the last bucket counts the slower commands
+     */
+    static final long[] LATENCY_BOUNDS_MILLIS = {1L, 5L, 10L, 50L, 100L, 500L, 1000L};
+
+    private long commands;
+
+    private long failures;
+
+    private long requestBytes;
+
+    private long responseBytes;
+
+    private long elapsedNanos;
+
+    private final long[] latencyHistogram = new long[LATENCY_BOUNDS_MILLIS.length + 1];
+
+    private final Map<String, Long> errorCodes = new TreeMap<>();
+
+    synchronized void succeeded(final long elapsedNanos, final long requestBytes, final long responseBytes) {
+        recorded(elapsedNanos, requestBytes);
+        this.responseBytes += responseBytes;
+    }
+
+    synchronized void failed(final long elapsedNanos, final long requestBytes, final Throwable failure) {
+        recorded(elapsedNanos, requestBytes);
+        failures++;
+        errorCodes.merge(errorCodeOf(failure), 1L, Long::sum);
+    }
+
+    private void recorded(final long elapsedNanos, final long requestBytes) {
+        commands++;
+        this.requestBytes += requestBytes;
+        this.elapsedNanos += elapsedNanos;
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BOUNDS_MILLIS.length && elapsedMillis >= LATENCY_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        latencyHistogram[bucket]++;
+    }
+
+    /**
+     * @param failure the failure of a command
+     * @return the server error code, or the exception type for failures without one as network errors
+     */
+    static String errorCodeOf(final Throwable failure) {
+        if (failure instanceof MongoException && ((MongoException) failure).getCode() != -1) {
+            return String.valueOf(((MongoException) failure).getCode());
+        }
+        return failure.getClass().getSimpleName();
+    }
+
+    public synchronized long getCommands() {
+        return commands;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public synchronized long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public synchronized long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return the command count per latency bucket, keyed by their upper bound as {@code <5ms}, the last one {@code >=1000ms}
+     */
+    public synchronized Map<String, Long> getLatencyHistogram() {
+        final Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int bucket = 0; bucket < LATENCY_BOUNDS_MILLIS.length; bucket++) {
+            histogram.put("<" + LATENCY_BOUNDS_MILLIS[bucket] + "ms", latencyHistogram[bucket]);
+        }
+        histogram.put(">=" + LATENCY_BOUNDS_MILLIS[LATENCY_BOUNDS_MILLIS.length - 1] + "ms", latencyHistogram[LATENCY_BOUNDS_MILLIS.length]);
+        return histogram;
+    }
+
+    /**
+     * @return the failed command count per error code
+     */
+    public synchronized Map<String, Long> getErrorCodes() {
+        return new TreeMap<>(errorCodes);
+    }
+
+    synchronized Document toDocument() {
+        return new Document("commands", commands)
+                .append("failures", failures)
+                .append("requestBytes", requestBytes)
+                .append("responseBytes", responseBytes)
+                .append("elapsedMillis", getElapsedMillis())
+                .append("latencyHistogram", new Document(getLatencyHistogram()))
+                .append("errorCodes", new Document(getErrorCodes()));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "commands=" + commands +
+                ", failures=" + failures +
+                ", requestBytes=" + requestBytes +
+                ", responseBytes=" + responseBytes +
+                ", elapsedMillis=" + getElapsedMillis();
+    }
+}
@@ -4,6 +4,7 @@ import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
 import liquibase.Scope;
 import liquibase.exception.DatabaseException;
 import liquibase.util.StringUtil;
@@ -23,13 +24,24 @@ public class MongoClientDriver implements Driver {
     }
 
     public MongoClient connect(final ConnectionString connectionString, String appName) throws DatabaseException {
+        return connect(connectionString, appName, null);
+    }
+
+    /**
+     * @param commandListener notified of the commands sent by the client, none when null
+     */
+    public MongoClient connect(final ConnectionString connectionString, final String appName,
+                               final CommandListener commandListener) throws DatabaseException {
 
         final MongoClient client;
 
-        MongoClientSettings settings = MongoClientSettings.builder()
+        final MongoClientSettings.Builder settingsBuilder = MongoClientSettings.builder()
                 .applyConnectionString(connectionString)
-                .applicationName(appName)
-                .build();
+                .applicationName(appName);
+        if (commandListener != null) {
+            settingsBuilder.addCommandListener(commandListener);
+        }
+        final MongoClientSettings settings = settingsBuilder.build();
 
         try {
             client = MongoClients.create(settings);
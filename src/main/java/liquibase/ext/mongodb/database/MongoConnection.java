@@ -27,6 +27,7 @@ import com.mongodb.client.MongoDatabase;
 import liquibase.GlobalConfiguration;
 import liquibase.Scope;
 import liquibase.exception.DatabaseException;
+import liquibase.exception.ServiceNotFoundException;
 import liquibase.exception.UnexpectedLiquibaseException;
 import liquibase.ext.mongodb.configuration.MongoConfiguration;
 import liquibase.ext.mongodb.statement.BsonUtils;
@@ -45,6 +46,7 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.sql.Driver;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
@@ -70,6 +72,11 @@ public class MongoConnection extends AbstractNoSqlConnection {
 
     protected MongoDatabase mongoDatabase;
 
+    /**
+     * Metrics of the commands sent by the client, null unless {@link MongoConfiguration#COMMAND_METRICS} is enabled
+     */
+    private CommandMetrics commandMetrics;
+
     @Override
     public boolean supports(String url) {
         if (url == null) {
@@ -163,7 +170,12 @@ public class MongoConnection extends AbstractNoSqlConnection {
 
             this.connectionString = new ConnectionString(resolveRetryWrites(urlWithCredentials));
 
-            this.mongoClient = ((MongoClientDriver) driverObject).connect(connectionString, getAppName(driverProperties, false));
+            if (Boolean.TRUE.equals(MongoConfiguration.COMMAND_METRICS.getCurrentValue())) {
+                this.commandMetrics = new CommandMetrics();
+                this.mongoClient = ((MongoClientDriver) driverObject).connect(connectionString, getAppName(driverProperties, false), commandMetrics);
+            } else {
+                this.mongoClient = ((MongoClientDriver) driverObject).connect(connectionString, getAppName(driverProperties, false));
+            }
 
             final String database = this.connectionString.getDatabase();
             if (database == null) {
@@ -266,6 +278,7 @@ public class MongoConnection extends AbstractNoSqlConnection {
     public void close() throws DatabaseException {
         try {
             if (!isClosed()) {
+                publishCommandMetrics();
                 mongoClient.close();
                 mongoClient = null;
             }
@@ -274,5 +287,28 @@ public class MongoConnection extends AbstractNoSqlConnection {
         }
     }
 
+    private void publishCommandMetrics() {
+        if (isNull(commandMetrics)) {
+            return;
+        }
+        final Logger log = Scope.getCurrentScope().getLog(getClass());
+        final String database = ofNullable(connectionString).map(ConnectionString::getDatabase).orElse("");
+        log.info("Command metrics for " + database + ": " + commandMetrics.toJson());
+        List<CommandMetricsListener> listeners;
+        try {
+            listeners = Scope.getCurrentScope().getServiceLocator().findInstances(CommandMetricsListener.class);
+        } catch (final ServiceNotFoundException e) {
+            log.fine("Could not discover command metrics listeners", e);
+            listeners = Collections.emptyList();
+        }
+        for (final CommandMetricsListener listener : listeners) {
+            try {
+                listener.onCommandMetrics(database, commandMetrics);
+            } catch (final RuntimeException e) {
+                log.warning("Command metrics listener " + listener.getClass().getName() + " failed", e);
+            }
+        }
+    }
+
 
 }
@@ -20,6 +20,7 @@ package liquibase.ext.mongodb.database;
  * #L%
  */
 
+import com.mongodb.ReadPreference;
 import com.mongodb.client.MongoDatabase;
 import liquibase.CatalogAndSchema;
 import liquibase.Scope;
@@ -28,9 +29,13 @@ import liquibase.exception.DatabaseException;
 import liquibase.exception.LiquibaseException;
 import liquibase.executor.Executor;
 import liquibase.executor.ExecutorService;
+import liquibase.ext.mongodb.changelog.MongoHistoryService;
 import liquibase.ext.mongodb.configuration.MongoConfiguration;
 import liquibase.ext.mongodb.statement.DropAllCollectionsStatement;
 import liquibase.nosql.database.AbstractNoSqlDatabase;
+import liquibase.nosql.database.TrackingCollectionCache;
+import liquibase.nosql.executor.NoSqlExecutor;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.bson.Document;
@@ -50,11 +55,60 @@ public class MongoLiquibaseDatabase extends AbstractNoSqlDatabase {
     @Setter
     private Boolean supportsValidator;
 
+    @Setter
+    private Boolean incrementalHistoryCache;
+
+    @Setter
+    private Boolean historyWriteBehind;
+
+    @Setter
+    private Boolean changeSetSequenceCounter;
+
+    @Setter
+    private Boolean projectedHistory;
+
+    @Setter
+    private Boolean serverSidePendingChangeSets;
+
+    @Setter
+    private Boolean lockChangeStream;
+
+    @Setter
+    private Boolean lockCompareAndSet;
+
+    @Setter
+    private Boolean lockLease;
+
+    @Setter
+    private Boolean sharedLock;
+
+    @Setter
+    private String lockScope;
+
+    @Setter
+    private Long trackingCollectionCacheTtl;
+
+    @Setter
+    private Boolean consolidatedBootstrap;
+
+    @Setter
+    private Boolean readOnly;
+
+    @Setter
+    private Boolean coalesceWrites;
+
+    @Setter
+    private Boolean parallelChangeSets;
+
+    @Getter
+    private final TrackingCollectionsBootstrap trackingCollections = new TrackingCollectionsBootstrap(this);
+
     @Override
     public void dropDatabaseObjects(final CatalogAndSchema schemaToDrop) throws LiquibaseException {
         final Executor executor = Scope.getCurrentScope().getSingleton(ExecutorService.class).getExecutor(EXECUTOR_NAME, this);
         DropAllCollectionsStatement dropAllCollectionsStatement = new DropAllCollectionsStatement();
         executor.execute(dropAllCollectionsStatement);
+        TrackingCollectionCache.invalidate(this);
         Scope.getCurrentScope().getSingleton(ChangeLogHistoryServiceFactory.class).getChangeLogService(this).destroy();
     }
 
@@ -66,10 +120,39 @@ public class MongoLiquibaseDatabase extends AbstractNoSqlDatabase {
         return null;
     }
 
+    /**
+     * @return the metrics of the commands sent on the connection, null unless {@link MongoConfiguration#COMMAND_METRICS} is enabled
+     */
+    public CommandMetrics getCommandMetrics() {
+        return getConnection() instanceof MongoConnection ? ((MongoConnection) getConnection()).getCommandMetrics() : null;
+    }
+
     public MongoDatabase getMongoDatabase() {
         return ((MongoConnection) getConnection()).getMongoDatabase();
     }
 
+    /**
+     * @param collectionName the collection to read
+     * @return the database to read the collection from, preferring secondaries for the History Change Log
+     * and Lock Collections in read-only mode
+     */
+    public MongoDatabase getMongoDatabase(final String collectionName) {
+        return Boolean.TRUE.equals(getReadOnly()) && isTrackingCollection(collectionName)
+                ? getMongoDatabase().withReadPreference(ReadPreference.secondaryPreferred()) : getMongoDatabase();
+    }
+
+    /**
+     * @param collectionName a collection name
+     * @return true for the History Change Log, its archive and sequence, and the Lock Collections
+     */
+    public boolean isTrackingCollection(final String collectionName) {
+        final String changeLogCollectionName = getDatabaseChangeLogTableName();
+        return collectionName != null && (collectionName.equals(getDatabaseChangeLogLockTableName())
+                || collectionName.equals(changeLogCollectionName)
+                || collectionName.equals(changeLogCollectionName + MongoHistoryService.ARCHIVE_SUFFIX)
+                || collectionName.equals(changeLogCollectionName + MongoHistoryService.SEQUENCE_SUFFIX));
+    }
+
     @Override
     public String getDatabaseProductName() {
         return MONGODB_PRODUCT_NAME;
@@ -133,6 +216,162 @@ public class MongoLiquibaseDatabase extends AbstractNoSqlDatabase {
         return MongoConfiguration.SUPPORTS_VALIDATOR.getCurrentValue();
     }
 
+    public Boolean getIncrementalHistoryCache() {
+        if (incrementalHistoryCache != null) {
+            return incrementalHistoryCache;
+        }
+
+        return MongoConfiguration.INCREMENTAL_HISTORY_CACHE.getCurrentValue();
+    }
+
+    public Boolean getHistoryWriteBehind() {
+        if (historyWriteBehind != null) {
+            return historyWriteBehind;
+        }
+
+        return MongoConfiguration.HISTORY_WRITE_BEHIND.getCurrentValue();
+    }
+
+    /**
+     * @return whether orderExecuted values are reserved on the server, always the case with a Lock scope
+     * as the scopes share the History Change Log and can record changeSets at the same time
+     */
+    public Boolean getChangeSetSequenceCounter() {
+        if (getLockScope() != null) {
+            return Boolean.TRUE;
+        }
+
+        if (changeSetSequenceCounter != null) {
+            return changeSetSequenceCounter;
+        }
+
+        return MongoConfiguration.CHANGESET_SEQUENCE_COUNTER.getCurrentValue();
+    }
+
+    public Boolean getProjectedHistory() {
+        if (projectedHistory != null) {
+            return projectedHistory;
+        }
+
+        return MongoConfiguration.PROJECTED_HISTORY.getCurrentValue();
+    }
+
+    public Boolean getServerSidePendingChangeSets() {
+        if (serverSidePendingChangeSets != null) {
+            return serverSidePendingChangeSets;
+        }
+
+        return MongoConfiguration.SERVER_SIDE_PENDING_CHANGESETS.getCurrentValue();
+    }
+
+    public Boolean getLockChangeStream() {
+        if (lockChangeStream != null) {
+            return lockChangeStream;
+        }
+
+        return MongoConfiguration.LOCK_CHANGE_STREAM.getCurrentValue();
+    }
+
+    public Boolean getLockCompareAndSet() {
+        if (lockCompareAndSet != null) {
+            return lockCompareAndSet;
+        }
+
+        return MongoConfiguration.LOCK_COMPARE_AND_SET.getCurrentValue();
+    }
+
+    public Boolean getLockLease() {
+        if (lockLease != null) {
+            return lockLease;
+        }
+
+        return MongoConfiguration.LOCK_LEASE.getCurrentValue();
+    }
+
+    public Boolean getSharedLock() {
+        if (sharedLock != null) {
+            return sharedLock;
+        }
+
+        return MongoConfiguration.SHARED_LOCK.getCurrentValue();
+    }
+
+    /**
+     * @return the Lock scope, null for the global Lock
+     */
+    public String getLockScope() {
+        final String scope = lockScope != null ? lockScope : MongoConfiguration.LOCK_SCOPE.getCurrentValue();
+        return scope == null || scope.trim().isEmpty() ? null : scope.trim();
+    }
+
+    public Long getTrackingCollectionCacheTtl() {
+        if (trackingCollectionCacheTtl != null) {
+            return trackingCollectionCacheTtl;
+        }
+
+        return MongoConfiguration.TRACKING_COLLECTION_CACHE_TTL.getCurrentValue();
+    }
+
+    public Boolean getConsolidatedBootstrap() {
+        if (consolidatedBootstrap != null) {
+            return consolidatedBootstrap;
+        }
+
+        return MongoConfiguration.CONSOLIDATED_BOOTSTRAP.getCurrentValue();
+    }
+
+    public Boolean getReadOnly() {
+        if (readOnly != null) {
+            return readOnly;
+        }
+
+        return MongoConfiguration.READ_ONLY.getCurrentValue();
+    }
+
+    public Boolean getCoalesceWrites() {
+        if (coalesceWrites != null) {
+            return coalesceWrites;
+        }
+
+        return MongoConfiguration.COALESCE_WRITES.getCurrentValue();
+    }
+
+    public Boolean getParallelChangeSets() {
+        if (parallelChangeSets != null) {
+            return parallelChangeSets;
+        }
+
+        return MongoConfiguration.PARALLEL_CHANGESETS.getCurrentValue();
+    }
+
+    @Override
+    public void commit() throws DatabaseException {
+        flushWrites();
+        super.commit();
+    }
+
+    @Override
+    public void rollback() throws DatabaseException {
+        if (Boolean.TRUE.equals(getParallelChangeSets())) {
+            final Executor executor = Scope.getCurrentScope().getSingleton(ExecutorService.class).getExecutor(EXECUTOR_NAME, this);
+            if (executor instanceof NoSqlExecutor) {
+                ((NoSqlExecutor) executor).awaitParallel();
+            }
+        }
+        // Writes buffered before a failure are still sent, as they would have been one by one
+        flushWrites();
+        super.rollback();
+    }
+
+    private void flushWrites() throws DatabaseException {
+        if (Boolean.TRUE.equals(getCoalesceWrites())) {
+            final Executor executor = Scope.getCurrentScope().getSingleton(ExecutorService.class).getExecutor(EXECUTOR_NAME, this);
+            if (executor instanceof NoSqlExecutor) {
+                ((NoSqlExecutor) executor).flushWrites();
+            }
+        }
+    }
+
     @Override
     public void checkDatabaseConnection() throws DatabaseException {
         MongoConnection.showErrorMessageIfSomeRequiredDependenciesAreNotPresent(true);
@@ -0,0 +1,106 @@
+package liquibase.ext.mongodb.database;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2021 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import liquibase.exception.DatabaseException;
+import liquibase.ext.mongodb.statement.ListCollectionOptionsStatement;
+import liquibase.nosql.executor.NoSqlExecutor;
+import org.bson.Document;
+
+import java.util.Arrays;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Discovers the History Change Log and Lock collections with their options in a single listCollections,
+ * shared by the history and lock services of the database so each one creates or adjusts only what is missing.
+ * The discovered state is dropped on the services reset, so each Liquibase invocation discovers it once.
+ */
+public class TrackingCollectionsBootstrap {
+
+    private final MongoLiquibaseDatabase database;
+
+    /**
+     * Options of the existing tracking collections keyed by name, null until discovered
+     */
+    private Document collections;
+
+    public TrackingCollectionsBootstrap(final MongoLiquibaseDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * @param executor       the executor used for the discovery
+     * @param collectionName a tracking collection name
+     * @return true if the collection exists
+     * @throws DatabaseException in case of a discovery failure
+     */
+    public synchronized boolean exists(final NoSqlExecutor executor, final String collectionName) throws DatabaseException {
+        return discover(executor).containsKey(collectionName);
+    }
+
+    /**
+     * @param executor       the executor used for the discovery
+     * @param collectionName a tracking collection name
+     * @return the options of the collection, null if it does not exist
+     * @throws DatabaseException in case of a discovery failure
+     */
+    public synchronized Document getOptions(final NoSqlExecutor executor, final String collectionName) throws DatabaseException {
+        return discover(executor).get(collectionName, Document.class);
+    }
+
+    /**
+     * Records a collection created without options
+     *
+     * @param collectionName the created collection
+     */
+    public synchronized void created(final String collectionName) {
+        if (!isNull(collections)) {
+            collections.put(collectionName, new Document());
+        }
+    }
+
+    /**
+     * Records a dropped collection
+     *
+     * @param collectionName the dropped collection
+     */
+    public synchronized void dropped(final String collectionName) {
+        if (!isNull(collections)) {
+            collections.remove(collectionName);
+        }
+    }
+
+    public synchronized void reset() {
+        collections = null;
+    }
+
+    private Document discover(final NoSqlExecutor executor) throws DatabaseException {
+        if (isNull(collections)) {
+            collections = executor.queryForObject(new ListCollectionOptionsStatement(Arrays.asList(
+                    database.getDatabaseChangeLogTableName(), database.getDatabaseChangeLogLockTableName())), Document.class);
+            if (isNull(collections)) {
+                collections = new Document();
+            }
+        }
+        return collections;
+    }
+}
@@ -20,11 +20,18 @@ package liquibase.ext.mongodb.lockservice;
  * #L%
  */
 
+import com.mongodb.client.model.Filters;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.BsonUtils;
+import liquibase.ext.mongodb.statement.ListCollectionNamesStatement;
 import liquibase.ext.mongodb.statement.RunCommandStatement;
 import lombok.Getter;
 import org.bson.Document;
 
+import java.util.List;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static java.util.Optional.ofNullable;
 
 public class AdjustChangeLogLockCollectionStatement extends RunCommandStatement {
@@ -36,9 +43,20 @@ public class AdjustChangeLogLockCollectionStatement extends RunCommandStatement
     @Getter
     private final String collectionName;
 
+    /**
+     * Options of the collection when already known, read before adjusting otherwise
+     */
+    @Getter
+    private final Document currentOptions;
+
     public AdjustChangeLogLockCollectionStatement(final String collectionName) {
+        this(collectionName, null);
+    }
+
+    public AdjustChangeLogLockCollectionStatement(final String collectionName, final Document currentOptions) {
         super(String.format(OPTIONS, collectionName));
         this.collectionName = collectionName;
+        this.currentOptions = currentOptions;
     }
 
     @Override
@@ -48,11 +66,47 @@ public class AdjustChangeLogLockCollectionStatement extends RunCommandStatement
 
     @Override
     public void execute(final MongoLiquibaseDatabase database) {
-        if(database.getSupportsValidator()) {
+        // collMod takes an exclusive collection lock, skipped when the validator is already current
+        if (database.getSupportsValidator() && !isValidatorCurrent(nonNull(currentOptions) ? currentOptions : findOptions(database))) {
             super.execute(database);
         }
     }
 
+    /**
+     * @param options the options of the collection as returned by listCollections, null when unknown
+     * @return true if the collection already has the validator set by this statement
+     */
+    public boolean isValidatorCurrent(final Document options) {
+        return nonNull(options) && BsonUtils.validatorHash(options).equals(BsonUtils.validatorHash(command));
+    }
+
+    /**
+     * Validators created before lock scopes only accept the int _id of the global Lock document.
+     *
+     * @param options the options of the collection as returned by listCollections
+     * @return false if the validator of the collection rejects a string _id, true otherwise
+     */
+    public static boolean allowsScopedLockId(final Document options) {
+        final Object bsonType = ofNullable(options)
+                .map(o -> o.get("validator", Document.class))
+                .map(v -> v.get("$jsonSchema", Document.class))
+                .map(s -> s.get("properties", Document.class))
+                .map(p -> p.get(MongoChangeLogLock.Fields.id, Document.class))
+                .map(i -> i.get("bsonType"))
+                .orElse(null);
+        if (isNull(bsonType)) {
+            return true;
+        }
+        return bsonType instanceof List ? ((List<?>) bsonType).contains("string") : "string".equals(bsonType);
+    }
+
+    private Document findOptions(final MongoLiquibaseDatabase database) {
+        return ofNullable(database.getMongoDatabase().listCollections()
+                .filter(Filters.eq(ListCollectionNamesStatement.NAME, getCollectionName())).first())
+                .map(c -> c.get(ListCollectionNamesStatement.OPTIONS, Document.class))
+                .orElse(null);
+    }
+
     @Override
     public String toJs() {
         return SHELL_DB_PREFIX
@@ -32,8 +32,8 @@ public class CreateChangeLogLockCollectionStatement extends CreateCollectionStat
             + "         \"required\": [\"_id\", \"locked\"],\n"
             + "             \"properties\": {\n"
             + "                 \"_id\": {\n"
-            + "                     \"bsonType\": \"int\",\n"
-            + "                     \"description\": \"Unique lock identifier\"\n"
+            + "                     \"bsonType\": [\"int\", \"string\"],\n"
+            + "                     \"description\": \"Unique lock identifier, 1 or the lock scope\"\n"
             + "                 },\n"
             + "                 \"locked\": {\n"
             + "                     \"bsonType\": \"bool\",\n"
@@ -27,6 +27,8 @@ import lombok.Getter;
 
 import java.util.Date;
 
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static java.util.Optional.ofNullable;
 
 public class MongoChangeLogLock extends DatabaseChangeLogLock {
@@ -36,18 +38,79 @@ public class MongoChangeLogLock extends DatabaseChangeLogLock {
         public static final String lockGranted = "lockGranted";
         public static final String lockedBy = "lockedBy";
         public static final String locked = "locked";
+        public static final String expiresAt = "expiresAt";
+        public static final String fencingToken = "fencingToken";
+        /**
+         * Shared holders, each with a readerId, lockedBy, lockGranted and expiresAt
+         */
+        public static final String readers = "readers";
+        public static final String readerId = "readerId";
     }
 
     @Getter
     private final Boolean locked;
 
+    /**
+     * End of the lease, null when the lock does not expire
+     */
+    @Getter
+    private final Date expiresAt;
+
+    /**
+     * Incremented on each lease acquisition, null when never acquired with a lease
+     */
+    @Getter
+    private final Long fencingToken;
+
+    /**
+     * Name of the scope stored as the _id of the lock document, null for the global lock with _id 1
+     */
+    @Getter
+    private final String scope;
+
     public MongoChangeLogLock() {
         this(1, new Date(), "NoArgConstructor", true);
     }
 
     public MongoChangeLogLock(final Integer id, final Date lockGranted, final String lockedBy, final Boolean locked) {
+        this(id, lockGranted, lockedBy, locked, null, null);
+    }
+
+    public MongoChangeLogLock(final Integer id, final Date lockGranted, final String lockedBy, final Boolean locked,
+                              final Date expiresAt, final Long fencingToken) {
+        this(id, lockGranted, lockedBy, locked, expiresAt, fencingToken, null);
+    }
+
+    public MongoChangeLogLock(final Integer id, final Date lockGranted, final String lockedBy, final Boolean locked,
+                              final Date expiresAt, final Long fencingToken, final String scope) {
         super(id, lockGranted, lockedBy);
         this.locked = locked;
+        this.expiresAt = expiresAt;
+        this.fencingToken = fencingToken;
+        this.scope = scope;
+    }
+
+    /**
+     * @return the _id of the lock document
+     */
+    public Object getLockId() {
+        return isNull(scope) ? getId() : scope;
+    }
+
+    /**
+     * @param scope the lock scope, null for the global lock
+     * @return the _id of the lock document of the scope
+     */
+    public static Object lockId(final String scope) {
+        return isNull(scope) ? (Object) 1 : scope;
+    }
+
+    /**
+     * @param now the current time
+     * @return true if the lock is held by a lease which ended before now
+     */
+    public boolean isExpired(final Date now) {
+        return nonNull(expiresAt) && expiresAt.before(now);
     }
 
     @Override
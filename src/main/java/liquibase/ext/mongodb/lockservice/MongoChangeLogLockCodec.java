@@ -0,0 +1,124 @@
+package liquibase.ext.mongodb.lockservice;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.util.Date;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Reads and writes Lock Collection entries straight from and to BSON, without an intermediate {@link org.bson.Document}.
+ * Produces the same documents as {@link MongoChangeLogLockToDocumentConverter}, fields not known are skipped on read.
+ */
+public class MongoChangeLogLockCodec implements Codec<MongoChangeLogLock> {
+
+    @Override
+    public MongoChangeLogLock decode(final BsonReader reader, final DecoderContext decoderContext) {
+
+        Integer id = null;
+        Date lockGranted = null;
+        String lockedBy = null;
+        Boolean locked = null;
+        Date expiresAt = null;
+        Long fencingToken = null;
+        String scope = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            final String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            switch (name) {
+                case MongoChangeLogLock.Fields.id:
+                    // Scoped locks are identified by the scope name, the global lock by 1
+                    if (reader.getCurrentBsonType() == BsonType.STRING) {
+                        scope = reader.readString();
+                        id = 1;
+                    } else {
+                        id = reader.readInt32();
+                    }
+                    break;
+                case MongoChangeLogLock.Fields.lockGranted:
+                    lockGranted = new Date(reader.readDateTime());
+                    break;
+                case MongoChangeLogLock.Fields.lockedBy:
+                    lockedBy = reader.readString();
+                    break;
+                case MongoChangeLogLock.Fields.locked:
+                    locked = reader.readBoolean();
+                    break;
+                case MongoChangeLogLock.Fields.expiresAt:
+                    expiresAt = new Date(reader.readDateTime());
+                    break;
+                case MongoChangeLogLock.Fields.fencingToken:
+                    fencingToken = readLong(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return new MongoChangeLogLock(id, lockGranted, lockedBy, locked, expiresAt, fencingToken, scope);
+    }
+
+    @Override
+    public void encode(final BsonWriter writer, final MongoChangeLogLock value, final EncoderContext encoderContext) {
+
+        writer.writeStartDocument();
+        if (nonNull(value.getScope())) {
+            writer.writeString(MongoChangeLogLock.Fields.id, value.getScope());
+        } else {
+            writer.writeInt32(MongoChangeLogLock.Fields.id, value.getId());
+        }
+        writer.writeName(MongoChangeLogLock.Fields.lockGranted);
+        if (isNull(value.getLockGranted())) {
+            writer.writeNull();
+        } else {
+            writer.writeDateTime(value.getLockGranted().getTime());
+        }
+        writer.writeName(MongoChangeLogLock.Fields.lockedBy);
+        if (isNull(value.getLockedBy())) {
+            writer.writeNull();
+        } else {
+            writer.writeString(value.getLockedBy());
+        }
+        writer.writeName(MongoChangeLogLock.Fields.locked);
+        if (isNull(value.getLocked())) {
+            writer.writeNull();
+        } else {
+            writer.writeBoolean(value.getLocked());
+        }
+        if (nonNull(value.getExpiresAt())) {
+            writer.writeDateTime(MongoChangeLogLock.Fields.expiresAt, value.getExpiresAt().getTime());
+        }
+        if (nonNull(value.getFencingToken())) {
+            writer.writeInt64(MongoChangeLogLock.Fields.fencingToken, value.getFencingToken());
+        }
+        writer.writeEndDocument();
+    }
+
+    private static long readLong(final BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case DOUBLE:
+                return (long) reader.readDouble();
+            default:
+                return reader.readInt64();
+        }
+    }
+
+    @Override
+    public Class<MongoChangeLogLock> getEncoderClass() {
+        return MongoChangeLogLock.class;
+    }
+}
@@ -5,26 +5,42 @@ import org.bson.Document;
 
 import java.util.Date;
 
+import static java.util.Objects.nonNull;
+import static java.util.Optional.ofNullable;
+
 public class MongoChangeLogLockToDocumentConverter extends AbstractNoSqlItemToDocumentConverter<MongoChangeLogLock, Document> {
 
     @Override
     public Document toDocument(final MongoChangeLogLock item) {
 
-        return new Document()
-                .append(MongoChangeLogLock.Fields.id, item.getId())
+        final Document document = new Document()
+                .append(MongoChangeLogLock.Fields.id, item.getLockId())
                 .append(MongoChangeLogLock.Fields.lockGranted, item.getLockGranted())
                 .append(MongoChangeLogLock.Fields.lockedBy, item.getLockedBy())
                 .append(MongoChangeLogLock.Fields.locked, item.getLocked());
+        // Lease fields are only stored by locks acquired in lease mode
+        if (nonNull(item.getExpiresAt())) {
+            document.append(MongoChangeLogLock.Fields.expiresAt, item.getExpiresAt());
+        }
+        if (nonNull(item.getFencingToken())) {
+            document.append(MongoChangeLogLock.Fields.fencingToken, item.getFencingToken());
+        }
+        return document;
     }
 
     @Override
     public MongoChangeLogLock fromDocument(final Document document) {
 
+        // Scoped locks are identified by the scope name, the global lock by 1
+        final Object id = document.get(MongoChangeLogLock.Fields.id);
         return new MongoChangeLogLock(
-                document.get(MongoChangeLogLock.Fields.id, Integer.class)
+                id instanceof String ? 1 : (Integer) id
                 , document.get(MongoChangeLogLock.Fields.lockGranted, Date.class)
                 , document.get(MongoChangeLogLock.Fields.lockedBy, String.class)
                 , document.get(MongoChangeLogLock.Fields.locked, Boolean.class)
+                , document.get(MongoChangeLogLock.Fields.expiresAt, Date.class)
+                , ofNullable(document.get(MongoChangeLogLock.Fields.fencingToken, Number.class)).map(Number::longValue).orElse(null)
+                , id instanceof String ? (String) id : null
         );
     }
 }
\ No newline at end of file
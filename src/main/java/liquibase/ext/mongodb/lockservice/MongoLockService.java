@@ -21,26 +21,39 @@ package liquibase.ext.mongodb.lockservice;
  */
 
 import com.mongodb.MongoInterruptedException;
+import com.mongodb.client.model.Filters;
 import liquibase.Scope;
 import liquibase.database.Database;
 import liquibase.exception.DatabaseException;
 import liquibase.exception.LockException;
+import liquibase.ext.mongodb.configuration.MongoConfiguration;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
 import liquibase.ext.mongodb.statement.CountCollectionByNameStatement;
 import liquibase.ext.mongodb.statement.DropCollectionStatement;
-import liquibase.ext.mongodb.statement.FindAllStatement;
+import liquibase.ext.mongodb.statement.FindAllAsStatement;
+import liquibase.ext.mongodb.statement.ListCollectionOptionsStatement;
 import liquibase.lockservice.DatabaseChangeLogLock;
 import liquibase.logging.Logger;
 import liquibase.nosql.lockservice.AbstractNoSqlLockService;
+import liquibase.nosql.statement.NoSqlUpdateStatement;
 import liquibase.statement.SqlStatement;
 import lombok.Getter;
 import org.bson.Document;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Optional.ofNullable;
 
 public class MongoLockService extends AbstractNoSqlLockService<MongoLiquibaseDatabase> {
 
@@ -49,6 +62,34 @@ public class MongoLockService extends AbstractNoSqlLockService<MongoLiquibaseDat
     @Getter
     private final MongoChangeLogLockToDocumentConverter converter;
 
+    /**
+     * Set once opening a change stream failed, waiters then poll
+     */
+    private boolean changeStreamUnavailable;
+
+    /**
+     * Fencing token read with the lock state, expected unchanged when acquiring the lease
+     */
+    private Long observedFencingToken;
+
+    /**
+     * Fencing token of the lease held by this instance
+     */
+    @Getter
+    private volatile Long fencingToken;
+
+    private volatile long leaseValidUntil;
+
+    private volatile boolean leaseLost;
+
+    private ScheduledExecutorService heartbeat;
+
+    /**
+     * Identifies the shared hold of this instance, null when not held
+     */
+    @Getter
+    private String readerId;
+
     public MongoLockService() {
         super();
         this.converter = new MongoChangeLogLockToDocumentConverter();
@@ -61,17 +102,49 @@ public class MongoLockService extends AbstractNoSqlLockService<MongoLiquibaseDat
 
     @Override
     protected Boolean isLocked() throws DatabaseException {
-        Optional<Document> lock = Optional.ofNullable(getExecutor()
-                .queryForObject(new SelectChangeLogLockStatement(getDatabaseChangeLogLockTableName()), Document.class));
-        return lock.map(getConverter()::fromDocument).map(MongoChangeLogLock::getLocked).orElse(FALSE);
+        final MongoChangeLogLock lock = ofNullable(getExecutor()
+                .queryForObject(new SelectChangeLogLockStatement(getDatabaseChangeLogLockTableName(), getScope()), Document.class))
+                .map(getConverter()::fromDocument).orElse(null);
+        observedFencingToken = isNull(lock) ? null : lock.getFencingToken();
+        if (isNull(lock) || !TRUE.equals(lock.getLocked())) {
+            return FALSE;
+        }
+        if (isLease() && nonNull(lock.getExpiresAt()) && lock.isExpired(new Date(getClock().millis()))) {
+            getLogger().warning("Lock lease of " + lock.getLockedBy() + " expired at " + lock.getExpiresAt() + ", taking it over");
+            return FALSE;
+        }
+        return TRUE;
+    }
+
+    /**
+     * The lock is acquired with a single conditional upsert. Only the lease mode reads the lock first,
+     * to take over an expired lease with the fencing token seen.
+     */
+    @Override
+    protected boolean isLockCheckedBeforeAcquire() {
+        return isLease() && !isShared();
     }
 
     @Override
     protected int replaceLock(final boolean locked) throws DatabaseException {
+        if (isShared()) {
+            return replaceSharedLock(locked);
+        }
+        if (!locked) {
+            stopHeartbeat();
+        }
+        final ReplaceChangeLogLockStatement statement = isLease()
+                ? new ReplaceChangeLogLockStatement(getDatabaseChangeLogLockTableName(), locked, getLeaseDuration(),
+                locked ? observedFencingToken : fencingToken, getScope())
+                : new ReplaceChangeLogLockStatement(getDatabaseChangeLogLockTableName(), locked, 0L, null, getScope());
         try {
-            return getExecutor().update(
-                    new ReplaceChangeLogLockStatement(getDatabaseChangeLogLockTableName(), locked)
-            );
+            final int rowsUpdated = getExecutor().update(statement);
+            if (locked && rowsUpdated == 1 && statement.isLease()) {
+                startHeartbeat(statement.getNextFencingToken());
+            } else if (!locked) {
+                fencingToken = null;
+            }
+            return rowsUpdated;
         } catch (DatabaseException e) {
             // Mongo driver does not allow to release lock if thread is interrupted
             // Next code clears interrupted flag if it is happened due to of the timeout
@@ -90,18 +163,206 @@ public class MongoLockService extends AbstractNoSqlLockService<MongoLiquibaseDat
         }
     }
 
+    @Override
+    protected void awaitLockRelease(final int attempt, final long remainingMillis) {
+        if (getDatabase().getLockChangeStream() && !changeStreamUnavailable) {
+            try {
+                // Bounded by the recheck time too, as a safety net for holds expiring on a skewed clock
+                final long waitMillis = Math.min(remainingMillis, Math.max(1L, getChangeLogLockRecheckTime() * 1000));
+                final Boolean released = getExecutor().queryForObject(
+                        new WatchChangeLogLockStatement(getDatabaseChangeLogLockTableName(), waitMillis, isShared(), getScope()), Boolean.class);
+                getLogger().fine("Lock Collection change stream returned, released: " + released);
+                return;
+            } catch (final DatabaseException e) {
+                changeStreamUnavailable = true;
+                getLogger().info("Change streams are not available on the Lock Collection, polling instead: "
+                        + ofNullable(e.getCause()).map(Throwable::getMessage).orElse(e.getMessage()));
+            }
+        }
+        super.awaitLockRelease(attempt, remainingMillis);
+    }
+
+    /**
+     * Shared holds are not fenced. They are renewed by the heartbeat like a lease, so a long read keeps exclusive
+     * holders out, and only expire after the shared lock duration once their holder stopped, like a crashed process.
+     * A hold which could not be renewed in time may have let an exclusive holder in: its release then returns 0,
+     * failing the command as its reads may mix states.
+     */
+    private int replaceSharedLock(final boolean locked) throws DatabaseException {
+        final String id = locked ? UUID.randomUUID().toString() : readerId;
+        if (!locked && isNull(id)) {
+            // Nothing held by this instance, like on forceReleaseLock
+            return 1;
+        }
+        final boolean holdLost = !locked && (leaseLost || getClock().millis() > leaseValidUntil);
+        if (!locked) {
+            stopHeartbeat();
+        }
+        final int rowsUpdated = getExecutor().update(new SharedChangeLogLockStatement(getDatabaseChangeLogLockTableName(),
+                locked, id, MongoConfiguration.SHARED_LOCK_DURATION.getCurrentValue(), getScope()));
+        if (locked && rowsUpdated == 1) {
+            readerId = id;
+            startSharedHeartbeat(id);
+        } else if (!locked) {
+            readerId = null;
+        }
+        return holdLost ? 0 : rowsUpdated;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        if (nonNull(getDatabase())) {
+            getDatabase().getTrackingCollections().reset();
+        }
+        changeStreamUnavailable = false;
+        stopHeartbeat();
+        fencingToken = null;
+        readerId = null;
+    }
+
+    /**
+     * Fails when this instance cannot record changeSets: it only holds the shared lock, or it lost its lease.
+     *
+     * @throws LockException if changeSets cannot be recorded
+     */
+    public void checkWritable() throws LockException {
+        if (nonNull(readerId)) {
+            throw new LockException("Cannot record changeSets while holding the shared change log lock, disable "
+                    + MongoConfiguration.SHARED_LOCK.getKey());
+        }
+        checkLease();
+    }
+
+    /**
+     * Fails when this instance holds the Lock as a lease which was taken over or could not be renewed in time,
+     * so a holder resumed after a pause does not keep writing once another instance may have taken over.
+     * <p>
+     * The fencing is client side and best-effort: the History writes are not conditioned on the fencing token on the
+     * server, which would need the Lock and History Change Log Collections to be written in one transaction.
+     * A holder paused after this check, for longer than the lease, can still store the write it was about to make.
+     *
+     * @throws LockException if the lease was lost
+     */
+    public void checkLease() throws LockException {
+        final Long token = fencingToken;
+        if (nonNull(token) && (leaseLost || getClock().millis() > leaseValidUntil)) {
+            throw new LockException("Lost the change log lock lease with fencing token " + token);
+        }
+    }
+
+    private boolean isLease() {
+        return getDatabase().getLockLease();
+    }
+
+    private boolean isShared() {
+        return getDatabase().getSharedLock();
+    }
+
+    /**
+     * @return the lock scope, each scope having its own lock document, null for the global lock
+     */
+    public String getScope() {
+        return getDatabase().getLockScope();
+    }
+
+    @Override
+    protected long getTrackingCollectionCacheTtl() {
+        return getDatabase().getTrackingCollectionCacheTtl();
+    }
+
+    @Override
+    protected boolean isReadOnly() {
+        return nonNull(getDatabase()) && Boolean.TRUE.equals(getDatabase().getReadOnly());
+    }
+
+    @Override
+    protected boolean isParallelChangeSets() {
+        return nonNull(getDatabase()) && Boolean.TRUE.equals(getDatabase().getParallelChangeSets());
+    }
+
+    private long getLeaseDuration() {
+        return MongoConfiguration.LOCK_LEASE_DURATION.getCurrentValue();
+    }
+
+    private synchronized void startHeartbeat(final long token) {
+        final long leaseMillis = getLeaseDuration();
+        startHeartbeat(new RenewChangeLogLockStatement(getDatabaseChangeLogLockTableName(), leaseMillis, token, getScope()),
+                leaseMillis, "Lock lease with fencing token " + token);
+        this.fencingToken = token;
+    }
+
+    private synchronized void startSharedHeartbeat(final String id) {
+        final long durationMillis = MongoConfiguration.SHARED_LOCK_DURATION.getCurrentValue();
+        startHeartbeat(new RenewSharedChangeLogLockStatement(getDatabaseChangeLogLockTableName(), id, durationMillis, getScope()),
+                durationMillis, "Shared Lock hold " + id);
+    }
+
+    /**
+     * Renews the exclusive lease or the shared hold every third of its duration until released or lost
+     */
+    private synchronized void startHeartbeat(final NoSqlUpdateStatement<MongoLiquibaseDatabase> renewStatement,
+                                             final long durationMillis, final String hold) {
+        stopHeartbeat();
+        final MongoLiquibaseDatabase database = getDatabase();
+
+        this.leaseLost = false;
+        this.leaseValidUntil = getClock().millis() + durationMillis;
+
+        // Talks to the database directly as the Liquibase scope is not inherited by the heartbeat thread
+        final long period = Math.max(1L, durationMillis / 3);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "liquibase-mongodb-lock-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(() -> {
+            if (leaseLost) {
+                return;
+            }
+            final long renewedAt = getClock().millis();
+            try {
+                if (renewStatement.update(database) == 1) {
+                    leaseValidUntil = renewedAt + durationMillis;
+                } else {
+                    leaseLost = true;
+                    getLogger().severe(hold + " was released or taken over");
+                }
+            } catch (final RuntimeException e) {
+                getLogger().warning("Could not renew the " + hold, e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void stopHeartbeat() {
+        if (nonNull(heartbeat)) {
+            heartbeat.shutdownNow();
+            heartbeat = null;
+        }
+    }
+
     @Override
     protected List<DatabaseChangeLogLock> queryLocks() throws DatabaseException {
 
-        final SqlStatement findAllStatement = new FindAllStatement(getDatabaseChangeLogLockTableName());
+        // Only the lock of the own scope, the locks of other scopes do not block this instance
+        final SqlStatement findAllStatement = new FindAllAsStatement<>(getDatabaseChangeLogLockTableName(), MongoChangeLogLock.class,
+                Filters.eq(MongoChangeLogLock.Fields.id, MongoChangeLogLock.lockId(getScope())), new Document(), null);
 
-        return getExecutor().queryForList(findAllStatement, Document.class).stream().map(Document.class::cast)
-                .map(getConverter()::fromDocument).filter(MongoChangeLogLock::getLocked).collect(Collectors.toList());
+        final List<DatabaseChangeLogLock> locks = new ArrayList<>();
+        getExecutor().queryForEach(findAllStatement, MongoChangeLogLock.class, lock -> {
+            if (lock.getLocked()) {
+                locks.add(lock);
+            }
+        });
+        return locks;
     }
 
     @Override
     protected Boolean existsRepository() throws DatabaseException {
         try {
+            if (getDatabase().getConsolidatedBootstrap()) {
+                return getDatabase().getTrackingCollections().exists(getExecutor(), getDatabaseChangeLogLockTableName());
+            }
             return getExecutor().queryForLong(new CountCollectionByNameStatement(getDatabase().getDatabaseChangeLogLockTableName())) == 1L;
         } catch (DatabaseException e){
             if("Could not query for long".equalsIgnoreCase(e.getMessage())){
@@ -118,6 +379,7 @@ public class MongoLockService extends AbstractNoSqlLockService<MongoLiquibaseDat
         final CreateChangeLogLockCollectionStatement createChangeLogLockCollectionStatement =
                 new CreateChangeLogLockCollectionStatement(getDatabaseChangeLogLockTableName());
         getExecutor().execute(createChangeLogLockCollectionStatement);
+        getDatabase().getTrackingCollections().created(getDatabaseChangeLogLockTableName());
     }
 
     @Override
@@ -126,7 +388,11 @@ public class MongoLockService extends AbstractNoSqlLockService<MongoLiquibaseDat
             this.getLogger().info("Adjusting database Lock Collection with name: "
                     + getDatabase().getConnection().getCatalog() + "." + getDatabaseChangeLogLockTableName());
 
-            getExecutor().execute(new AdjustChangeLogLockCollectionStatement(getDatabaseChangeLogLockTableName()));
+            // Options already discovered by the bootstrap are not read again
+            final Document currentOptions = getDatabase().getConsolidatedBootstrap()
+                    ? getDatabase().getTrackingCollections().getOptions(getExecutor(), getDatabaseChangeLogLockTableName())
+                    : null;
+            getExecutor().execute(new AdjustChangeLogLockCollectionStatement(getDatabaseChangeLogLockTableName(), currentOptions));
 
             this.getLogger().info("Adjusted database Lock Collection with name: "
                     + getDatabase().getConnection().getCatalog() + "." + getDatabaseChangeLogLockTableName());
@@ -134,6 +400,28 @@ public class MongoLockService extends AbstractNoSqlLockService<MongoLiquibaseDat
         } else {
             this.getLogger().info("Skipped Adjusting database Lock Collection with name: "
                     + getDatabase().getConnection().getCatalog() + "." + getDatabaseChangeLogLockTableName());
+            if (nonNull(getScope())) {
+                verifyScopedLockId();
+            }
+        }
+    }
+
+    /**
+     * The scoped Lock document has a string _id which an unadjusted validator rejects on the first acquire
+     * with an opaque validation error, so this is checked once when the collection is not adjusted.
+     */
+    private void verifyScopedLockId() throws DatabaseException {
+        final String collectionName = getDatabaseChangeLogLockTableName();
+        final Document options = getDatabase().getConsolidatedBootstrap()
+                ? getDatabase().getTrackingCollections().getOptions(getExecutor(), collectionName)
+                : ofNullable(getExecutor().queryForObject(
+                        new ListCollectionOptionsStatement(Collections.singletonList(collectionName)), Document.class))
+                        .map(o -> o.get(collectionName, Document.class))
+                        .orElse(null);
+        if (!AdjustChangeLogLockCollectionStatement.allowsScopedLockId(options)) {
+            throw new DatabaseException("The validator of the Lock Collection " + collectionName
+                    + " rejects the string _id of lockScope '" + getScope() + "'. Run once with adjustTrackingTablesOnStartup "
+                    + "enabled to update the validator, or leave lockScope empty");
         }
     }
 
@@ -141,6 +429,7 @@ public class MongoLockService extends AbstractNoSqlLockService<MongoLiquibaseDat
     protected void dropRepository() throws DatabaseException {
         getExecutor().execute(
                 new DropCollectionStatement(getDatabaseChangeLogLockTableName()));
+        getDatabase().getTrackingCollections().dropped(getDatabaseChangeLogLockTableName());
     }
 
     @Override
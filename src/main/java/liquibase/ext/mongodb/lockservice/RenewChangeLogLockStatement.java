@@ -0,0 +1,92 @@
+package liquibase.ext.mongodb.lockservice;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.AbstractCollectionStatement;
+import liquibase.nosql.statement.NoSqlUpdateStatement;
+import lombok.Getter;
+
+import java.util.Date;
+
+import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
+
+/**
+ * Extends the lease of the lock, only while it is still held with the given fencing token.
+ * Returns 0 when the lease was released or taken over.
+ */
+@Getter
+public class RenewChangeLogLockStatement extends AbstractCollectionStatement
+        implements NoSqlUpdateStatement<MongoLiquibaseDatabase> {
+
+    public static final String COMMAND_NAME = "renewLock";
+
+    private final long leaseMillis;
+
+    private final long fencingToken;
+
+    /**
+     * Lock scope, null for the global lock
+     */
+    private final String scope;
+
+    public RenewChangeLogLockStatement(final String collectionName, final long leaseMillis, final long fencingToken) {
+        this(collectionName, leaseMillis, fencingToken, null);
+    }
+
+    public RenewChangeLogLockStatement(final String collectionName, final long leaseMillis, final long fencingToken, final String scope) {
+        super(collectionName);
+        this.leaseMillis = leaseMillis;
+        this.fencingToken = fencingToken;
+        this.scope = scope;
+    }
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public String toJs() {
+        return SHELL_DB_PREFIX +
+                getCollectionName() +
+                "." +
+                getCommandName() +
+                "(" +
+                fencingToken +
+                ");";
+    }
+
+    @Override
+    public int update(final MongoLiquibaseDatabase database) {
+        return (int) database.getMongoDatabase().getCollection(getCollectionName())
+                .updateOne(
+                        Filters.and(
+                                Filters.eq(MongoChangeLogLock.Fields.id, MongoChangeLogLock.lockId(scope)),
+                                Filters.eq(MongoChangeLogLock.Fields.locked, true),
+                                Filters.eq(MongoChangeLogLock.Fields.fencingToken, fencingToken)
+                        ),
+                        Updates.set(MongoChangeLogLock.Fields.expiresAt, new Date(System.currentTimeMillis() + leaseMillis))
+                ).getMatchedCount();
+    }
+}
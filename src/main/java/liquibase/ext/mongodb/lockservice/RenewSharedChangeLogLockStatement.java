@@ -0,0 +1,89 @@
+package liquibase.ext.mongodb.lockservice;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.AbstractCollectionStatement;
+import liquibase.nosql.statement.NoSqlUpdateStatement;
+import lombok.Getter;
+
+import java.util.Date;
+
+import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
+
+/**
+ * Extends a shared hold on the lock, only while its entry is still in the readers array.
+ * Returns 0 when the hold was released, or dropped by an exclusive holder once expired.
+ */
+@Getter
+public class RenewSharedChangeLogLockStatement extends AbstractCollectionStatement
+        implements NoSqlUpdateStatement<MongoLiquibaseDatabase> {
+
+    public static final String COMMAND_NAME = "renewSharedLock";
+
+    private final String readerId;
+
+    private final long durationMillis;
+
+    /**
+     * Lock scope, null for the global lock
+     */
+    private final String scope;
+
+    public RenewSharedChangeLogLockStatement(final String collectionName, final String readerId, final long durationMillis,
+                                             final String scope) {
+        super(collectionName);
+        this.readerId = readerId;
+        this.durationMillis = durationMillis;
+        this.scope = scope;
+    }
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public String toJs() {
+        return SHELL_DB_PREFIX +
+                getCollectionName() +
+                "." +
+                getCommandName() +
+                "(" +
+                readerId +
+                ");";
+    }
+
+    @Override
+    public int update(final MongoLiquibaseDatabase database) {
+        return (int) database.getMongoDatabase().getCollection(getCollectionName())
+                .updateOne(
+                        Filters.and(
+                                Filters.eq(MongoChangeLogLock.Fields.id, MongoChangeLogLock.lockId(scope)),
+                                Filters.eq(MongoChangeLogLock.Fields.readers + "." + MongoChangeLogLock.Fields.readerId, readerId)
+                        ),
+                        Updates.set(MongoChangeLogLock.Fields.readers + ".$." + MongoChangeLogLock.Fields.expiresAt,
+                                new Date(System.currentTimeMillis() + durationMillis))
+                ).getMatchedCount();
+    }
+}
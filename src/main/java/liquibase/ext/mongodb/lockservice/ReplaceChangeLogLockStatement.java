@@ -20,7 +20,9 @@ package liquibase.ext.mongodb.lockservice;
  * #L%
  */
 
+import com.mongodb.ErrorCategory;
 import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndReplaceOptions;
 import com.mongodb.client.model.ReturnDocument;
@@ -28,10 +30,16 @@ import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
 import liquibase.ext.mongodb.statement.AbstractCollectionStatement;
 import liquibase.nosql.statement.NoSqlUpdateStatement;
 import lombok.Getter;
+import org.bson.Document;
 import org.bson.conversions.Bson;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.Objects;
 
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Optional.ofNullable;
 import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
 
 @Getter
@@ -39,13 +47,53 @@ public class ReplaceChangeLogLockStatement extends AbstractCollectionStatement
         implements NoSqlUpdateStatement<MongoLiquibaseDatabase> {
 
     public static final String COMMAND_NAME = "updateLock";
-    private static final Integer DUPLICATE_KEY_ERROR_CODE = 11000;
 
     private final boolean locked;
 
+    /**
+     * Duration of the lease in milliseconds, 0 when the lock does not expire
+     */
+    private final long leaseMillis;
+
+    /**
+     * In lease mode, the fencing token last seen when locking or the one held when releasing
+     */
+    private final Long fencingToken;
+
+    /**
+     * Lock scope, null for the global lock
+     */
+    private final String scope;
+
     public ReplaceChangeLogLockStatement(String collectionName, boolean locked) {
+        this(collectionName, locked, 0L, null);
+    }
+
+    public ReplaceChangeLogLockStatement(final String collectionName, final boolean locked, final long leaseMillis, final Long fencingToken) {
+        this(collectionName, locked, leaseMillis, fencingToken, null);
+    }
+
+    public ReplaceChangeLogLockStatement(final String collectionName, final boolean locked, final long leaseMillis,
+                                         final Long fencingToken, final String scope) {
         super(collectionName);
         this.locked = locked;
+        this.leaseMillis = leaseMillis;
+        this.fencingToken = fencingToken;
+        this.scope = scope;
+    }
+
+    public boolean isLease() {
+        return leaseMillis > 0;
+    }
+
+    /**
+     * @return the fencing token stored by this statement in lease mode
+     */
+    public Long getNextFencingToken() {
+        if (!isLease()) {
+            return null;
+        }
+        return locked ? ofNullable(fencingToken).orElse(0L) + 1 : fencingToken;
     }
 
     @Override
@@ -66,70 +114,160 @@ public class ReplaceChangeLogLockStatement extends AbstractCollectionStatement
 
     @Override
     public int update(final MongoLiquibaseDatabase database) {
+        final Date now = new Date();
         final MongoChangeLogLock lock = new MongoChangeLogLock(
                 1,
-                new Date(),
+                now,
                 MongoChangeLogLock.formLockedBy(),
-                locked
+                locked,
+                isLease() && locked ? new Date(now.getTime() + leaseMillis) : null,
+                getNextFencingToken(),
+                scope
         );
-        
-        // Check if document exists first
-        long documentCount = database.getMongoDatabase()
-                .getCollection(collectionName)
-                .countDocuments(Filters.eq(MongoChangeLogLock.Fields.id, lock.getId()));
-        
-        if (documentCount == 0) {
-            // No document exists, create it with upsert and simple filter (DocumentDB compatible)
-            return this.update(
-                    database,
-                    Filters.eq(MongoChangeLogLock.Fields.id, lock.getId()),
-                    lock,
-                    true
-            );
+
+        if (database.getLockCompareAndSet()) {
+            return compareAndSet(database, lock, now);
+        }
+
+        // Single conditional upsert: matches an unlocked (or expired) lock, creates a missing one,
+        // and fails with a duplicate key on the _id when the lock exists but does not match.
+        // A release never creates the lock, it only matches the one held
+        return this.update(database, getFilter(lock, now), lock);
+    }
+
+    /**
+     * Same conditions as {@link #getFilter(MongoChangeLogLock, Date)}, checked on the client against the stored lock,
+     * which is then replaced only if the fields the conditions depend on did not change in between,
+     * matched field by field with equality filters only
+     */
+    private int compareAndSet(final MongoLiquibaseDatabase database, final MongoChangeLogLock lock, final Date now) {
+        final MongoCollection<Document> collection = database.getMongoDatabase().getCollection(collectionName);
+        final Document replacement = new MongoChangeLogLockToDocumentConverter().toDocument(lock);
+        final Document current = collection.find(Filters.eq(MongoChangeLogLock.Fields.id, lock.getLockId())).first();
+        if (isNull(current)) {
+            if (!locked) {
+                // Nothing to release
+                return 0;
+            }
+            try {
+                collection.insertOne(replacement);
+                return 1;
+            } catch (MongoException e) {
+                if (isDuplicateKey(e)) {
+                    return 0;
+                }
+                throw e;
+            }
+        }
+        if (!matches(current, lock, now)) {
+            return 0;
+        }
+        return (int) collection.replaceOne(unchanged(current), replacement).getMatchedCount();
+    }
+
+    /**
+     * Matches the stored lock as read, by _id and the fields {@link #matches(Document, MongoChangeLogLock, Date)} checks,
+     * whatever the order of its fields or the other fields it has
+     */
+    private static Bson unchanged(final Document current) {
+        return Filters.and(
+                Filters.eq(MongoChangeLogLock.Fields.id, current.get(MongoChangeLogLock.Fields.id)),
+                Filters.eq(MongoChangeLogLock.Fields.locked, current.get(MongoChangeLogLock.Fields.locked)),
+                Filters.eq(MongoChangeLogLock.Fields.lockedBy, current.get(MongoChangeLogLock.Fields.lockedBy)),
+                Filters.eq(MongoChangeLogLock.Fields.fencingToken, current.get(MongoChangeLogLock.Fields.fencingToken)),
+                Filters.eq(MongoChangeLogLock.Fields.expiresAt, current.get(MongoChangeLogLock.Fields.expiresAt)),
+                Filters.eq(MongoChangeLogLock.Fields.readers, current.get(MongoChangeLogLock.Fields.readers))
+        );
+    }
+
+    private boolean matches(final Document current, final MongoChangeLogLock lock, final Date now) {
+        final boolean currentlyLocked = current.getBoolean(MongoChangeLogLock.Fields.locked, false);
+        final Long currentFencingToken = ofNullable(current.get(MongoChangeLogLock.Fields.fencingToken, Number.class))
+                .map(Number::longValue).orElse(null);
+        if (this.locked && isLease()) {
+            final Date expiresAt = current.getDate(MongoChangeLogLock.Fields.expiresAt);
+            return Objects.equals(currentFencingToken, fencingToken)
+                    && (!currentlyLocked || (nonNull(expiresAt) && expiresAt.before(now)))
+                    && !hasSharedHolder(current, now);
+        } else if (this.locked) {
+            return !currentlyLocked && !hasSharedHolder(current, now);
+        } else if (isLease() && fencingToken != null) {
+            return currentlyLocked && lock.getLockedBy().equals(current.getString(MongoChangeLogLock.Fields.lockedBy))
+                    && fencingToken.equals(currentFencingToken);
+        } else {
+            return currentlyLocked && lock.getLockedBy().equals(current.getString(MongoChangeLogLock.Fields.lockedBy));
         }
-        
-        // Document exists, perform conditional update without upsert
-        if (this.locked) {
-            // Try to acquire lock - only if currently unlocked
-            return this.update(
-                    database,
-                    Filters.and(
-                            Filters.eq(MongoChangeLogLock.Fields.id, lock.getId()),
-                            Filters.eq(MongoChangeLogLock.Fields.locked, false)
+    }
+
+    private static boolean hasSharedHolder(final Document current, final Date now) {
+        return current.getList(MongoChangeLogLock.Fields.readers, Document.class, Collections.emptyList()).stream()
+                .map(r -> r.getDate(MongoChangeLogLock.Fields.expiresAt))
+                .anyMatch(expiresAt -> nonNull(expiresAt) && expiresAt.after(now));
+    }
+
+    private Bson getFilter(final MongoChangeLogLock lock, final Date now) {
+        if (this.locked && isLease()) {
+            // Acquire lease - only if unlocked or expired, and nobody acquired it since the fencing token was read
+            return Filters.and(
+                    Filters.eq(MongoChangeLogLock.Fields.id, lock.getLockId()),
+                    Filters.eq(MongoChangeLogLock.Fields.fencingToken, fencingToken),
+                    Filters.or(
+                            Filters.eq(MongoChangeLogLock.Fields.locked, false),
+                            Filters.lt(MongoChangeLogLock.Fields.expiresAt, now)
                     ),
-                    lock,
-                    false
+                    noSharedHolder(now)
+            );
+        } else if (this.locked) {
+            // Acquire lock - only if currently unlocked
+            return Filters.and(
+                    Filters.eq(MongoChangeLogLock.Fields.id, lock.getLockId()),
+                    Filters.eq(MongoChangeLogLock.Fields.locked, false),
+                    noSharedHolder(now)
+            );
+        } else if (isLease() && fencingToken != null) {
+            // Release lease - only if not taken over since acquired
+            return Filters.and(
+                    Filters.eq(MongoChangeLogLock.Fields.id, lock.getLockId()),
+                    Filters.eq(MongoChangeLogLock.Fields.locked, true),
+                    Filters.eq(MongoChangeLogLock.Fields.lockedBy, lock.getLockedBy()),
+                    Filters.eq(MongoChangeLogLock.Fields.fencingToken, fencingToken)
             );
         } else {
-            // Try to release lock - only if locked by same host
-            return this.update(
-                    database,
-                    Filters.and(
-                            Filters.eq(MongoChangeLogLock.Fields.id, lock.getId()),
-                            Filters.eq(MongoChangeLogLock.Fields.locked, true),
-                            Filters.eq(MongoChangeLogLock.Fields.lockedBy, lock.getLockedBy())
-                    ),
-                    lock,
-                    false
+            // Release lock - only if locked by same host
+            return Filters.and(
+                    Filters.eq(MongoChangeLogLock.Fields.id, lock.getLockId()),
+                    Filters.eq(MongoChangeLogLock.Fields.locked, true),
+                    Filters.eq(MongoChangeLogLock.Fields.lockedBy, lock.getLockedBy())
             );
         }
     }
 
-    private int update(final MongoLiquibaseDatabase database, final Bson filters, final MongoChangeLogLock lock, final boolean upsert) {
+    /**
+     * Shared holders past their expiry are ignored, and dropped as the lock document is replaced
+     */
+    private static Bson noSharedHolder(final Date now) {
+        return Filters.not(Filters.elemMatch(MongoChangeLogLock.Fields.readers, Filters.gt(MongoChangeLogLock.Fields.expiresAt, now)));
+    }
+
+    private int update(final MongoLiquibaseDatabase database, final Bson filters, final MongoChangeLogLock lock) {
         try {
             Object result = database.getMongoDatabase()
                     .getCollection(collectionName)
                     .findOneAndReplace(
                             filters,
                             new MongoChangeLogLockToDocumentConverter().toDocument(lock),
-                            new FindOneAndReplaceOptions().upsert(upsert).returnDocument(ReturnDocument.AFTER)
+                            new FindOneAndReplaceOptions().upsert(locked).returnDocument(ReturnDocument.AFTER)
                     );
             return result != null ? 1 : 0;
         } catch (MongoException e) {
-            if (e.getCode() == DUPLICATE_KEY_ERROR_CODE) {
+            if (isDuplicateKey(e)) {
                 return 0;
             }
             throw e;
         }
     }
+
+    static boolean isDuplicateKey(final MongoException e) {
+        return ErrorCategory.fromErrorCode(e.getCode()) == ErrorCategory.DUPLICATE_KEY;
+    }
 }
@@ -24,6 +24,7 @@ import com.mongodb.client.model.Filters;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
 import liquibase.ext.mongodb.statement.AbstractCollectionStatement;
 import liquibase.nosql.statement.NoSqlQueryForObjectStatement;
+import lombok.Getter;
 
 import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
 
@@ -32,8 +33,19 @@ implements NoSqlQueryForObjectStatement<MongoLiquibaseDatabase> {
 
     public static final String COMMAND_NAME = "findLock";
 
+    /**
+     * Lock scope, null for the global lock
+     */
+    @Getter
+    private final String scope;
+
     public SelectChangeLogLockStatement(final String collectionName) {
+        this(collectionName, null);
+    }
+
+    public SelectChangeLogLockStatement(final String collectionName, final String scope) {
         super(collectionName);
+        this.scope = scope;
     }
 
     @Override
@@ -55,7 +67,7 @@ implements NoSqlQueryForObjectStatement<MongoLiquibaseDatabase> {
     @Override
     public <T> T queryForObject(final MongoLiquibaseDatabase database, final Class<T> requiredType) {
 
-        return database.getMongoDatabase().getCollection(getCollectionName(), requiredType)
-                .find(Filters.eq(MongoChangeLogLock.Fields.id, 1)).first();
+        return database.getMongoDatabase(getCollectionName()).getCollection(getCollectionName(), requiredType)
+                .find(Filters.eq(MongoChangeLogLock.Fields.id, MongoChangeLogLock.lockId(scope))).first();
     }
 }
@@ -0,0 +1,125 @@
+package liquibase.ext.mongodb.lockservice;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.AbstractCollectionStatement;
+import liquibase.nosql.statement.NoSqlUpdateStatement;
+import lombok.Getter;
+import org.bson.Document;
+
+import java.util.Date;
+
+import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
+
+/**
+ * Acquires or releases a shared hold on the lock, stored as an entry of the readers array of the lock document.
+ * Shared holders coexist with each other but only join while the lock is not held exclusively.
+ */
+@Getter
+public class SharedChangeLogLockStatement extends AbstractCollectionStatement
+        implements NoSqlUpdateStatement<MongoLiquibaseDatabase> {
+
+    public static final String COMMAND_NAME = "updateSharedLock";
+
+    private final boolean locked;
+
+    private final String readerId;
+
+    /**
+     * Duration in milliseconds after which the shared hold no longer blocks exclusive holders
+     */
+    private final long durationMillis;
+
+    /**
+     * Lock scope, null for the global lock
+     */
+    private final String scope;
+
+    public SharedChangeLogLockStatement(final String collectionName, final boolean locked, final String readerId, final long durationMillis) {
+        this(collectionName, locked, readerId, durationMillis, null);
+    }
+
+    public SharedChangeLogLockStatement(final String collectionName, final boolean locked, final String readerId,
+                                        final long durationMillis, final String scope) {
+        super(collectionName);
+        this.locked = locked;
+        this.readerId = readerId;
+        this.durationMillis = durationMillis;
+        this.scope = scope;
+    }
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public String toJs() {
+        return SHELL_DB_PREFIX +
+                getCollectionName() +
+                "." +
+                getCommandName() +
+                "(" +
+                locked +
+                ");";
+    }
+
+    @Override
+    public int update(final MongoLiquibaseDatabase database) {
+        final MongoCollection<Document> collection = database.getMongoDatabase().getCollection(getCollectionName());
+        if (!locked) {
+            return (int) collection.updateOne(
+                    Filters.eq(MongoChangeLogLock.Fields.id, MongoChangeLogLock.lockId(scope)),
+                    Updates.pull(MongoChangeLogLock.Fields.readers, Filters.eq(MongoChangeLogLock.Fields.readerId, readerId))
+            ).getMatchedCount();
+        }
+
+        final Date now = new Date();
+        final Document reader = new Document(MongoChangeLogLock.Fields.readerId, readerId)
+                .append(MongoChangeLogLock.Fields.lockedBy, MongoChangeLogLock.formLockedBy())
+                .append(MongoChangeLogLock.Fields.lockGranted, now)
+                .append(MongoChangeLogLock.Fields.expiresAt, new Date(now.getTime() + durationMillis));
+        try {
+            // Joins an unlocked lock, creates a missing one with locked false, collides on _id when locked exclusively
+            final Document result = collection.findOneAndUpdate(
+                    Filters.and(
+                            Filters.eq(MongoChangeLogLock.Fields.id, MongoChangeLogLock.lockId(scope)),
+                            Filters.eq(MongoChangeLogLock.Fields.locked, false)
+                    ),
+                    Updates.push(MongoChangeLogLock.Fields.readers, reader),
+                    new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)
+            );
+            return result != null ? 1 : 0;
+        } catch (MongoException e) {
+            if (ReplaceChangeLogLockStatement.isDuplicateKey(e)) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+}
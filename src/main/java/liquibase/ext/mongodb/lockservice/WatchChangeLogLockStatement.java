@@ -0,0 +1,201 @@
+package liquibase.ext.mongodb.lockservice;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.AbstractCollectionStatement;
+import liquibase.nosql.statement.NoSqlQueryForObjectStatement;
+import lombok.Getter;
+import org.bson.Document;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+import static java.util.Collections.singletonList;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
+
+/**
+ * Waits on a change stream of the Lock Collection until the lock is released or the timeout elapses.
+ * Returns {@code TRUE} when the lock was seen released, {@code FALSE} on timeout.
+ * Fails with the driver exception when change streams are not supported by the server.
+ * <p>
+ * A lease or a shared hold running out produces no change event, so the wait also ends, with {@code TRUE},
+ * at the earliest expiresAt of the lock or of the shared holders it waits for. The caller then tries to acquire again.
+ */
+@Getter
+public class WatchChangeLogLockStatement extends AbstractCollectionStatement
+        implements NoSqlQueryForObjectStatement<MongoLiquibaseDatabase> {
+
+    public static final String COMMAND_NAME = "watchLock";
+
+    /**
+     * Upper bound of a single server side wait, so the timeout is checked regularly
+     */
+    private static final long MAX_AWAIT_MILLIS = 1000L;
+
+    private final long timeoutMillis;
+
+    /**
+     * Whether the waiter wants a shared hold, which does not wait for the other shared holders
+     */
+    private final boolean shared;
+
+    /**
+     * Lock scope, null for the global lock
+     */
+    private final String scope;
+
+    public WatchChangeLogLockStatement(final String collectionName, final long timeoutMillis) {
+        this(collectionName, timeoutMillis, false);
+    }
+
+    public WatchChangeLogLockStatement(final String collectionName, final long timeoutMillis, final boolean shared) {
+        this(collectionName, timeoutMillis, shared, null);
+    }
+
+    public WatchChangeLogLockStatement(final String collectionName, final long timeoutMillis, final boolean shared, final String scope) {
+        super(collectionName);
+        this.timeoutMillis = timeoutMillis;
+        this.shared = shared;
+        this.scope = scope;
+    }
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public String toJs() {
+        return SHELL_DB_PREFIX +
+                getCollectionName() +
+                "." +
+                getCommandName() +
+                "(" +
+                timeoutMillis +
+                ");";
+    }
+
+    @Override
+    public <T> T queryForObject(final MongoLiquibaseDatabase database, final Class<T> requiredType) {
+        final MongoCollection<Document> collection = database.getMongoDatabase().getCollection(getCollectionName());
+        final long timeToGiveUp = System.currentTimeMillis() + timeoutMillis;
+        final Object lockId = MongoChangeLogLock.lockId(scope);
+
+        // Changes of the lock documents of other scopes are not relevant
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = collection
+                .watch(singletonList(Aggregates.match(Filters.or(
+                        Filters.in("operationType", Arrays.asList("drop", "invalidate")),
+                        Filters.and(
+                                Filters.in("operationType", Arrays.asList("update", "replace", "delete")),
+                                Filters.eq("documentKey." + MongoChangeLogLock.Fields.id, lockId)
+                        )))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(Math.max(1L, Math.min(timeoutMillis, MAX_AWAIT_MILLIS)), TimeUnit.MILLISECONDS)
+                .cursor()) {
+
+            // The lock may have been released before the stream was opened
+            final Document lock = collection.find(Filters.eq(MongoChangeLogLock.Fields.id, lockId)).first();
+            if (isReleased(lock)) {
+                return requiredType.cast(TRUE);
+            }
+
+            long expiresAt = nextExpiry(lock);
+            long now;
+            while ((now = System.currentTimeMillis()) < timeToGiveUp) {
+                if (now >= expiresAt) {
+                    // Expired without any change to the lock document
+                    return requiredType.cast(TRUE);
+                }
+                final ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (isNull(change)) {
+                    continue;
+                }
+                if (change.getOperationType() != OperationType.UPDATE && change.getOperationType() != OperationType.REPLACE) {
+                    return requiredType.cast(TRUE);
+                }
+                if (isReleased(change.getFullDocument())) {
+                    return requiredType.cast(TRUE);
+                }
+                expiresAt = nextExpiry(change.getFullDocument());
+            }
+        }
+        return requiredType.cast(FALSE);
+    }
+
+    /**
+     * @return the earliest time in millis when the holds the waiter waits for expire, Long.MAX_VALUE when none expires
+     */
+    private long nextExpiry(final Document lock) {
+        long expiresAt = Long.MAX_VALUE;
+        if (isNull(lock)) {
+            return expiresAt;
+        }
+        if (lock.getBoolean(MongoChangeLogLock.Fields.locked, false)) {
+            final Date leaseExpiresAt = lock.getDate(MongoChangeLogLock.Fields.expiresAt);
+            if (nonNull(leaseExpiresAt)) {
+                expiresAt = leaseExpiresAt.getTime();
+            }
+        }
+        if (!shared) {
+            for (final Document reader : lock.getList(MongoChangeLogLock.Fields.readers, Document.class, Collections.emptyList())) {
+                final Date readerExpiresAt = reader.getDate(MongoChangeLogLock.Fields.expiresAt);
+                if (nonNull(readerExpiresAt)) {
+                    expiresAt = Math.min(expiresAt, readerExpiresAt.getTime());
+                }
+            }
+        }
+        return expiresAt;
+    }
+
+    private boolean isReleased(final Document lock) {
+        if (isNull(lock)) {
+            return true;
+        }
+        final Date now = new Date();
+        if (lock.getBoolean(MongoChangeLogLock.Fields.locked, false)) {
+            // A lease which ran out can be taken over
+            final Date expiresAt = lock.getDate(MongoChangeLogLock.Fields.expiresAt);
+            return nonNull(expiresAt) && !expiresAt.after(now);
+        }
+        if (shared) {
+            return true;
+        }
+        // An exclusive waiter also waits for the shared holders which did not expire
+        return lock.getList(MongoChangeLogLock.Fields.readers, Document.class, Collections.emptyList()).stream()
+                .map(r -> r.getDate(MongoChangeLogLock.Fields.expiresAt))
+                .noneMatch(expiresAt -> nonNull(expiresAt) && expiresAt.after(now));
+    }
+}
@@ -25,7 +25,7 @@ import com.mongodb.client.MongoDatabase;
 import liquibase.Scope;
 import liquibase.executor.jvm.JdbcExecutor;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
-import liquibase.nosql.executor.NoSqlExecutor;
+import liquibase.nosql.executor.RowsAffectedCounters;
 import liquibase.nosql.statement.NoSqlExecuteStatement;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -58,7 +58,7 @@ public abstract class AbstractRunCommandStatement extends AbstractMongoStatement
     @Override
     public void execute(final MongoLiquibaseDatabase database) {
         Document response = run(database);
-        updateRowsAffected(response);
+        updateRowsAffected(database, response);
     }
 
     public Document run(final MongoLiquibaseDatabase database) {
@@ -95,23 +95,31 @@ public abstract class AbstractRunCommandStatement extends AbstractMongoStatement
         }
     }
 
-    protected void updateRowsAffected(Document response) {
+    protected void updateRowsAffected(final MongoLiquibaseDatabase database, final Document response) {
         int affectedCount = extractAffectedCount(response);
         if (affectedCount <= 0) {
             return;
         }
 
-        AtomicInteger scopeRowsAffected = Scope.getCurrentScope().get(JdbcExecutor.ROWS_AFFECTED_SCOPE_KEY, AtomicInteger.class);
-        if (scopeRowsAffected == null) {
-            scopeRowsAffected = NoSqlExecutor.GLOBAL_ROWS_AFFECTED;
-        }
         Boolean shouldUpdate = Scope.getCurrentScope().get(SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY, Boolean.TRUE);
         if (Boolean.TRUE.equals(shouldUpdate)) {
-            scopeRowsAffected.addAndGet(affectedCount);
-            Scope.getCurrentScope().getLog(getClass()).fine("Added " + affectedCount + " to ROWS_AFFECTED_SCOPE_KEY; new total=" + scopeRowsAffected.get());
+            RowsAffectedCounters.current(database).add(getTargetCollectionName(), affectedCount);
+            AtomicInteger scopeRowsAffected = Scope.getCurrentScope().get(JdbcExecutor.ROWS_AFFECTED_SCOPE_KEY, AtomicInteger.class);
+            if (scopeRowsAffected != null) {
+                scopeRowsAffected.addAndGet(affectedCount);
+                Scope.getCurrentScope().getLog(getClass()).fine("Added " + affectedCount + " to ROWS_AFFECTED_SCOPE_KEY; new total=" + scopeRowsAffected.get());
+            }
         }
     }
 
+    /**
+     * @return the collection of write commands such as insert, update or delete, null when the command has none
+     */
+    protected String getTargetCollectionName() {
+        final Object target = command.isEmpty() ? null : command.values().iterator().next();
+        return target instanceof String ? (String) target : null;
+    }
+
     protected int extractAffectedCount(Document response) {
         if (response.containsKey(N)) {
             return response.getInteger(N, 0);
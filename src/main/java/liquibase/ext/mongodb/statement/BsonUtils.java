@@ -22,6 +22,8 @@ package liquibase.ext.mongodb.statement;
 
 import com.mongodb.DBRefCodecProvider;
 import com.mongodb.MongoClientSettings;
+import liquibase.ext.mongodb.changelog.MongoRanChangeSetCodec;
+import liquibase.ext.mongodb.lockservice.MongoChangeLogLockCodec;
 import lombok.NoArgsConstructor;
 import org.bson.Document;
 import org.bson.UuidRepresentation;
@@ -29,10 +31,17 @@ import org.bson.codecs.*;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
 
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.toList;
 import static java.util.Optional.ofNullable;
 import static liquibase.util.StringUtil.trimToNull;
 import static lombok.AccessLevel.PRIVATE;
@@ -52,9 +61,19 @@ public final class BsonUtils {
 
     public static final String ITEMS = "items";
 
+    public static final String VALIDATOR = "validator";
+    public static final String VALIDATION_LEVEL = "validationLevel";
+    public static final String VALIDATION_ACTION = "validationAction";
+    public static final String INDEX_KEY = "key";
+    public static final String INDEX_UNIQUE = "unique";
+
+    /**
+     * Default registry with standard UUIDs, including the codecs of the History Change Log and Lock Collection entries
+     */
     public static CodecRegistry uuidCodecRegistry() {
         return CodecRegistries.fromRegistries(
-                CodecRegistries.fromCodecs(new UuidCodec(UuidRepresentation.STANDARD)),
+                CodecRegistries.fromCodecs(new UuidCodec(UuidRepresentation.STANDARD),
+                        new MongoRanChangeSetCodec(), new MongoChangeLogLockCodec()),
                 MongoClientSettings.getDefaultCodecRegistry()
         );
     }
@@ -88,4 +107,67 @@ public final class BsonUtils {
         }
         return command;
     }
+
+    /**
+     * SHA-256 of the value with the document keys sorted and the numbers widened,
+     * so equivalent values stored with another field order or number type have the same hash.
+     *
+     * @param value a document, list or plain value
+     * @return the hex encoded hash
+     */
+    public static String canonicalHash(final Object value) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] canonical = new Document(ITEMS, canonicalize(value)).toJson().getBytes(StandardCharsets.UTF_8);
+            return String.format("%064x", new BigInteger(1, digest.digest(canonical)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hash of the validator, validation level and action of collection options or of a collMod command,
+     * the level and action defaulting to the server defaults when absent
+     *
+     * @param options collection options or collMod command, may be null
+     * @return the hex encoded hash
+     */
+    public static String validatorHash(final Document options) {
+        final Document source = ofNullable(options).orElseGet(Document::new);
+        return canonicalHash(new Document()
+                .append(VALIDATOR, source.get(VALIDATOR))
+                .append(VALIDATION_LEVEL, source.get(VALIDATION_LEVEL, "strict"))
+                .append(VALIDATION_ACTION, source.get(VALIDATION_ACTION, "error")));
+    }
+
+    /**
+     * Hash of the keys and uniqueness of an index, the name and the other options being ignored
+     *
+     * @param keys   the index keys, as returned by listIndexes or passed to createIndex
+     * @param unique whether the index is unique
+     * @return the hex encoded hash
+     */
+    public static String indexHash(final Document keys, final boolean unique) {
+        return canonicalHash(new Document()
+                // Key order matters for an index, kept as a list of single key documents
+                .append(INDEX_KEY, ofNullable(keys).orElseGet(Document::new).entrySet().stream()
+                        .map(e -> new Document(e.getKey(), e.getValue())).collect(toList()))
+                .append(INDEX_UNIQUE, unique));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object canonicalize(final Object value) {
+        if (value instanceof Map) {
+            final Document sorted = new Document();
+            new TreeMap<>((Map<String, Object>) value).forEach((k, v) -> sorted.append(k, canonicalize(v)));
+            return sorted;
+        }
+        if (value instanceof List) {
+            return ((List<Object>) value).stream().map(BsonUtils::canonicalize).collect(toList());
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value;
+    }
 }
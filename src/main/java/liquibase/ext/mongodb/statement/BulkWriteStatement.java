@@ -0,0 +1,97 @@
+package liquibase.ext.mongodb.statement;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.nosql.statement.NoSqlExecuteStatement;
+import liquibase.nosql.statement.NoSqlUpdateStatement;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.bson.Document;
+
+import java.util.List;
+
+import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
+
+/**
+ * Sends a batch of write operations against one collection in a single bulkWrite round trip.
+ * NOTE: returns the number of inserted, matched and deleted documents
+ *
+ * @see <a href="https://docs.mongodb.com/manual/reference/method/db.collection.bulkWrite/">bulkWrite</a>
+ */
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class BulkWriteStatement extends AbstractCollectionStatement
+        implements NoSqlExecuteStatement<MongoLiquibaseDatabase>, NoSqlUpdateStatement<MongoLiquibaseDatabase> {
+
+    public static final String COMMAND_NAME = "bulkWrite";
+
+    private final List<? extends WriteModel<Document>> requests;
+    private final boolean ordered;
+
+    public BulkWriteStatement(final String collectionName, final List<? extends WriteModel<Document>> requests, final boolean ordered) {
+        super(collectionName);
+        this.requests = requests;
+        this.ordered = ordered;
+    }
+
+    public BulkWriteStatement(final String collectionName, final List<? extends WriteModel<Document>> requests) {
+        this(collectionName, requests, true);
+    }
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public String toJs() {
+        return
+                SHELL_DB_PREFIX +
+                        getCollectionName() +
+                        "." +
+                        getCommandName() +
+                        "(" +
+                        requests +
+                        ", {ordered: " +
+                        ordered +
+                        "});";
+    }
+
+    @Override
+    public void execute(final MongoLiquibaseDatabase database) {
+        update(database);
+    }
+
+    @Override
+    public int update(final MongoLiquibaseDatabase database) {
+        if (requests.isEmpty()) {
+            return 0;
+        }
+        final MongoCollection<Document> collection = database.getMongoDatabase().getCollection(getCollectionName());
+        final BulkWriteResult result = collection.bulkWrite(requests, new BulkWriteOptions().ordered(ordered));
+        return result.getInsertedCount() + result.getMatchedCount() + result.getDeletedCount();
+    }
+}
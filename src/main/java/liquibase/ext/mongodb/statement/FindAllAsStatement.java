@@ -0,0 +1,106 @@
+package liquibase.ext.mongodb.statement;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2019 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.mongodb.client.FindIterable;
+import liquibase.ext.mongodb.configuration.MongoConfiguration;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.nosql.statement.NoSqlQueryForListStatement;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.util.Optional.ofNullable;
+import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
+
+/**
+ * Same query as {@link FindAllStatement} decoding the results as {@code documentClass}
+ * with the codec registered for it, see {@link BsonUtils#uuidCodecRegistry()}.
+ */
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class FindAllAsStatement<T> extends AbstractCollectionStatement
+        implements NoSqlQueryForListStatement<MongoLiquibaseDatabase, T> {
+
+    public static final String COMMAND_NAME = "find";
+
+    private final Class<T> documentClass;
+    private final Bson filter;
+    private final Bson sort;
+    private final Bson projection;
+
+    public FindAllAsStatement(final String collectionName, final Class<T> documentClass) {
+        this(collectionName, documentClass, new Document(), new Document(), null);
+    }
+
+    public FindAllAsStatement(final String collectionName, final Class<T> documentClass, final Bson filter, final Bson sort, final Bson projection) {
+        super(collectionName);
+        this.documentClass = documentClass;
+        this.filter = filter;
+        this.sort = sort;
+        this.projection = projection;
+    }
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public String toJs() {
+        return
+                SHELL_DB_PREFIX +
+                        getCollectionName() +
+                        "." +
+                        getCommandName() +
+                        "(" +
+                        ofNullable(filter).map(Bson::toString).orElse(null) +
+                        ", " +
+                        ofNullable(sort).map(Bson::toString).orElse(null) +
+                        ofNullable(projection).map(p -> ", " + p).orElse("") +
+                        ");";
+    }
+
+    @Override
+    public List<T> queryForList(final MongoLiquibaseDatabase database) {
+        final ArrayList<T> result = new ArrayList<>();
+        find(database).into(result);
+        return result;
+    }
+
+    @Override
+    public void queryForEach(final MongoLiquibaseDatabase database, final Consumer<? super T> consumer) {
+        find(database).forEach(consumer);
+    }
+
+    private FindIterable<T> find(final MongoLiquibaseDatabase database) {
+        final FindIterable<T> documents = database.getMongoDatabase(collectionName).getCollection(collectionName, documentClass)
+                .find(filter).sort(sort).projection(projection);
+        final int batchSize = MongoConfiguration.QUERY_BATCH_SIZE.getCurrentValue();
+        return batchSize > 0 ? documents.batchSize(batchSize) : documents;
+    }
+}
@@ -20,6 +20,8 @@ package liquibase.ext.mongodb.statement;
  * #L%
  */
 
+import com.mongodb.client.FindIterable;
+import liquibase.ext.mongodb.configuration.MongoConfiguration;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
 import liquibase.nosql.statement.NoSqlQueryForListStatement;
 import lombok.EqualsAndHashCode;
@@ -29,6 +31,7 @@ import org.bson.conversions.Bson;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static java.util.Optional.ofNullable;
 import static liquibase.ext.mongodb.statement.AbstractRunCommandStatement.SHELL_DB_PREFIX;
@@ -42,15 +45,21 @@ public class FindAllStatement extends AbstractCollectionStatement
 
     private final Bson filter;
     private final Bson sort;
+    private final Bson projection;
 
     public FindAllStatement(final String collectionName) {
         this(collectionName, new Document(), new Document());
     }
 
     public FindAllStatement(final String collectionName, final Bson filter, final Bson sort) {
+        this(collectionName, filter, sort, null);
+    }
+
+    public FindAllStatement(final String collectionName, final Bson filter, final Bson sort, final Bson projection) {
         super(collectionName);
         this.filter = filter;
         this.sort = sort;
+        this.projection = projection;
     }
 
     @Override
@@ -69,14 +78,27 @@ public class FindAllStatement extends AbstractCollectionStatement
                         ofNullable(filter).map(Bson::toString).orElse(null) +
                         ", " +
                         ofNullable(sort).map(Bson::toString).orElse(null) +
+                        ofNullable(projection).map(p -> ", " + p).orElse("") +
                         ");";
     }
 
     @Override
     public List<Document> queryForList(final MongoLiquibaseDatabase database) {
         final ArrayList<Document> result = new ArrayList<>();
-        database.getMongoDatabase().getCollection(collectionName, Document.class)
-                .find(filter).sort(sort).into(result);
+        find(database).into(result);
         return result;
     }
+
+    @Override
+    public void queryForEach(final MongoLiquibaseDatabase database, final Consumer<? super Document> consumer) {
+        // The cursor is closed once exhausted or when the consumer fails
+        find(database).forEach(consumer);
+    }
+
+    private FindIterable<Document> find(final MongoLiquibaseDatabase database) {
+        final FindIterable<Document> documents = database.getMongoDatabase(collectionName).getCollection(collectionName, Document.class)
+                .find(filter).sort(sort).projection(projection);
+        final int batchSize = MongoConfiguration.QUERY_BATCH_SIZE.getCurrentValue();
+        return batchSize > 0 ? documents.batchSize(batchSize) : documents;
+    }
 }
@@ -49,6 +49,7 @@ public class ListCollectionNamesStatement extends AbstractRunCommandStatement
     public static final String NAME = "name";
     public static final String AUTHORIZED_COLLECTIONS = "authorizedCollections";
     public static final String NAME_ONLY = "nameOnly";
+    public static final String OPTIONS = "options";
 
     /**
      * Create a listCollections statement with no filter.
@@ -0,0 +1,70 @@
+package liquibase.ext.mongodb.statement;
+
+/*-
+ * #%L
+ * Liquibase MongoDB Extension
+ * %%
+ * Copyright (C) 2021 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.nosql.statement.NoSqlQueryForObjectStatement;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static liquibase.ext.mongodb.statement.BsonUtils.toCommand;
+import static liquibase.ext.mongodb.statement.ListCollectionNamesStatement.CURSOR;
+import static liquibase.ext.mongodb.statement.ListCollectionNamesStatement.FILTER;
+import static liquibase.ext.mongodb.statement.ListCollectionNamesStatement.FIRST_BATCH;
+import static liquibase.ext.mongodb.statement.ListCollectionNamesStatement.NAME;
+import static liquibase.ext.mongodb.statement.ListCollectionNamesStatement.OPTIONS;
+
+/**
+ * Gets the options of the given collections with a single listCollections command.
+ * Returns a document with the options of each existing collection keyed by its name.
+ *
+ * @see <a href="https://docs.mongodb.com/manual/reference/command/listCollections/">listCollections</a>
+ */
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class ListCollectionOptionsStatement extends AbstractRunCommandStatement
+        implements NoSqlQueryForObjectStatement<MongoLiquibaseDatabase> {
+
+    public ListCollectionOptionsStatement(final Collection<String> collectionNames) {
+        super(toCommand(ListCollectionNamesStatement.RUN_COMMAND_NAME, 1,
+                new Document(FILTER, new Document(NAME, new Document("$in", new ArrayList<>(collectionNames))))));
+    }
+
+    @Override
+    public String getRunCommandName() {
+        return ListCollectionNamesStatement.RUN_COMMAND_NAME;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T queryForObject(final MongoLiquibaseDatabase database, final Class<T> requiredType) {
+        final Document response = super.run(database);
+        final List<Document> firstBatch = response.get(CURSOR, Document.class).get(FIRST_BATCH, List.class);
+        final Document options = new Document();
+        firstBatch.forEach(c -> options.append(c.getString(NAME), c.get(OPTIONS, new Document())));
+        return requiredType.cast(options);
+    }
+}
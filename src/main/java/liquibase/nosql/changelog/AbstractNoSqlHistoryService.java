@@ -32,19 +32,27 @@ import liquibase.executor.ExecutorService;
 import liquibase.executor.LoggingExecutor;
 import liquibase.logging.Logger;
 import liquibase.nosql.database.AbstractNoSqlDatabase;
+import liquibase.nosql.database.TrackingCollectionCache;
 import liquibase.nosql.executor.NoSqlExecutor;
+import liquibase.nosql.executor.RowsAffectedCounters;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import static java.util.Collections.unmodifiableList;
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static liquibase.plugin.Plugin.PRIORITY_SPECIALIZED;
 
 public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabase> extends AbstractChangeLogHistoryService {
@@ -52,6 +60,16 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
     @Getter
     private List<RanChangeSet> ranChangeSetList;
 
+    /**
+     * History loaded by a previous read and kept over {@link #reset()} so it can be refreshed incrementally
+     */
+    private List<RanChangeSet> cachedRanChangeSetList;
+
+    /**
+     * Lookup index over {@link #ranChangeSetList}, built on first lookup and kept in line by the list mutations
+     */
+    private RanChangeSetIndex ranChangeSetIndex;
+
     private boolean serviceInitialized;
 
     private static final ResourceBundle mongoBundle = ResourceBundle.getBundle("liquibase/i18n/liquibase-mongo");
@@ -81,7 +99,7 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
     }
 
     public boolean canCreateChangeLogTable() {
-        return true;
+        return !isReadOnly();
     }
 
     public boolean isServiceInitialized() {
@@ -103,8 +121,17 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
 
     @Override
     public void reset() {
+        try {
+            flushHistory();
+        } catch (final DatabaseException e) {
+            throw new UnexpectedLiquibaseException(e);
+        }
         super.reset();
+        if (nonNull(this.ranChangeSetList) && isIncrementalHistoryCacheEnabled()) {
+            this.cachedRanChangeSetList = this.ranChangeSetList;
+        }
         this.ranChangeSetList = null;
+        this.ranChangeSetIndex = null;
         this.serviceInitialized = false;
         this.hasDatabaseChangeLogTable = null;
         this.adjustedChangeLogTable = FALSE;
@@ -117,6 +144,23 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
             return;
         }
 
+        if (isReadOnly()) {
+            // Answers from the existing collection only, a missing one is read as empty
+            if (!hasDatabaseChangeLogTable()) {
+                getLogger().info("Read-only mode, History Change Log Collection not found and read as empty: "
+                        + getDatabaseChangeLogTableName());
+            }
+            this.serviceInitialized = true;
+            return;
+        }
+
+        final long cacheTtl = getTrackingCollectionCacheTtl();
+        if (!adjustedChangeLogTable && TrackingCollectionCache.isVerified(getDatabase(), getDatabaseChangeLogTableName(), cacheTtl)) {
+            getLogger().fine("History Change Log Collection verified recently, skipping its check: " + getDatabaseChangeLogTableName());
+            this.hasDatabaseChangeLogTable = TRUE;
+            this.adjustedChangeLogTable = TRUE;
+        }
+
         if (!hasDatabaseChangeLogTable()) {
             getLogger().info("Create Database Change Log Collection");
 
@@ -132,6 +176,7 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
         if (!adjustedChangeLogTable) {
             adjustRepository();
             adjustedChangeLogTable = TRUE;
+            TrackingCollectionCache.verified(getDatabase(), getDatabaseChangeLogTableName(), cacheTtl);
         }
 
         this.serviceInitialized = true;
@@ -155,14 +200,69 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
     public List<RanChangeSet> getRanChangeSets() throws DatabaseException {
 
         if (isNull(this.ranChangeSetList)) {
-            this.ranChangeSetList = queryRanChangeSets();
+            this.ranChangeSetList = isReadOnly() && !hasDatabaseChangeLogTable() ? new ArrayList<>()
+                    : isNull(this.cachedRanChangeSetList)
+                    ? queryRanChangeSets() : refreshRanChangeSets(this.cachedRanChangeSetList);
+            this.cachedRanChangeSetList = null;
+            this.ranChangeSetIndex = null;
         }
         return unmodifiableList(ranChangeSetList);
     }
 
+    /**
+     * Brings a previously loaded history up to date. Only the entries stored above the highest known orderExecuted
+     * are fetched and replace the loaded ones with the same identity (re-ran changeSets get a new orderExecuted).
+     * If the outcome does not match the stored history, as entries deleted, tagged or with their checksum updated
+     * by another process, the whole history is reloaded.
+     */
+    private List<RanChangeSet> refreshRanChangeSets(final List<RanChangeSet> cached) throws DatabaseException {
+
+        final Integer watermark = cached.stream().map(RanChangeSet::getOrderExecuted)
+                .filter(Objects::nonNull).max(Integer::compareTo).orElse(null);
+        if (isNull(watermark)) {
+            return queryRanChangeSets();
+        }
+
+        final List<RanChangeSet> appended = queryRanChangeSetsAfter(watermark);
+        final Set<String> appendedKeys = appended.stream().map(this::ranChangeSetKey).collect(Collectors.toSet());
+
+        final List<RanChangeSet> refreshed = new ArrayList<>(cached.size() + appended.size());
+        cached.stream().filter(r -> !appendedKeys.contains(ranChangeSetKey(r))).forEach(refreshed::add);
+        refreshed.addAll(appended);
+
+        if (!matchesStoredHistory(refreshed)) {
+            getLogger().info(String.format("History cache is out of date (%d loaded). Reloading Database Change Log"
+                    , refreshed.size()));
+            return queryRanChangeSets();
+        }
+        getLogger().fine(String.format("History cache refreshed with %d changeSets above orderExecuted %d"
+                , appended.size(), watermark));
+        return refreshed;
+    }
+
+    /**
+     * Replaces the loaded entry having the same identity, so an in place update does not need a history reload.
+     *
+     * @param ranChangeSet the entry as it is stored now
+     */
+    protected void replaceRanChangeSet(final RanChangeSet ranChangeSet) {
+        final String key = ranChangeSetKey(ranChangeSet);
+        for (List<RanChangeSet> loaded : Arrays.asList(this.ranChangeSetList, this.cachedRanChangeSetList)) {
+            if (nonNull(loaded)) {
+                loaded.replaceAll(r -> key.equals(ranChangeSetKey(r)) ? ranChangeSet : r);
+            }
+        }
+        this.ranChangeSetIndex = null;
+    }
+
+    private String ranChangeSetKey(final RanChangeSet ranChangeSet) {
+        return ranChangeSet.getChangeLog() + "::" + ranChangeSet.getId() + "::" + ranChangeSet.getAuthor();
+    }
+
     @Override
     public void replaceChecksum(final ChangeSet changeSet) throws DatabaseException {
 
+        checkNotReadOnly("replace a checksum");
         updateCheckSum(changeSet);
 
         getLogger().info(String.format("Replace checksum executed. ChangeSet: [filename: %s, id: %s, author: %s]"
@@ -176,29 +276,44 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
         if (!hasDatabaseChangeLogTable()) {
             return null;
         }
-        return super.getRanChangeSet(changeSet);
+        getRanChangeSets();
+        if (isNull(this.ranChangeSetIndex)) {
+            this.ranChangeSetIndex = new RanChangeSetIndex(this.ranChangeSetList);
+        }
+        return this.ranChangeSetIndex.find(changeSet);
     }
 
     @Override
     public void setExecType(final ChangeSet changeSet, final ChangeSet.ExecType execType) throws DatabaseException {
 
+        checkNotReadOnly("record a changeSet");
         final Integer nextSequenceValue = getNextSequenceValue();
 
         markChangeSetRun(changeSet, execType, nextSequenceValue);
 
         getDatabase().commit();
+        RowsAffectedCounters.current(getNoSqlDatabase()).changeSetRecorded(changeSet.toString(false));
         if (this.ranChangeSetList != null) {
-            this.ranChangeSetList.add(new RanChangeSet(changeSet, execType, null, null));
+            final RanChangeSet ranChangeSet = new RanChangeSet(changeSet, execType, null, null);
+            this.ranChangeSetList.add(ranChangeSet);
+            if (nonNull(this.ranChangeSetIndex)) {
+                this.ranChangeSetIndex.add(ranChangeSet);
+            }
         }
     }
 
     @Override
     public void removeFromHistory(final ChangeSet changeSet) throws DatabaseException {
 
+        checkNotReadOnly("remove a changeSet");
         removeRanChangeSet(changeSet);
 
         if (this.ranChangeSetList != null) {
-            this.ranChangeSetList.remove(new RanChangeSet(changeSet));
+            final RanChangeSet ranChangeSet = new RanChangeSet(changeSet);
+            this.ranChangeSetList.remove(ranChangeSet);
+            if (nonNull(this.ranChangeSetIndex)) {
+                this.ranChangeSetIndex.remove(ranChangeSet);
+            }
         }
     }
 
@@ -222,6 +337,7 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
      */
     @Override
     public void tag(final String tagString) throws DatabaseException {
+        checkNotReadOnly("tag");
         final long totalRows = countRanChangeSets();
         if (totalRows == 0L) {
             final ChangeSet emptyChangeSet = new ChangeSet(String.valueOf(new Date().getTime()), "liquibase",
@@ -231,6 +347,8 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
         }
 
         tagLast(tagString);
+        // The tagged entry is not known here, the next read loads the history again
+        this.cachedRanChangeSetList = null;
 
         if (this.ranChangeSetList != null) {
             ranChangeSetList.get(ranChangeSetList.size() - 1).setTag(tagString);
@@ -253,7 +371,9 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
     public void clearAllCheckSums() throws DatabaseException {
         getLogger().info("Clear all checksums");
 
+        checkNotReadOnly("clear the checksums");
         clearChekSums();
+        this.cachedRanChangeSetList = null;
 
         getLogger().info("Clear all checksums executed");
     }
@@ -262,6 +382,8 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
     public void destroy() {
 
         try {
+            checkNotReadOnly("drop the History Change Log");
+            flushHistory();
             getLogger().info("Dropping Collection Database Change Log: " + getDatabaseChangeLogTableName());
 
             if (existsRepository()) {
@@ -270,7 +392,9 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
             } else {
                 getLogger().warning("Cannot Drop Collection Database Change Log as not found: " + getDatabaseChangeLogTableName());
             }
+            TrackingCollectionCache.invalidate(getDatabase(), getDatabaseChangeLogTableName());
             reset();
+            this.cachedRanChangeSetList = null;
         } catch (final DatabaseException e) {
             throw new UnexpectedLiquibaseException(e);
         }
@@ -288,6 +412,41 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
 
     protected abstract List<RanChangeSet> queryRanChangeSets() throws DatabaseException;
 
+    protected abstract List<RanChangeSet> queryRanChangeSetsAfter(Integer orderExecuted) throws DatabaseException;
+
+    protected abstract boolean isIncrementalHistoryCacheEnabled();
+
+    /**
+     * @param loaded the history refreshed from the cache
+     * @return true when the stored history holds the same entries, with the same checksums, tags and execTypes
+     * @throws DatabaseException in case of a failure
+     */
+    protected abstract boolean matchesStoredHistory(List<RanChangeSet> loaded) throws DatabaseException;
+
+    /**
+     * @return the time in milliseconds the collection is known to be created and adjusted once verified, 0 to check it each time
+     */
+    protected long getTrackingCollectionCacheTtl() {
+        return 0L;
+    }
+
+    /**
+     * @return true when the History Change Log is only read: never created, adjusted nor written
+     */
+    protected boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * @param operation the refused operation, for the message
+     * @throws DatabaseException in read-only mode
+     */
+    protected void checkNotReadOnly(final String operation) throws DatabaseException {
+        if (isReadOnly()) {
+            throw new DatabaseException("Cannot " + operation + " in read-only mode, the History Change Log is never written");
+        }
+    }
+
     protected abstract Integer generateNextSequence() throws DatabaseException;
 
     protected abstract void markChangeSetRun(ChangeSet changeSet, ChangeSet.ExecType execType, Integer nextSequenceValue) throws DatabaseException;
@@ -304,4 +463,12 @@ public abstract class AbstractNoSqlHistoryService<D extends AbstractNoSqlDatabas
 
     public abstract void updateCheckSum(ChangeSet changeSet) throws DatabaseException;
 
+    /**
+     * Stores the history entries which are recorded but not yet written to the database.
+     * Called before the changelog lock is released.
+     *
+     * @throws DatabaseException in case of a failure
+     */
+    public abstract void flushHistory() throws DatabaseException;
+
 }
@@ -0,0 +1,87 @@
+package liquibase.nosql.changelog;
+
+/*-
+ * #%L
+ * Liquibase NoSql Extension
+ * %%
+ * Copyright (C) 2020 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.RanChangeSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Hash index of the ran changeSets by (fileName, id, author) to replace the linear scan of
+ * {@link liquibase.changelog.AbstractChangeLogHistoryService#getRanChangeSet(ChangeSet)}.
+ * <p>
+ * Keys are case insensitive and use only the last segment of the file path, so every entry matched by
+ * {@link RanChangeSet#isSameAs(ChangeSet)} lands in the same bucket whatever path normalization applies.
+ * The final match is still decided by {@link RanChangeSet#isSameAs(ChangeSet)}, in history order.
+ */
+public class RanChangeSetIndex {
+
+    private final Map<String, List<RanChangeSet>> buckets;
+
+    public RanChangeSetIndex(final Collection<RanChangeSet> ranChangeSets) {
+        this.buckets = new HashMap<>(Math.max(16, ranChangeSets.size() * 4 / 3 + 1));
+        ranChangeSets.forEach(this::add);
+    }
+
+    public void add(final RanChangeSet ranChangeSet) {
+        buckets.computeIfAbsent(key(ranChangeSet.getChangeLog(), ranChangeSet.getId(), ranChangeSet.getAuthor()),
+                k -> new ArrayList<>(1)).add(ranChangeSet);
+    }
+
+    /**
+     * Removes the entry the same way {@link List#remove(Object)} does on the history list, to keep both in line.
+     */
+    public void remove(final RanChangeSet ranChangeSet) {
+        final String key = key(ranChangeSet.getChangeLog(), ranChangeSet.getId(), ranChangeSet.getAuthor());
+        final List<RanChangeSet> bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.remove(ranChangeSet);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    public RanChangeSet find(final ChangeSet changeSet) {
+        final List<RanChangeSet> bucket = buckets.get(key(changeSet.getFilePath(), changeSet.getId(), changeSet.getAuthor()));
+        if (bucket == null) {
+            return null;
+        }
+        for (final RanChangeSet ranChangeSet : bucket) {
+            if (ranChangeSet.isSameAs(changeSet)) {
+                return ranChangeSet;
+            }
+        }
+        return null;
+    }
+
+    static String key(final String filePath, final String id, final String author) {
+        final String path = String.valueOf(filePath);
+        final String fileName = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+        return (fileName + "::" + id + "::" + author).toLowerCase(Locale.ROOT);
+    }
+}
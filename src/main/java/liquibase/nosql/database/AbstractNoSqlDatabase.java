@@ -21,14 +21,17 @@ package liquibase.nosql.database;
  */
 
 import liquibase.CatalogAndSchema;
+import liquibase.Scope;
 import liquibase.database.AbstractJdbcDatabase;
 import liquibase.database.Database;
 import liquibase.database.DatabaseConnection;
 import liquibase.exception.DatabaseException;
 import liquibase.exception.LiquibaseException;
 import liquibase.exception.ValidationErrors;
+import liquibase.nosql.executor.RowsAffectedCounters;
 import liquibase.statement.DatabaseFunction;
 import liquibase.structure.DatabaseObject;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import java.math.BigInteger;
@@ -45,6 +48,12 @@ import static java.util.Optional.ofNullable;
 @NoArgsConstructor
 public abstract class AbstractNoSqlDatabase extends AbstractJdbcDatabase implements Database {
 
+    /**
+     * Rows affected by the run, unless other counters are in scope, see {@link RowsAffectedCounters#current(AbstractNoSqlDatabase)}
+     */
+    @Getter
+    private final RowsAffectedCounters rowsAffectedCounters = new RowsAffectedCounters();
+
     @Override
     public int getPriority() {
         return PRIORITY_DATABASE;
@@ -321,6 +330,14 @@ public abstract class AbstractNoSqlDatabase extends AbstractJdbcDatabase impleme
         return getDatabaseProductName().equals(conn.getDatabaseProductName());
     }
 
+    @Override
+    public void close() throws DatabaseException {
+        if (rowsAffectedCounters.getTotal() > 0L) {
+            Scope.getCurrentScope().getLog(getClass()).info("Rows affected: " + rowsAffectedCounters);
+        }
+        super.close();
+    }
+
     @Override
     public String toString() {
         return getDatabaseProductName() + " : "
@@ -0,0 +1,128 @@
+package liquibase.nosql.database;
+
+/*-
+ * #%L
+ * Liquibase NoSql Extension
+ * %%
+ * Copyright (C) 2020 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseConnection;
+import liquibase.exception.DatabaseException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Process wide record of the tracking collections (History Change Log and Lock) verified as created and adjusted,
+ * keyed by cluster, database and collection name. Lets repeated Liquibase invocations in the same JVM skip
+ * the startup round trips until the entry expires.
+ */
+public final class TrackingCollectionCache {
+
+    private static final Map<String, Long> VERIFIED = new ConcurrentHashMap<>();
+
+    private TrackingCollectionCache() {
+    }
+
+    /**
+     * @param database       the database
+     * @param collectionName the tracking collection name
+     * @param ttlMillis      time to live of an entry, the cache is disabled when not positive
+     * @return true if the collection was verified less than ttlMillis ago
+     */
+    public static boolean isVerified(final Database database, final String collectionName, final long ttlMillis) {
+        if (ttlMillis <= 0) {
+            return false;
+        }
+        final String key = key(database, collectionName);
+        if (isNull(key)) {
+            return false;
+        }
+        final Long verifiedAt = VERIFIED.get(key);
+        if (isNull(verifiedAt)) {
+            return false;
+        }
+        if (System.currentTimeMillis() - verifiedAt >= ttlMillis) {
+            VERIFIED.remove(key, verifiedAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records the collection as created and adjusted
+     *
+     * @param database       the database
+     * @param collectionName the tracking collection name
+     * @param ttlMillis      time to live of an entry, nothing is recorded when not positive
+     */
+    public static void verified(final Database database, final String collectionName, final long ttlMillis) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        final String key = key(database, collectionName);
+        if (!isNull(key)) {
+            VERIFIED.put(key, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Forgets the collection, like once dropped
+     *
+     * @param database       the database
+     * @param collectionName the tracking collection name
+     */
+    public static void invalidate(final Database database, final String collectionName) {
+        final String key = key(database, collectionName);
+        if (!isNull(key)) {
+            VERIFIED.remove(key);
+        }
+    }
+
+    /**
+     * Forgets all the collections of the database, like once all its collections are dropped
+     *
+     * @param database the database
+     */
+    public static void invalidate(final Database database) {
+        final String prefix = key(database, "");
+        if (!isNull(prefix)) {
+            VERIFIED.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    public static void clear() {
+        VERIFIED.clear();
+    }
+
+    private static String key(final Database database, final String collectionName) {
+        final DatabaseConnection connection = isNull(database) ? null : database.getConnection();
+        if (isNull(connection)) {
+            return null;
+        }
+        try {
+            final String catalog = connection.getCatalog();
+            return isNull(catalog) ? null : connection.getURL() + "/" + catalog + "." + collectionName;
+        } catch (final DatabaseException e) {
+            return null;
+        }
+    }
+}
@@ -21,6 +21,8 @@ package liquibase.nosql.executor;
  */
 
 import liquibase.Scope;
+import liquibase.change.Change;
+import liquibase.changelog.ChangeSet;
 import liquibase.changelog.ChangeLogHistoryService;
 import liquibase.changelog.ChangeLogHistoryServiceFactory;
 import liquibase.database.Database;
@@ -28,12 +30,15 @@ import liquibase.exception.DatabaseException;
 import liquibase.executor.AbstractExecutor;
 import liquibase.executor.jvm.JdbcExecutor;
 import liquibase.ext.mongodb.changelog.MongoHistoryService;
+import liquibase.ext.mongodb.database.CommandMetrics;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.BulkWriteStatement;
 import liquibase.logging.Logger;
 import liquibase.nosql.changelog.AbstractNoSqlHistoryService;
 import liquibase.nosql.database.AbstractNoSqlConnection;
 import liquibase.nosql.database.AbstractNoSqlDatabase;
 import liquibase.nosql.statement.*;
+import liquibase.precondition.core.PreconditionContainer;
 import liquibase.servicelocator.LiquibaseService;
 import liquibase.sql.visitor.SqlVisitor;
 import liquibase.statement.SqlStatement;
@@ -45,19 +50,30 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static java.util.Optional.ofNullable;
 
 @LiquibaseService
 @NoArgsConstructor
 public class NoSqlExecutor extends AbstractExecutor {
 
-    public static final AtomicInteger GLOBAL_ROWS_AFFECTED = new AtomicInteger(0);
-
     public static final String EXECUTOR_NAME = "jdbc";
     private final Logger log = Scope.getCurrentScope().getLog(getClass());
 
+    private final WriteCoalescer writeCoalescer = new WriteCoalescer();
+
+    private ParallelStatementScheduler parallelScheduler;
+
+    /**
+     * ChangeSet of the change being run, its statements are run serially unless {@link #runsInParallel(ChangeSet)}
+     */
+    private ChangeSet runningChangeSet;
+
     @Override
     public void setDatabase(final Database database) {
         super.setDatabase(database);
@@ -96,10 +112,11 @@ public class NoSqlExecutor extends AbstractExecutor {
 
     @Override
     public <T> T queryForObject(final SqlStatement sql, final Class<T> requiredType, final List<SqlVisitor> sqlVisitors) throws DatabaseException {
+        barrier();
         if (sql instanceof NoSqlQueryForObjectStatement) {
             try {
-                return ((NoSqlQueryForObjectStatement<?>) sql)
-                        .queryForObject(getDatabase(), requiredType);
+                return inCommandMetricsScope(sql, () -> ((NoSqlQueryForObjectStatement<?>) sql)
+                        .queryForObject(getDatabase(), requiredType));
             } catch (final Exception e) {
                 throw new DatabaseException("Could not query for object", e);
             }
@@ -114,9 +131,11 @@ public class NoSqlExecutor extends AbstractExecutor {
 
     @Override
     public long queryForLong(final SqlStatement sql, final List<SqlVisitor> sqlVisitors) throws DatabaseException {
+        barrier();
         if (sql instanceof NoSqlQueryForLongStatement) {
             try {
-                return ((NoSqlQueryForLongStatement<? extends AbstractNoSqlDatabase>) sql).queryForLong(getDatabase());
+                return inCommandMetricsScope(sql,
+                        () -> ((NoSqlQueryForLongStatement<? extends AbstractNoSqlDatabase>) sql).queryForLong(getDatabase()));
             } catch (final Exception e) {
                 throw new DatabaseException("Could not query for long", e);
             }
@@ -142,12 +161,39 @@ public class NoSqlExecutor extends AbstractExecutor {
     @Override
     @SuppressWarnings("unchecked")
     public List<Object> queryForList(final SqlStatement sql, final Class elementType, final List<SqlVisitor> sqlVisitors) throws DatabaseException {
+        barrier();
+        if (sql instanceof NoSqlQueryForListStatement) {
+            try {
+                return inCommandMetricsScope(sql,
+                        () -> ((NoSqlQueryForListStatement<? extends AbstractNoSqlDatabase, Object>) sql).queryForList(getDatabase()));
+            } catch (final Exception e) {
+                throw new DatabaseException("Could not query for list", e);
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Streams the results of a {@link NoSqlQueryForListStatement} to the consumer instead of returning them as a list.
+     *
+     * @param sql         the statement to query
+     * @param elementType the type of the results
+     * @param consumer    receives the results in order
+     * @throws DatabaseException in case of a failure, including one thrown by the consumer
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void queryForEach(final SqlStatement sql, final Class<T> elementType, final Consumer<? super T> consumer) throws DatabaseException {
+        barrier();
         if (sql instanceof NoSqlQueryForListStatement) {
             try {
-                return ((NoSqlQueryForListStatement<? extends AbstractNoSqlDatabase, Object>) sql).queryForList(getDatabase());
+                inCommandMetricsScope(sql, () -> {
+                    ((NoSqlQueryForListStatement<? extends AbstractNoSqlDatabase, T>) sql).queryForEach(getDatabase(), consumer);
+                    return null;
+                });
             } catch (final Exception e) {
                 throw new DatabaseException("Could not query for list", e);
             }
+            return;
         }
         throw new IllegalArgumentException();
     }
@@ -185,16 +231,20 @@ public class NoSqlExecutor extends AbstractExecutor {
 
     @Override
     public void execute(final SqlStatement sql) throws DatabaseException {
-        try {
-            Map<String, Object> scopeValues = new HashMap<>();
-            scopeValues.put(JdbcExecutor.ROWS_AFFECTED_SCOPE_KEY, GLOBAL_ROWS_AFFECTED);
-            scopeValues.put(JdbcExecutor.SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY, true);
-
-            Scope.child(scopeValues, () -> {
-                this.execute(sql, emptyList());
-                return null;
-            });
+        checkNotReadOnly(sql);
+        executeNow(sql, emptyList());
+    }
 
+    /**
+     * Executes a write of the History Change Log, which is not a changeSet statement so not counted in the rows affected.
+     * The Lock writes go through {@link #update(SqlStatement)}, which never counts them.
+     *
+     * @param sql the statement to execute
+     * @throws DatabaseException in case of a failure
+     */
+    public void executeTracking(final SqlStatement sql) throws DatabaseException {
+        try {
+            Scope.child(JdbcExecutor.SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY, false, () -> execute(sql));
         } catch (Exception e) {
             if (e instanceof DatabaseException) {
                 throw (DatabaseException) e;
@@ -205,9 +255,80 @@ public class NoSqlExecutor extends AbstractExecutor {
 
     @Override
     public void execute(final SqlStatement sql, final List<SqlVisitor> sqlVisitors) throws DatabaseException {
+        checkNotReadOnly(sql);
+        if (isParallelChangeSets() && runsInParallel(runningChangeSet) && sql instanceof NoSqlExecuteStatement) {
+            final String namespace = ParallelStatementScheduler.namespaceOf(sql);
+            if (nonNull(namespace)) {
+                final Map<String, Object> metricsScope = commandMetricsScope(sql.getClass().getSimpleName(), true);
+                getParallelScheduler().submit(namespace, () -> inCommandMetricsScope(metricsScope, () -> {
+                    ((NoSqlExecuteStatement<? extends AbstractNoSqlDatabase>) sql).execute(getDatabase());
+                    return null;
+                }));
+                return;
+            }
+        }
+        executeNow(sql, sqlVisitors);
+    }
+
+    /**
+     * Runs the statements of a change, then sends the writes it buffered when {@link MongoLiquibaseDatabase#getCoalesceWrites()}
+     * is enabled, so they are counted in the rows affected of the change and a failure fails the changeSet.
+     *
+     * @param change      the change to run
+     * @param sqlVisitors the visitors of its statements
+     * @throws DatabaseException in case of a failure, including one of the buffered writes
+     */
+    @Override
+    public void execute(final Change change, final List<SqlVisitor> sqlVisitors) throws DatabaseException {
+        final ChangeSet previous = runningChangeSet;
+        runningChangeSet = change.getChangeSet();
+        try {
+            super.execute(change, sqlVisitors);
+            flushWrites();
+        } finally {
+            runningChangeSet = previous;
+        }
+    }
+
+    /**
+     * Records a History Change Log entry: once the statements of the changeSet are stored
+     * when {@link MongoLiquibaseDatabase#getParallelChangeSets()} is enabled, right away otherwise.
+     *
+     * @param changeSet the changeSet recorded, named if its statements fail
+     * @param sql       the history statement
+     * @throws DatabaseException in case of a failure, including one of a previous changeSet run in parallel
+     */
+    public void executeAfterChangeSet(final ChangeSet changeSet, final SqlStatement sql) throws DatabaseException {
+        if (isParallelChangeSets() && runsInParallel(changeSet) && sql instanceof NoSqlExecuteStatement) {
+            final Map<String, Object> metricsScope = commandMetricsScope(sql.getClass().getSimpleName(), true);
+            getParallelScheduler().afterChangeSet(changeSet.toString(false), () -> inCommandMetricsScope(metricsScope, () -> {
+                ((NoSqlExecuteStatement<? extends AbstractNoSqlDatabase>) sql).execute(getDatabase());
+                return null;
+            }));
+            return;
+        }
+        executeTracking(sql);
+    }
+
+    private void executeNow(final SqlStatement sql, final List<SqlVisitor> sqlVisitors) throws DatabaseException {
+        if (isCoalescingWrites() && WriteCoalescer.supports(sql)) {
+            try {
+                inCommandMetricsScope(commandMetricsScope(BulkWriteStatement.class.getSimpleName(), false), () -> {
+                    writeCoalescer.add(sql, getDatabase());
+                    return null;
+                });
+            } catch (final Exception e) {
+                throw new DatabaseException("Could not execute", e);
+            }
+            return;
+        }
+        barrier();
         if (sql instanceof NoSqlExecuteStatement) {
             try {
-                ((NoSqlExecuteStatement<? extends AbstractNoSqlDatabase>) sql).execute(getDatabase());
+                inCommandMetricsScope(sql, () -> {
+                    ((NoSqlExecuteStatement<? extends AbstractNoSqlDatabase>) sql).execute(getDatabase());
+                    return null;
+                });
             } catch (final Exception e) {
                 throw new DatabaseException("Could not execute", e);
             }
@@ -239,9 +360,12 @@ public class NoSqlExecutor extends AbstractExecutor {
 
     @Override
     public int update(final SqlStatement sql, final List<SqlVisitor> sqlVisitors) throws DatabaseException {
+        checkNotReadOnly(sql);
+        barrier();
         if (sql instanceof NoSqlUpdateStatement) {
             try {
-                return ((NoSqlUpdateStatement<? extends AbstractNoSqlDatabase>) sql).update(getDatabase());
+                return inCommandMetricsScope(sql,
+                        () -> ((NoSqlUpdateStatement<? extends AbstractNoSqlDatabase>) sql).update(getDatabase()));
             } catch (final Exception e) {
                 throw new DatabaseException("Could not execute", e);
             }
@@ -250,6 +374,146 @@ public class NoSqlExecutor extends AbstractExecutor {
         }
     }
 
+    /**
+     * Sends the writes buffered when {@link MongoLiquibaseDatabase#getCoalesceWrites()} is enabled.
+     * Called at the end of each change, before any other operation and on each commit or rollback,
+     * so the buffer never outlives its change.
+     *
+     * @throws DatabaseException in case of a failure, the buffered writes are then discarded
+     */
+    public void flushWrites() throws DatabaseException {
+        if (writeCoalescer.getRequests().isEmpty()) {
+            return;
+        }
+        try {
+            inCommandMetricsScope(commandMetricsScope(BulkWriteStatement.class.getSimpleName(), false), () -> {
+                writeCoalescer.flush(getDatabase());
+                return null;
+            });
+        } catch (final Exception e) {
+            throw new DatabaseException("Could not execute", e);
+        }
+    }
+
+    /**
+     * Waits for the changeSets run in parallel when {@link MongoLiquibaseDatabase#getParallelChangeSets()} is enabled.
+     * Called before any other operation, database wide statements included, and before releasing the lock.
+     *
+     * @throws DatabaseException the first failure of these changeSets, naming the failed one
+     */
+    public void awaitParallel() throws DatabaseException {
+        final ParallelStatementScheduler scheduler;
+        synchronized (this) {
+            scheduler = parallelScheduler;
+        }
+        if (nonNull(scheduler)) {
+            scheduler.await();
+        }
+    }
+
+    /**
+     * Ends the run of the parallel changeSets, before the lock is released: waits for them, then forgets them
+     * so the next run starts over.
+     *
+     * @throws DatabaseException the first failure of the run, naming the failed changeSet
+     */
+    public void finishParallel() throws DatabaseException {
+        final ParallelStatementScheduler scheduler;
+        synchronized (this) {
+            scheduler = parallelScheduler;
+            parallelScheduler = null;
+        }
+        if (nonNull(scheduler)) {
+            scheduler.await();
+        }
+    }
+
+    /**
+     * A changeSet with failOnError disabled, or with preconditions which do not halt, may swallow a failure:
+     * its own, which a parallel run would only report later, or the one of a previous changeSet. It is run serially,
+     * once the changeSets run in parallel before it are done, so Liquibase applies its failure handling as usual.
+     *
+     * @param changeSet the changeSet, null for statements run outside a changeSet
+     * @return true if the statements of the changeSet may run in parallel
+     */
+    static boolean runsInParallel(final ChangeSet changeSet) {
+        if (isNull(changeSet)) {
+            return true;
+        }
+        if (Boolean.FALSE.equals(changeSet.getFailOnError())) {
+            return false;
+        }
+        final PreconditionContainer preconditions = changeSet.getPreconditions();
+        return isNull(preconditions)
+                || ((isNull(preconditions.getOnFail()) || preconditions.getOnFail() == PreconditionContainer.FailOption.HALT)
+                && (isNull(preconditions.getOnError()) || preconditions.getOnError() == PreconditionContainer.ErrorOption.HALT));
+    }
+
+    private void barrier() throws DatabaseException {
+        awaitParallel();
+        flushWrites();
+    }
+
+    /**
+     * @param statement    the statement name the commands are attributed to
+     * @param pinChangeSet true to attribute the commands to the current changeSet even when sent after it is recorded,
+     *                     for the statements run on other threads
+     * @return the scope values attributing the commands in {@link CommandMetrics}, empty unless enabled
+     */
+    private Map<String, Object> commandMetricsScope(final String statement, final boolean pinChangeSet) {
+        final CommandMetrics commandMetrics = getCommandMetrics();
+        if (isNull(commandMetrics)) {
+            return emptyMap();
+        }
+        final Map<String, Object> scopeValues = new HashMap<>();
+        scopeValues.put(CommandMetrics.STATEMENT_SCOPE_KEY, statement);
+        if (pinChangeSet) {
+            scopeValues.put(CommandMetrics.CHANGE_SET_SCOPE_KEY, commandMetrics.getPendingChangeSet());
+        }
+        return scopeValues;
+    }
+
+    private <T> T inCommandMetricsScope(final SqlStatement sql, final Scope.ScopedRunnerWithReturn<T> operation) throws Exception {
+        return inCommandMetricsScope(commandMetricsScope(sql.getClass().getSimpleName(), false), operation);
+    }
+
+    private static <T> T inCommandMetricsScope(final Map<String, Object> metricsScope,
+                                               final Scope.ScopedRunnerWithReturn<T> operation) throws Exception {
+        return metricsScope.isEmpty() ? operation.run() : Scope.child(metricsScope, operation);
+    }
+
+    private CommandMetrics getCommandMetrics() {
+        return database instanceof MongoLiquibaseDatabase ? ((MongoLiquibaseDatabase) database).getCommandMetrics() : null;
+    }
+
+    private synchronized ParallelStatementScheduler getParallelScheduler() {
+        if (parallelScheduler == null) {
+            parallelScheduler = new ParallelStatementScheduler(ParallelStatementScheduler.getLanePool());
+        }
+        return parallelScheduler;
+    }
+
+    private boolean isParallelChangeSets() {
+        return database instanceof MongoLiquibaseDatabase
+                && Boolean.TRUE.equals(((MongoLiquibaseDatabase) database).getParallelChangeSets());
+    }
+
+    /**
+     * The Lock is not taken in read-only mode, so any write, a changeSet statement included, is refused
+     * before reaching the server.
+     */
+    private void checkNotReadOnly(final SqlStatement sql) throws DatabaseException {
+        if (database instanceof MongoLiquibaseDatabase && Boolean.TRUE.equals(((MongoLiquibaseDatabase) database).getReadOnly())) {
+            throw new DatabaseException("Cannot execute " + sql.getClass().getSimpleName()
+                    + " in read-only mode, only the History Change Log and Lock Collections are read");
+        }
+    }
+
+    private boolean isCoalescingWrites() {
+        return database instanceof MongoLiquibaseDatabase
+                && Boolean.TRUE.equals(((MongoLiquibaseDatabase) database).getCoalesceWrites());
+    }
+
     private void disableRowAffectedMessage() {
         AtomicInteger rowsAffected = Scope.getCurrentScope().get("rowsAffected", AtomicInteger.class);
         if (rowsAffected != null) {
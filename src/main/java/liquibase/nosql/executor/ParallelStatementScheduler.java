@@ -0,0 +1,290 @@
+package liquibase.nosql.executor;
+
+/*-
+ * #%L
+ * Liquibase NoSql Extension
+ * %%
+ * Copyright (C) 2020 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import liquibase.Scope;
+import liquibase.exception.DatabaseException;
+import liquibase.executor.jvm.JdbcExecutor;
+import liquibase.ext.mongodb.configuration.MongoConfiguration;
+import liquibase.ext.mongodb.database.CommandMetrics;
+import liquibase.ext.mongodb.statement.AbstractCollectionStatement;
+import liquibase.ext.mongodb.statement.AbstractRunCommandStatement;
+import liquibase.ext.mongodb.statement.CreateCollectionStatement;
+import liquibase.ext.mongodb.statement.CreateIndexStatement;
+import liquibase.ext.mongodb.statement.DropCollectionStatement;
+import liquibase.ext.mongodb.statement.DropIndexStatement;
+import liquibase.ext.mongodb.statement.FindOneAndUpdateStatement;
+import liquibase.ext.mongodb.statement.InsertManyStatement;
+import liquibase.statement.SqlStatement;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Runs changeSets on a worker pool, one lane per collection. The statements of a changeSet are collected until
+ * its history entry is submitted, then run in order as one task followed by the entry, once the previous changeSets
+ * using the same collections are done. ChangeSets on other collections run concurrently, so their entries
+ * may be stored out of changeLog order, their orderExecuted still follows it.
+ * <p>
+ * The first failure cancels the changeSets not started yet, on all lanes: the started ones complete and are recorded,
+ * the failed one and the cancelled ones are neither applied nor recorded. The failure names its changeSet and is
+ * reported by every later submission and {@link #await()} until the scheduler is dropped at the end of the run,
+ * so a later changeSet swallowing it cannot turn the run into a success.
+ */
+class ParallelStatementScheduler {
+
+    private static final String VIEW_ON = "viewOn";
+
+    private static final String SCOPE_ID = "scopeId";
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static volatile Executor lanePool;
+
+    private final Executor pool;
+
+    /**
+     * Last changeSet task per collection
+     */
+    private final Map<String, CompletableFuture<Void>> lanes = new HashMap<>();
+
+    /**
+     * Statements of the current changeSet, submitted with its history entry
+     */
+    private final List<PendingStatement> changeSetStatements = new ArrayList<>();
+
+    private final List<CompletableFuture<Void>> submitted = new ArrayList<>();
+
+    private final AtomicReference<DatabaseException> failure = new AtomicReference<>();
+
+    ParallelStatementScheduler(final Executor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return the pool of {@link MongoConfiguration#PARALLEL_CHANGESET_THREADS} daemon threads, created on first use
+     */
+    static Executor getLanePool() {
+        if (isNull(lanePool)) {
+            synchronized (ParallelStatementScheduler.class) {
+                if (isNull(lanePool)) {
+                    lanePool = Executors.newFixedThreadPool(MongoConfiguration.PARALLEL_CHANGESET_THREADS.getCurrentValue(),
+                            r -> new LaneThread(r, "liquibase-mongodb-lane-" + THREAD_COUNT.incrementAndGet()));
+                }
+            }
+        }
+        return lanePool;
+    }
+
+    /**
+     * Collection statements, including the createCollection, createIndex, dropCollection, dropIndex, insert
+     * and findAndModify commands, are limited to their collection. Views, admin and free form commands are database wide.
+     *
+     * @param sql the statement to check
+     * @return the collection the statement is limited to, null for database wide statements which act as barriers
+     */
+    static String namespaceOf(final SqlStatement sql) {
+        if (sql instanceof AbstractCollectionStatement) {
+            return ((AbstractCollectionStatement) sql).getCollectionName();
+        }
+
+        final String commandName;
+        if (sql instanceof InsertManyStatement) {
+            commandName = InsertManyStatement.RUN_COMMAND_NAME;
+        } else if (sql instanceof CreateIndexStatement) {
+            commandName = CreateIndexStatement.RUN_COMMAND_NAME;
+        } else if (sql instanceof DropIndexStatement) {
+            commandName = DropIndexStatement.RUN_COMMAND_NAME;
+        } else if (sql instanceof DropCollectionStatement) {
+            commandName = DropCollectionStatement.RUN_COMMAND_NAME;
+        } else if (sql instanceof FindOneAndUpdateStatement) {
+            commandName = FindOneAndUpdateStatement.RUN_COMMAND_NAME;
+        } else if (sql instanceof CreateCollectionStatement
+                // A view reads its source collection
+                && !((CreateCollectionStatement) sql).getCommand().containsKey(VIEW_ON)) {
+            commandName = CreateCollectionStatement.RUN_COMMAND_NAME;
+        } else {
+            return null;
+        }
+        final Object collectionName = ((AbstractRunCommandStatement) sql).getCommand().get(commandName);
+        return collectionName instanceof String ? (String) collectionName : null;
+    }
+
+    /**
+     * Adds a statement to the current changeSet.
+     *
+     * @throws DatabaseException a failure of a previous changeSet, the statement is then not run
+     */
+    void submit(final String namespace, final Scope.ScopedRunner task) throws DatabaseException {
+        if (nonNull(failure.get())) {
+            await();
+        }
+        synchronized (this) {
+            changeSetStatements.add(new PendingStatement(namespace, captureScopeValues(), task));
+        }
+    }
+
+    /**
+     * Schedules the statements of the current changeSet followed by its history entry.
+     *
+     * @param changeSet the changeSet, named by a failure
+     * @param task      stores the history entry
+     * @throws DatabaseException a failure of a previous changeSet, the changeSet is then neither run nor recorded
+     */
+    void afterChangeSet(final String changeSet, final Scope.ScopedRunner task) throws DatabaseException {
+        if (nonNull(failure.get())) {
+            await();
+        }
+        // History entries are not counted in the rows affected
+        final Map<String, Object> scopeValues = captureScopeValues();
+        scopeValues.put(JdbcExecutor.SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY, false);
+        synchronized (this) {
+            schedule(changeSet, new PendingStatement(null, scopeValues, task));
+        }
+    }
+
+    /**
+     * Waits for all the changeSets submitted so far, the statements of the current one included.
+     *
+     * @throws DatabaseException the first failure, again on each call, or if called from a lane
+     */
+    void await() throws DatabaseException {
+        if (Thread.currentThread() instanceof LaneThread) {
+            throw new DatabaseException("Cannot wait for the parallel changeSet statements from one of them: "
+                    + Thread.currentThread().getName());
+        }
+
+        final List<CompletableFuture<Void>> pending;
+        synchronized (this) {
+            if (!changeSetStatements.isEmpty()) {
+                // Waited for by a statement of the same changeSet, its failure is reported by that statement
+                schedule(null, null);
+            }
+            pending = new ArrayList<>(submitted);
+            submitted.clear();
+            lanes.clear();
+        }
+
+        // The tasks record their failure instead of completing exceptionally
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+
+        final DatabaseException first = failure.get();
+        if (nonNull(first)) {
+            throw first;
+        }
+    }
+
+    /**
+     * @return the values of the submitting scope to be set again on the lane thread, which has its own scope:
+     * the standard Liquibase attributes, like the database, changeSet and UI, the rows affected counters
+     * and the command metrics attribution
+     */
+    static Map<String, Object> captureScopeValues() {
+        final Map<String, Object> scopeValues = new HashMap<>();
+        for (final Scope.Attr attr : Scope.Attr.values()) {
+            // Each child scope gets its own id
+            if (!SCOPE_ID.equals(attr.name())) {
+                putScopeValue(scopeValues, attr.name());
+            }
+        }
+        putScopeValue(scopeValues, JdbcExecutor.ROWS_AFFECTED_SCOPE_KEY);
+        putScopeValue(scopeValues, JdbcExecutor.SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY);
+        putScopeValue(scopeValues, RowsAffectedCounters.SCOPE_KEY);
+        putScopeValue(scopeValues, CommandMetrics.STATEMENT_SCOPE_KEY);
+        putScopeValue(scopeValues, CommandMetrics.CHANGE_SET_SCOPE_KEY);
+        return scopeValues;
+    }
+
+    private static void putScopeValue(final Map<String, Object> scopeValues, final String key) {
+        final Object value = Scope.getCurrentScope().get(key, Object.class);
+        if (nonNull(value)) {
+            scopeValues.put(key, value);
+        }
+    }
+
+    private void schedule(final String changeSet, final PendingStatement history) {
+        final List<PendingStatement> statements = new ArrayList<>(changeSetStatements);
+        changeSetStatements.clear();
+
+        final Set<String> namespaces = new LinkedHashSet<>();
+        statements.forEach(s -> namespaces.add(s.namespace));
+        final CompletableFuture<?>[] previous = namespaces.stream()
+                .map(lanes::get).filter(Objects::nonNull).toArray(CompletableFuture<?>[]::new);
+
+        final CompletableFuture<Void> next = CompletableFuture.allOf(previous).thenRunAsync(() -> {
+            // Cancelled by a failure, a started changeSet runs to completion
+            if (nonNull(failure.get())) {
+                return;
+            }
+            try {
+                for (final PendingStatement statement : statements) {
+                    statement.run();
+                }
+                if (nonNull(history)) {
+                    history.run();
+                }
+            } catch (final Exception e) {
+                failure.compareAndSet(null, nonNull(changeSet)
+                        ? new DatabaseException("Parallel changeSet " + changeSet + " failed: " + e.getMessage(), e)
+                        : e instanceof DatabaseException ? (DatabaseException) e : new DatabaseException("Could not execute", e));
+            }
+        }, pool);
+
+        namespaces.forEach(namespace -> lanes.put(namespace, next));
+        submitted.add(next);
+    }
+
+    @AllArgsConstructor
+    private static final class PendingStatement {
+
+        private final String namespace;
+
+        private final Map<String, Object> scopeValues;
+
+        private final Scope.ScopedRunner task;
+
+        private void run() throws Exception {
+            Scope.child(scopeValues, task);
+        }
+    }
+
+    private static final class LaneThread extends Thread {
+
+        private LaneThread(final Runnable runnable, final String name) {
+            super(runnable, name);
+            setDaemon(true);
+        }
+    }
+}
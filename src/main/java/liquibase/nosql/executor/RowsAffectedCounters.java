@@ -0,0 +1,125 @@
+package liquibase.nosql.executor;
+
+/*-
+ * #%L
+ * Liquibase NoSql Extension
+ * %%
+ * Copyright (C) 2020 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import liquibase.Scope;
+import liquibase.nosql.database.AbstractNoSqlDatabase;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Rows affected by the changeSets of one run, in total, per changeSet and per collection.
+ * A run uses the counters of its database, unless other counters are put in {@link Scope} under {@link #SCOPE_KEY},
+ * so concurrent runs in the same JVM neither share nor contend on them.
+ */
+public class RowsAffectedCounters {
+
+    public static final String SCOPE_KEY = "liquibase.mongodb.rowsAffectedCounters";
+
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Rows affected since the last recorded changeSet
+     */
+    private final LongAdder changeSet = new LongAdder();
+
+    private final ConcurrentMap<String, LongAdder> collections = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> changeSets = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * @param database the database of the run
+     * @return the counters in scope, or else the ones of the database
+     */
+    public static RowsAffectedCounters current(final AbstractNoSqlDatabase database) {
+        final RowsAffectedCounters scoped = Scope.getCurrentScope().get(SCOPE_KEY, RowsAffectedCounters.class);
+        return nonNull(scoped) ? scoped : database.getRowsAffectedCounters();
+    }
+
+    public void add(final String collectionName, final long count) {
+        total.add(count);
+        changeSet.add(count);
+        if (nonNull(collectionName)) {
+            collections.computeIfAbsent(collectionName, c -> new LongAdder()).add(count);
+        }
+    }
+
+    /**
+     * Assigns the rows affected since the previous call to the changeSet, called once it is recorded in the history.
+     *
+     * @param changeSetKey the changeSet as filePath::id::author
+     * @return the rows affected by the changeSet
+     */
+    public long changeSetRecorded(final String changeSetKey) {
+        final long count = changeSet.sumThenReset();
+        if (count > 0) {
+            changeSets.merge(changeSetKey, count, Long::sum);
+        }
+        return count;
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * @return the rows affected per collection name, sorted by name
+     */
+    public Map<String, Long> getCollections() {
+        final Map<String, Long> result = new TreeMap<>();
+        collections.forEach((name, count) -> result.put(name, count.sum()));
+        return result;
+    }
+
+    /**
+     * @return the rows affected per changeSet in the order they were recorded, changeSets affecting no rows are left out
+     */
+    public Map<String, Long> getChangeSets() {
+        synchronized (changeSets) {
+            return new LinkedHashMap<>(changeSets);
+        }
+    }
+
+    public void reset() {
+        total.reset();
+        changeSet.reset();
+        collections.clear();
+        changeSets.clear();
+    }
+
+    /**
+     * @return the run summary: the total, then the rows affected per changeSet and per collection
+     */
+    @Override
+    public String toString() {
+        return "total=" + getTotal()
+                + ", changeSets=" + getChangeSets()
+                + ", collections=" + getCollections();
+    }
+}
@@ -0,0 +1,149 @@
+package liquibase.nosql.executor;
+
+/*-
+ * #%L
+ * Liquibase NoSql Extension
+ * %%
+ * Copyright (C) 2020 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.WriteModel;
+import liquibase.Scope;
+import liquibase.executor.jvm.JdbcExecutor;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.BulkWriteStatement;
+import liquibase.ext.mongodb.statement.DeleteManyStatement;
+import liquibase.ext.mongodb.statement.InsertManyStatement;
+import liquibase.ext.mongodb.statement.UpdateManyStatement;
+import liquibase.statement.SqlStatement;
+import lombok.Getter;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.nonNull;
+import static liquibase.executor.jvm.JdbcExecutor.SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY;
+
+/**
+ * Buffers consecutive writes to the same collection and sends them as one ordered {@link BulkWriteStatement}.
+ * The buffer is sent at the end of each change and before switching collection or rows affected counters,
+ * so writes of different changes are not mixed, and the inserted documents are added to the counters in scope
+ * when they were buffered.
+ */
+class WriteCoalescer {
+
+    /**
+     * Requests buffered at most before sending them
+     */
+    static final int MAX_REQUESTS = 1000;
+
+    @Getter
+    private final List<WriteModel<Document>> requests = new ArrayList<>();
+
+    @Getter
+    private String collectionName;
+
+    private AtomicInteger rowsAffected;
+
+    private RowsAffectedCounters counters;
+
+    private boolean shouldUpdateRowsAffected;
+
+    private int inserted;
+
+    /**
+     * @param sql the statement to check
+     * @return true for plain inserts, updates and deletes, inserts with options as ordered or writeConcern are sent as is
+     */
+    static boolean supports(final SqlStatement sql) {
+        if (sql instanceof InsertManyStatement) {
+            final Document command = ((InsertManyStatement) sql).getCommand();
+            return command.size() == 2 && command.get(InsertManyStatement.DOCUMENTS) instanceof List;
+        }
+        return sql instanceof UpdateManyStatement || sql instanceof DeleteManyStatement;
+    }
+
+    void add(final SqlStatement sql, final MongoLiquibaseDatabase database) {
+        final String statementCollectionName;
+        final List<WriteModel<Document>> statementRequests = new ArrayList<>();
+        int statementInserted = 0;
+        if (sql instanceof InsertManyStatement) {
+            final Document command = ((InsertManyStatement) sql).getCommand();
+            statementCollectionName = command.getString(InsertManyStatement.RUN_COMMAND_NAME);
+            for (final Document document : command.getList(InsertManyStatement.DOCUMENTS, Document.class)) {
+                statementRequests.add(new InsertOneModel<>(document));
+                statementInserted++;
+            }
+        } else if (sql instanceof UpdateManyStatement) {
+            final UpdateManyStatement updateManyStatement = (UpdateManyStatement) sql;
+            statementCollectionName = updateManyStatement.getCollectionName();
+            statementRequests.add(new UpdateManyModel<>(updateManyStatement.getFilter(), updateManyStatement.getDocument()));
+        } else {
+            final DeleteManyStatement deleteManyStatement = (DeleteManyStatement) sql;
+            statementCollectionName = deleteManyStatement.getCollectionName();
+            statementRequests.add(new DeleteManyModel<>(deleteManyStatement.getFilter()));
+        }
+
+        final AtomicInteger scopeRowsAffected = Scope.getCurrentScope().get(JdbcExecutor.ROWS_AFFECTED_SCOPE_KEY, AtomicInteger.class);
+        final RowsAffectedCounters scopeCounters = RowsAffectedCounters.current(database);
+        final boolean shouldUpdate = Boolean.TRUE.equals(Scope.getCurrentScope().get(SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY, Boolean.TRUE));
+
+        if (!requests.isEmpty() && (!statementCollectionName.equals(collectionName)
+                || scopeRowsAffected != rowsAffected || scopeCounters != counters || shouldUpdate != shouldUpdateRowsAffected)) {
+            flush(database);
+        }
+
+        this.collectionName = statementCollectionName;
+        this.rowsAffected = scopeRowsAffected;
+        this.counters = scopeCounters;
+        this.shouldUpdateRowsAffected = shouldUpdate;
+        this.requests.addAll(statementRequests);
+        this.inserted += statementInserted;
+
+        if (requests.size() >= MAX_REQUESTS) {
+            flush(database);
+        }
+    }
+
+    void flush(final MongoLiquibaseDatabase database) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        final BulkWriteStatement bulkWriteStatement = new BulkWriteStatement(collectionName, new ArrayList<>(requests));
+        final int batchInserted = inserted;
+        clear();
+
+        bulkWriteStatement.execute(database);
+
+        // As when sent one by one, only the inserted documents are counted
+        if (shouldUpdateRowsAffected && batchInserted > 0) {
+            counters.add(bulkWriteStatement.getCollectionName(), batchInserted);
+            if (nonNull(rowsAffected)) {
+                rowsAffected.addAndGet(batchInserted);
+            }
+        }
+    }
+
+    void clear() {
+        requests.clear();
+        inserted = 0;
+    }
+}
@@ -21,11 +21,14 @@ package liquibase.nosql.lockservice;
  */
 
 import liquibase.Scope;
+import liquibase.changelog.ChangeLogHistoryService;
+import liquibase.changelog.ChangeLogHistoryServiceFactory;
 import liquibase.configuration.GlobalConfiguration;
 import liquibase.configuration.LiquibaseConfiguration;
 import liquibase.database.Database;
 import liquibase.exception.DatabaseException;
 import liquibase.exception.LockException;
+import liquibase.exception.ServiceNotFoundException;
 import liquibase.exception.UnexpectedLiquibaseException;
 import liquibase.executor.Executor;
 import liquibase.executor.ExecutorService;
@@ -33,19 +36,25 @@ import liquibase.executor.LoggingExecutor;
 import liquibase.lockservice.DatabaseChangeLogLock;
 import liquibase.lockservice.LockService;
 import liquibase.logging.Logger;
+import liquibase.nosql.changelog.AbstractNoSqlHistoryService;
 import liquibase.nosql.database.AbstractNoSqlDatabase;
+import liquibase.nosql.database.TrackingCollectionCache;
 import liquibase.nosql.executor.NoSqlExecutor;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.text.DateFormat;
 import java.time.Clock;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static liquibase.plugin.Plugin.PRIORITY_SPECIALIZED;
 
 public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase> implements LockService {
@@ -56,6 +65,11 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
 
     private static final ResourceBundle mongoBundle = ResourceBundle.getBundle("liquibase/i18n/liquibase-mongo");
 
+    /**
+     * First polling delay, doubled on each attempt up to the recheck time
+     */
+    private static final long INITIAL_RECHECK_MILLIS = 250L;
+
     private Long changeLogLockPollRate;
 
     private Long changeLogLockRecheckTime;
@@ -73,6 +87,17 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
     @Setter
     private Clock clock = Clock.systemDefaultZone();
 
+    private final List<LockMetricsListener> metricsListeners = new CopyOnWriteArrayList<>();
+
+    private List<LockMetricsListener> discoveredMetricsListeners;
+
+    /**
+     * Metrics of the current lock cycle, null before the first acquisition attempt
+     */
+    private LockMetrics metrics;
+
+    private long lockAcquiredAt;
+
     @Override
     public int getPriority() {
         return PRIORITY_SPECIALIZED;
@@ -99,6 +124,18 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
     @Override
     public void init() throws DatabaseException {
 
+        if (isReadOnly()) {
+            // The Lock Collection is never created nor adjusted, a missing one reads as no locks
+            return;
+        }
+
+        final long cacheTtl = getTrackingCollectionCacheTtl();
+        if (!adjustedChangeLogLockTable && TrackingCollectionCache.isVerified(database, getDatabaseChangeLogLockTableName(), cacheTtl)) {
+            getLogger().fine("Lock Collection verified recently, skipping its check: " + getDatabaseChangeLogLockTableName());
+            this.hasDatabaseChangeLogLockTable = true;
+            this.adjustedChangeLogLockTable = TRUE;
+        }
+
         if (!hasDatabaseChangeLogLockTable()) {
             getLogger().info("Create Database Lock Collection: "
                     + (getDatabase().getConnection()).getCatalog() + "." + getDatabaseChangeLogLockTableName());
@@ -110,6 +147,7 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
         if (!adjustedChangeLogLockTable) {
             adjustRepository();
             adjustedChangeLogLockTable = TRUE;
+            TrackingCollectionCache.verified(database, getDatabaseChangeLogLockTableName(), cacheTtl);
         }
     }
 
@@ -123,31 +161,34 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
 
         boolean locked = false;
 
+        final long waitStarted = getClock().millis();
         final long timeToGiveUp = getClock().instant().plusSeconds(getChangeLogLockWaitTime() * 60).toEpochMilli();
         locked = acquireLock();
-        while (!locked && (getClock().instant().toEpochMilli() < timeToGiveUp)) {
-            getLogger().info("Waiting for changelog lock....");
-            try {
-                //noinspection BusyWait
-                Thread.sleep(getChangeLogLockRecheckTime() * 1000);
-            } catch (InterruptedException e) {
-                // Restore thread interrupt status
-                Thread.currentThread().interrupt();
+        int attempt = 0;
+        long now;
+        while (!locked && ((now = getClock().instant().toEpochMilli()) < timeToGiveUp)) {
+            if (attempt == 0) {
+                recordLockHolders();
             }
+            getLogger().info("Waiting for changelog lock....");
+            awaitLockRelease(attempt++, timeToGiveUp - now);
             locked = acquireLock();
         }
+        getMetrics().waited(getClock().millis() - waitStarted);
 
         if (!locked) {
             DatabaseChangeLogLock[] locks = listLocks();
             String lockedBy;
             if (locks.length > 0) {
                 DatabaseChangeLogLock lock = locks[0];
+                getMetrics().heldBy(lock.getLockedBy());
                 lockedBy = lock.getLockedBy() + " since " +
                         DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT)
                                 .format(lock.getLockGranted());
             } else {
                 lockedBy = "UNKNOWN";
             }
+            publishMetrics();
             throw new LockException("Could not acquire change log lock.  Currently locked by " + lockedBy);
         }
     }
@@ -158,11 +199,19 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
             return true;
         }
 
+        if (isReadOnly()) {
+            // The executor refuses any write in this mode, so no changeSet runs without the Lock
+            getLogger().info("Read-only mode, Change Log Lock not taken as nothing is written");
+            this.hasChangeLogLock = true;
+            return true;
+        }
+
+        getMetrics().attempted();
         try {
             database.rollback();
             this.init();
 
-            if (isLocked()) {
+            if (isLockCheckedBeforeAcquire() && isLocked()) {
                 return false;
             } else {
                 getLogger().info("Lock Database");
@@ -181,6 +230,8 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
                 getLogger().info("Successfully Acquired Change Log Lock");
 
                 this.hasChangeLogLock = true;
+                this.lockAcquiredAt = getClock().millis();
+                getMetrics().acquired();
 
                 // TODO: Not sure what is the purpose of this
                 // this.database.setCanCacheLiquibaseTableInfo(true);
@@ -201,16 +252,25 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
     @Override
     public void releaseLock() throws LockException {
 
+        if (isReadOnly()) {
+            this.hasChangeLogLock = false;
+            return;
+        }
+
         try {
             if (hasDatabaseChangeLogLockTable()) {
 
+                final DatabaseException flushFailure = flushHistory();
+
                 getLogger().info("Release Database Lock");
 
                 database.rollback();
 
                 final int rowsUpdated = replaceLock(false);
 
-                if (rowsUpdated != 1) {
+                if (rowsUpdated == 0) {
+                    checkNothingToRelease();
+                } else if (rowsUpdated != 1) {
                     throw new LockException("Did not update change log lock correctly.\n\n" +
                             rowsUpdated +
                             " rows were updated instead of the expected 1 row " +
@@ -218,11 +278,19 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
                     );
                 }
                 database.commit();
+
+                if (nonNull(flushFailure)) {
+                    throw flushFailure;
+                }
             }
         } catch (Exception e) {
             throw new LockException(e);
         } finally {
             try {
+                if (hasChangeLogLock) {
+                    getMetrics().held(getClock().millis() - lockAcquiredAt);
+                }
+                publishMetrics();
                 this.hasChangeLogLock = false;
                 database.setCanCacheLiquibaseTableInfo(false);
                 getLogger().info("Successfully released change log lock");
@@ -248,6 +316,10 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
 
     @Override
     public void forceReleaseLock() throws LockException, DatabaseException {
+        if (isReadOnly()) {
+            throw new LockException("Cannot force release the Change Log Lock in read-only mode");
+        }
+        getMetrics().forcedRelease();
         init();
         releaseLock();
     }
@@ -261,10 +333,14 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
 
     @Override
     public void destroy() {
+        if (isReadOnly()) {
+            throw new UnexpectedLiquibaseException("Cannot drop the Lock Collection in read-only mode: " + getDatabaseChangeLogLockTableName());
+        }
         try {
             getLogger().info("Dropping Collection Database Change Log Lock: " + getDatabaseChangeLogLockTableName());
             dropRepository();
             getLogger().info("Dropped Collection Database Change Log Lock: " + getDatabaseChangeLogLockTableName());
+            TrackingCollectionCache.invalidate(database, getDatabaseChangeLogLockTableName());
             database.commit();
             reset();
         } catch (final DatabaseException e) {
@@ -306,6 +382,137 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
         this.changeLogLockPollRate = changeLogLockWaitTime;
     }
 
+    /**
+     * Waits before the next lock acquisition attempt.
+     * Polls with an exponential backoff capped by the recheck time, with jitter so concurrent waiters spread their attempts.
+     * Implementations able to be notified of the lock release may override it.
+     *
+     * @param attempt         number of attempts already waited for, starting at 0
+     * @param remainingMillis time left before giving up
+     */
+    protected void awaitLockRelease(final int attempt, final long remainingMillis) {
+        final long backoff = Math.min(getChangeLogLockRecheckTime() * 1000, INITIAL_RECHECK_MILLIS << Math.min(attempt, 16));
+        final long delay = Math.min(remainingMillis, backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+        try {
+            //noinspection BusyWait
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            // Restore thread interrupt status
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a listener receiving the metrics of each lock cycle, in addition to the ones discovered by the service locator.
+     *
+     * @param listener the listener
+     */
+    public void addMetricsListener(final LockMetricsListener listener) {
+        metricsListeners.add(listener);
+    }
+
+    private LockMetrics getMetrics() {
+        if (isNull(metrics)) {
+            metrics = new LockMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Records who holds the lock once the first attempt failed. It costs a query only when waiting anyway.
+     */
+    private void recordLockHolders() {
+        try {
+            for (final DatabaseChangeLogLock lock : listLocks()) {
+                getMetrics().heldBy(lock.getLockedBy());
+            }
+        } catch (final LockException e) {
+            getLogger().fine("Could not read the change log lock holder", e);
+        }
+    }
+
+    /**
+     * Logs the metrics of the lock cycle and passes them to the listeners, then starts a new cycle.
+     * A failing listener does not affect the lock.
+     */
+    private void publishMetrics() {
+        if (isNull(metrics)) {
+            return;
+        }
+        final LockMetrics published = metrics;
+        metrics = null;
+        getLogger().info("Change log lock metrics for " + getDatabaseChangeLogLockTableName() + ": " + published);
+        for (final LockMetricsListener listener : getMetricsListeners()) {
+            try {
+                listener.onLockMetrics(getDatabaseChangeLogLockTableName(), published);
+            } catch (final RuntimeException e) {
+                getLogger().warning("Lock metrics listener " + listener.getClass().getName() + " failed", e);
+            }
+        }
+    }
+
+    private List<LockMetricsListener> getMetricsListeners() {
+        if (isNull(discoveredMetricsListeners)) {
+            try {
+                discoveredMetricsListeners = Scope.getCurrentScope().getServiceLocator().findInstances(LockMetricsListener.class);
+            } catch (final ServiceNotFoundException e) {
+                getLogger().fine("Could not discover lock metrics listeners", e);
+                discoveredMetricsListeners = new ArrayList<>();
+            }
+        }
+        final List<LockMetricsListener> listeners = new ArrayList<>(discoveredMetricsListeners);
+        listeners.addAll(metricsListeners);
+        return listeners;
+    }
+
+    /**
+     * The release matches only the lock held by this instance and never creates it. Nothing matched is fine
+     * when this instance did not hold the lock and no one else does.
+     *
+     * @throws LockException if this instance lost the lock, or if another one holds it
+     */
+    private void checkNothingToRelease() throws LockException {
+        if (hasChangeLogLock) {
+            throw new LockException("The change log lock was no longer held when releasing it: it was force released, "
+                    + "or its lease expired and another instance took it over. Changes may have run concurrently");
+        }
+        final DatabaseChangeLogLock[] locks = listLocks();
+        if (locks.length > 0) {
+            throw new LockException("Could not release the change log lock held by " + locks[0].getLockedBy());
+        }
+    }
+
+    /**
+     * Stores the history entries still buffered by the history service, so they are visible to the next lock holder,
+     * and ends the run of the changeSets run in parallel.
+     * A failure does not prevent the lock release, it is returned to be reported once the lock is released.
+     *
+     * @return the flush failure, or the first failure of the changeSets run in parallel, or null
+     */
+    private DatabaseException flushHistory() {
+        DatabaseException failure = null;
+        try {
+            final ChangeLogHistoryService historyService =
+                    Scope.getCurrentScope().getSingleton(ChangeLogHistoryServiceFactory.class).getChangeLogService(database);
+            if (historyService instanceof AbstractNoSqlHistoryService) {
+                ((AbstractNoSqlHistoryService<?>) historyService).flushHistory();
+            }
+        } catch (final DatabaseException e) {
+            getLogger().severe("Could not store buffered History Change Log entries before releasing the lock", e);
+            failure = e;
+        }
+        if (isParallelChangeSets()) {
+            try {
+                getExecutor().finishParallel();
+            } catch (final DatabaseException e) {
+                if (isNull(failure)) {
+                    failure = e;
+                }
+            }
+        }
+        return failure;
+    }
+
     private boolean hasDatabaseChangeLogLockTable() throws DatabaseException {
         if (isNull(this.hasDatabaseChangeLogLockTable)) {
             try {
@@ -330,6 +537,34 @@ public abstract class AbstractNoSqlLockService<D extends AbstractNoSqlDatabase>
 
     protected abstract Boolean isLocked() throws DatabaseException;
 
+    /**
+     * @return the time in milliseconds the collection is known to be created and adjusted once verified, 0 to check it each time
+     */
+    protected long getTrackingCollectionCacheTtl() {
+        return 0L;
+    }
+
+    /**
+     * @return true when the Lock Collection is only read: never created, adjusted nor written, the lock is then not taken
+     */
+    protected boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * @return true when changeSets are run in parallel, their run then ends before the lock is released
+     */
+    protected boolean isParallelChangeSets() {
+        return false;
+    }
+
+    /**
+     * @return false when {@link #replaceLock(boolean)} only locks if the lock is free, saving the {@link #isLocked()} round trip
+     */
+    protected boolean isLockCheckedBeforeAcquire() {
+        return true;
+    }
+
     protected abstract int replaceLock(boolean locked) throws DatabaseException;
 
     protected abstract List<DatabaseChangeLogLock> queryLocks() throws DatabaseException;
@@ -0,0 +1,103 @@
+package liquibase.nosql.lockservice;
+
+/*-
+ * #%L
+ * Liquibase NoSql Extension
+ * %%
+ * Copyright (C) 2020 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lock contention and wait time of one change log lock cycle, from the first acquisition attempt to the release.
+ */
+@Getter
+public class LockMetrics {
+
+    /**
+     * Number of acquisition attempts reaching the database
+     */
+    private int attempts;
+
+    /**
+     * Time spent in {@link AbstractNoSqlLockService#waitForLock()} before acquiring the lock or giving up
+     */
+    private long waitMillis;
+
+    /**
+     * Time the lock was held, 0 when not acquired
+     */
+    private long heldMillis;
+
+    /**
+     * Number of {@link AbstractNoSqlLockService#forceReleaseLock()} calls
+     */
+    private int forcedReleases;
+
+    private boolean acquired;
+
+    private final Set<String> holders = new LinkedHashSet<>();
+
+    void attempted() {
+        attempts++;
+    }
+
+    void waited(final long millis) {
+        waitMillis += millis;
+    }
+
+    void acquired() {
+        acquired = true;
+    }
+
+    void held(final long millis) {
+        heldMillis += millis;
+    }
+
+    void forcedRelease() {
+        forcedReleases++;
+    }
+
+    void heldBy(final String lockedBy) {
+        if (lockedBy != null) {
+            holders.add(lockedBy);
+        }
+    }
+
+    /**
+     * @return the hosts seen holding the lock while waiting for it, as stored in lockedBy
+     */
+    public List<String> getHolders() {
+        return new ArrayList<>(holders);
+    }
+
+    @Override
+    public String toString() {
+        return "attempts=" + attempts +
+                ", waitMillis=" + waitMillis +
+                ", heldMillis=" + heldMillis +
+                ", acquired=" + acquired +
+                ", lockedByWhileWaiting=" + holders +
+                ", forcedReleases=" + forcedReleases;
+    }
+}
@@ -0,0 +1,37 @@
+package liquibase.nosql.lockservice;
+
+/*-
+ * #%L
+ * Liquibase NoSql Extension
+ * %%
+ * Copyright (C) 2020 Mastercard
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * Receives the {@link LockMetrics} of each change log lock cycle, once the lock is released or could not be acquired.
+ * Implementations are discovered with the Liquibase service locator, listed in
+ * {@code META-INF/services/liquibase.nosql.lockservice.LockMetricsListener}, or added with
+ * {@link AbstractNoSqlLockService#addMetricsListener(LockMetricsListener)}.
+ */
+public interface LockMetricsListener {
+
+    /**
+     * @param lockCollectionName the name of the lock collection
+     * @param metrics            the metrics of the lock cycle
+     */
+    void onLockMetrics(String lockCollectionName, LockMetrics metrics);
+}
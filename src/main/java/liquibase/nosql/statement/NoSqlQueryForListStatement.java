@@ -23,9 +23,21 @@ package liquibase.nosql.statement;
 import liquibase.nosql.database.AbstractNoSqlDatabase;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface NoSqlQueryForListStatement <D extends AbstractNoSqlDatabase, T>{
 
     List<T> queryForList(D database);
 
+    /**
+     * Passes each result to the consumer as it is read. Statements backed by a cursor override it
+     * so that the results are never all held in memory at once.
+     *
+     * @param database the database to query
+     * @param consumer receives the results in order
+     */
+    default void queryForEach(final D database, final Consumer<? super T> consumer) {
+        queryForList(database).forEach(consumer);
+    }
+
 }
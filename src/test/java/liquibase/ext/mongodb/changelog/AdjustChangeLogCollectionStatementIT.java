@@ -3,6 +3,7 @@ package liquibase.ext.mongodb.changelog;
 import com.mongodb.MongoException;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
 import liquibase.ext.AbstractMongoIntegrationTest;
 import liquibase.ext.mongodb.statement.FindAllStatement;
 import liquibase.ext.mongodb.statement.InsertOneStatement;
@@ -94,6 +95,14 @@ class AdjustChangeLogCollectionStatementIT extends AbstractMongoIntegrationTest
         // with explicit supportsValidator=false should not change validators should add indexes only
         database.setSupportsValidator(FALSE);
         new AdjustChangeLogCollectionStatement(LOG_COLLECTION_NAME).execute(database);
+
+        // covering index only with projected history reads
+        indexes.clear();
+        collection.listIndexes().into(indexes);
+        assertThat(indexes).extracting(i -> i.get("name")).containsExactlyInAnyOrder("_id_", "ui_" + LOG_COLLECTION_NAME);
+
+        database.setProjectedHistory(TRUE);
+        new AdjustChangeLogCollectionStatement(LOG_COLLECTION_NAME).execute(database);
         final Document collectionInfoExplicitNoAdjustment =
                 connection.getMongoDatabase().listCollections().filter(Filters.eq("name", LOG_COLLECTION_NAME)).first();
 
@@ -103,13 +112,17 @@ class AdjustChangeLogCollectionStatementIT extends AbstractMongoIntegrationTest
 
         indexes.clear();
         connection.getMongoDatabase().getCollection(LOG_COLLECTION_NAME).listIndexes().into(indexes);
-        assertThat(indexes).hasSize(2);
+        assertThat(indexes).hasSize(3);
         assertThat(indexes.stream().filter(i -> i.get("name").equals("ui_" + LOG_COLLECTION_NAME)).findFirst().orElse(null))
                 .isNotNull()
                 .returns(TRUE, i -> i.get("unique"))
                 .returns(1, i -> ((Document) i.get("key")).get("fileName"))
                 .returns(1, i -> ((Document) i.get("key")).get("author"))
                 .returns(1, i -> ((Document) i.get("key")).get("id"));
+        assertThat(indexes.stream().filter(i -> i.get("name").equals("ci_" + LOG_COLLECTION_NAME)).findFirst().orElse(null))
+                .isNotNull()
+                .returns("orderExecuted", i -> ((Document) i.get("key")).keySet().iterator().next())
+                .returns(1, i -> ((Document) i.get("key")).get("md5sum"));
 
         // with explicit supportsValidator=true validator should be changed indexes remain same
         database.setSupportsValidator(TRUE);
@@ -127,11 +140,41 @@ class AdjustChangeLogCollectionStatementIT extends AbstractMongoIntegrationTest
 
         indexes.clear();
         connection.getMongoDatabase().getCollection(LOG_COLLECTION_NAME).listIndexes().into(indexes);
-        assertThat(indexes).hasSize(2);
+        assertThat(indexes).hasSize(3);
         assertThat(indexes.stream().filter(i -> i.get("name").equals("ui_" + LOG_COLLECTION_NAME)).findFirst().orElse(null))
                 .isNotNull();
     }
 
+    @Test
+    @SneakyThrows
+    void adjustOutdatedIndexTest() {
+        new CreateChangeLogCollectionStatement(LOG_COLLECTION_NAME).execute(database);
+        final MongoCollection<Document> collection = connection.getMongoDatabase().getCollection(LOG_COLLECTION_NAME);
+        database.setSupportsValidator(FALSE);
+
+        // Same name, not unique
+        collection.createIndex(new Document("fileName", 1).append("author", 1).append("id", 1),
+                new IndexOptions().name("ui_" + LOG_COLLECTION_NAME));
+        new AdjustChangeLogCollectionStatement(LOG_COLLECTION_NAME).execute(database);
+
+        final List<Document> indexes = new ArrayList<>();
+        collection.listIndexes().into(indexes);
+        assertThat(indexes).hasSize(2);
+        assertThat(indexes.stream().filter(i -> i.get("name").equals("ui_" + LOG_COLLECTION_NAME)).findFirst().orElse(null))
+                .isNotNull()
+                .returns(TRUE, i -> i.get("unique"));
+
+        // Same spec under another name is kept as is
+        collection.dropIndex("ui_" + LOG_COLLECTION_NAME);
+        collection.createIndex(new Document("fileName", 1).append("author", 1).append("id", 1),
+                new IndexOptions().name("custom").unique(true));
+        new AdjustChangeLogCollectionStatement(LOG_COLLECTION_NAME).execute(database);
+
+        indexes.clear();
+        collection.listIndexes().into(indexes);
+        assertThat(indexes).extracting(i -> i.get("name")).containsExactlyInAnyOrder("_id_", "custom");
+    }
+
     @Test
     @SneakyThrows
     void insertDataTest() {
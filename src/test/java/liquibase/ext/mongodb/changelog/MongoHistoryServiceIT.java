@@ -20,25 +20,42 @@ package liquibase.ext.mongodb.changelog;
  * #L%
  */
 
+import com.mongodb.client.model.Filters;
 import liquibase.ChecksumVersion;
 import liquibase.Scope;
 import liquibase.change.CheckSum;
 import liquibase.changelog.ChangeLogHistoryServiceFactory;
 import liquibase.changelog.ChangeSet;
 import liquibase.changelog.RanChangeSet;
+import liquibase.database.DatabaseFactory;
 import liquibase.exception.DatabaseException;
 import liquibase.ext.AbstractMongoIntegrationTest;
 import liquibase.ext.mongodb.change.CreateCollectionChange;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
 import liquibase.ext.mongodb.statement.InsertOneStatement;
+import liquibase.lockservice.LockService;
+import liquibase.lockservice.LockServiceFactory;
 import lombok.SneakyThrows;
 import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static liquibase.ext.mongodb.TestUtils.DB_CONNECTION_PATH;
+import static liquibase.ext.mongodb.TestUtils.PROPERTY_FILE;
+import static liquibase.ext.mongodb.TestUtils.loadProperty;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 class MongoHistoryServiceIT extends AbstractMongoIntegrationTest {
 
@@ -164,6 +181,52 @@ class MongoHistoryServiceIT extends AbstractMongoIntegrationTest {
                 .hasSize(2).hasOnlyElementsOfType(MongoRanChangeSet.class);
     }
 
+    @SneakyThrows
+    @Test
+    void historyFingerprint() {
+        historyService.init();
+        new InsertOneStatement(historyService.getDatabaseChangeLogTableName(), historyService.getConverter().toDocument(ranChangeSet1), new Document()).execute(database);
+        new InsertOneStatement(historyService.getDatabaseChangeLogTableName(), historyService.getConverter().toDocument(ranChangeSet2), new Document()).execute(database);
+
+        final GetHistoryFingerprintStatement statement = new GetHistoryFingerprintStatement(historyService.getDatabaseChangeLogTableName());
+        final HistoryFingerprint stored = statement.queryForObject(database, HistoryFingerprint.class);
+        assertThat(stored).isEqualTo(HistoryFingerprint.of(historyService.queryRanChangeSets()));
+        assertThat(stored.getCount()).isEqualTo(2L);
+        assertThat(stored.getTagged()).isEqualTo(2L);
+
+        historyService.clearAllCheckSums();
+        assertThat(statement.queryForObject(database, HistoryFingerprint.class))
+                .isNotEqualTo(stored)
+                .isEqualTo(HistoryFingerprint.of(historyService.queryRanChangeSets()));
+    }
+
+    @SneakyThrows
+    @Test
+    void baseline() {
+        historyService.init();
+        new InsertOneStatement(historyService.getDatabaseChangeLogTableName(), historyService.getConverter().toDocument(ranChangeSet1), new Document()).execute(database);
+        new InsertOneStatement(historyService.getDatabaseChangeLogTableName(), historyService.getConverter().toDocument(ranChangeSet2), new Document()).execute(database);
+
+        historyService.baseline("tag");
+        assertThat(historyService.countRanChangeSets()).isEqualTo(1L);
+        // Folded changeSets are still reported as ran
+        assertThat(historyService.getRanChangeSets()).extracting(RanChangeSet::getId)
+                .containsExactlyInAnyOrder("1", "2", "tag");
+        assertThat(historyService.getRanChangeSet(changeSet1)).isNotNull();
+
+        // Running it again completes or repeats it without duplicates
+        historyService.baseline("tag");
+        historyService.reset();
+        assertThat(historyService.countRanChangeSets()).isEqualTo(1L);
+        assertThat(historyService.getRanChangeSets()).hasSize(3);
+
+        // An archive not matching its checkpoint is reported
+        mongoDatabase.getCollection(historyService.getChangeLogArchiveTableName()).deleteOne(Filters.eq(MongoRanChangeSet.Fields.changeSetId, "1"));
+        historyService.reset();
+        assertThatExceptionOfType(DatabaseException.class).isThrownBy(() -> historyService.getRanChangeSets())
+                .withMessageContaining("Baseline tag does not match");
+    }
+
     @SneakyThrows
     @Test
     void replaceChecksum() {
@@ -232,6 +295,88 @@ class MongoHistoryServiceIT extends AbstractMongoIntegrationTest {
     void testGetNextSequenceValue() {
     }
 
+    @SneakyThrows
+    @Test
+    void reserveChangeSetSequenceCatchesUpWithHistory() {
+        historyService.init();
+        final ReserveChangeSetSequenceStatement reserve = new ReserveChangeSetSequenceStatement(
+                historyService.getChangeSetSequenceTableName(), historyService.getDatabaseChangeLogTableName(), 10, false);
+        final ReserveChangeSetSequenceStatement catchUp = new ReserveChangeSetSequenceStatement(
+                historyService.getChangeSetSequenceTableName(), historyService.getDatabaseChangeLogTableName(), 10, true);
+
+        // Missing counter is seeded from the history
+        final Document recordedBefore = historyService.getConverter().toDocument(ranChangeSet1);
+        recordedBefore.put(MongoRanChangeSet.Fields.orderExecuted, 5);
+        new InsertOneStatement(historyService.getDatabaseChangeLogTableName(), recordedBefore, new Document()).execute(database);
+        assertThat(reserve.queryForLong(database)).isEqualTo(15L);
+
+        // Recorded without the counter, above it: only incremented until the next catch up
+        final Document recordedElsewhere = historyService.getConverter().toDocument(ranChangeSet2);
+        recordedElsewhere.put(MongoRanChangeSet.Fields.orderExecuted, 50);
+        new InsertOneStatement(historyService.getDatabaseChangeLogTableName(), recordedElsewhere, new Document()).execute(database);
+        assertThat(reserve.queryForLong(database)).isEqualTo(25L);
+        assertThat(catchUp.queryForLong(database)).isEqualTo(60L);
+
+        // Below the counter the catch up is a no-op
+        assertThat(catchUp.queryForLong(database)).isEqualTo(70L);
+    }
+
+    @SneakyThrows
+    @Test
+    void concurrentLockScopes() {
+        final MongoLiquibaseDatabase otherDatabase = (MongoLiquibaseDatabase) DatabaseFactory.getInstance()
+                .openDatabase(loadProperty(PROPERTY_FILE, DB_CONNECTION_PATH), null, null, null, null);
+        try {
+            database.setLockScope("teamA");
+            otherDatabase.setLockScope("teamB");
+            final MongoHistoryService otherHistoryService = (MongoHistoryService) Scope.getCurrentScope()
+                    .getSingleton(ChangeLogHistoryServiceFactory.class).getChangeLogService(otherDatabase);
+            historyService.init();
+            otherHistoryService.init();
+
+            final LockService lockService = LockServiceFactory.getInstance().getLockService(database);
+            final LockService otherLockService = LockServiceFactory.getInstance().getLockService(otherDatabase);
+            assertThat(lockService.acquireLock()).isTrue();
+            assertThat(otherLockService.acquireLock()).isTrue();
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final ExecutorService pool = Executors.newFixedThreadPool(2);
+            try {
+                final Future<?> teamA = pool.submit(() -> record(start, historyService, "teamA"));
+                final Future<?> teamB = pool.submit(() -> record(start, otherHistoryService, "teamB"));
+                start.countDown();
+                teamA.get(1, TimeUnit.MINUTES);
+                teamB.get(1, TimeUnit.MINUTES);
+            } finally {
+                pool.shutdownNow();
+            }
+            lockService.releaseLock();
+            otherLockService.releaseLock();
+
+            final List<RanChangeSet> ranChangeSets = historyService.queryRanChangeSets();
+            assertThat(ranChangeSets).hasSize(40);
+            assertThat(ranChangeSets).extracting(RanChangeSet::getOrderExecuted).doesNotHaveDuplicates();
+            // Each scope records its changeSets in its own order
+            for (final String scope : Arrays.asList("teamA", "teamB")) {
+                assertThat(ranChangeSets.stream().filter(r -> r.getAuthor().equals(scope))
+                        .sorted(Comparator.comparing(r -> Integer.valueOf(r.getId())))
+                        .map(RanChangeSet::getOrderExecuted).collect(Collectors.toList())).hasSize(20).isSorted();
+            }
+        } finally {
+            otherDatabase.close();
+        }
+    }
+
+    @SneakyThrows
+    private static Void record(final CountDownLatch start, final MongoHistoryService service, final String scope) {
+        start.await();
+        for (int i = 0; i < 20; i++) {
+            service.setExecType(new ChangeSet(String.valueOf(i), scope, false, false, "fileName", null, null, null),
+                    ChangeSet.ExecType.EXECUTED);
+        }
+        return null;
+    }
+
     @Test
     void testTag() {
     }
@@ -1,7 +1,15 @@
 package liquibase.ext.mongodb.changelog;
 
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
 import liquibase.Scope;
+import liquibase.change.CheckSum;
 import liquibase.changelog.ChangeLogHistoryServiceFactory;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.changelog.RanChangeSet;
 import liquibase.database.core.DB2Database;
 import liquibase.exception.DatabaseException;
 import liquibase.exception.UnexpectedLiquibaseException;
@@ -9,9 +17,16 @@ import liquibase.executor.Executor;
 import liquibase.executor.ExecutorService;
 import liquibase.ext.mongodb.database.MongoConnection;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.ext.mongodb.statement.BulkWriteStatement;
 import liquibase.ext.mongodb.statement.CountCollectionByNameStatement;
+import liquibase.ext.mongodb.statement.CountDocumentsInCollectionStatement;
+import liquibase.ext.mongodb.statement.DeleteManyStatement;
+import liquibase.ext.mongodb.statement.FindAllAsStatement;
+import liquibase.ext.mongodb.statement.FindAllStatement;
 import liquibase.nosql.executor.NoSqlExecutor;
+import liquibase.statement.SqlStatement;
 import lombok.SneakyThrows;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,13 +35,25 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Consumer;
 
 import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static liquibase.nosql.executor.NoSqlExecutor.EXECUTOR_NAME;
 import static liquibase.plugin.Plugin.PRIORITY_SPECIALIZED;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
@@ -343,24 +370,370 @@ class MongoHistoryServiceTest {
         assertThat(historyService.getRanChangeSetList()).isNull();
     }
 
+    @SneakyThrows
     @Test
     void getRanChangeSets() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setIncrementalHistoryCache(TRUE);
+
+        final MongoRanChangeSet first = ranChangeSet("1", 1);
+        final MongoRanChangeSet second = ranChangeSet("2", 2);
+
+        doAnswer(forEach(singletonList(first))).doAnswer(forEach(singletonList(second)))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        doReturn(HistoryFingerprint.of(Arrays.asList(first, second)))
+                .when(executorMock).queryForObject(any(GetHistoryFingerprintStatement.class), eq(HistoryFingerprint.class));
+
+        assertThat(historyService.getRanChangeSets()).extracting(RanChangeSet::getId).containsExactly("1");
+
+        // After reset only the entries above the loaded orderExecuted are fetched
+        historyService.reset();
+        assertThat(historyService.getRanChangeSetList()).isNull();
+        assertThat(historyService.getRanChangeSets()).extracting(RanChangeSet::getId).containsExactly("1", "2");
+
+        verify(executorMock, times(2)).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        verify(executorMock, times(1)).queryForObject(any(GetHistoryFingerprintStatement.class), eq(HistoryFingerprint.class));
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    @SneakyThrows
+    @Test
+    void getRanChangeSetsReloadsWhenHistoryRewritten() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setIncrementalHistoryCache(TRUE);
+
+        final MongoRanChangeSet first = ranChangeSet("1", 1);
+        final MongoRanChangeSet second = ranChangeSet("2", 2);
+
+        doAnswer(forEach(Arrays.asList(first, second))).doAnswer(forEach(emptyList())).doAnswer(forEach(singletonList(second)))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        // One entry was deleted outside of the service
+        doReturn(HistoryFingerprint.of(singletonList(second)))
+                .when(executorMock).queryForObject(any(GetHistoryFingerprintStatement.class), eq(HistoryFingerprint.class));
+
+        assertThat(historyService.getRanChangeSets()).extracting(RanChangeSet::getId).containsExactly("1", "2");
+
+        historyService.reset();
+        assertThat(historyService.getRanChangeSets()).extracting(RanChangeSet::getId).containsExactly("2");
+
+        verify(executorMock, times(3)).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        verify(executorMock, times(1)).queryForObject(any(GetHistoryFingerprintStatement.class), eq(HistoryFingerprint.class));
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    @SneakyThrows
+    @Test
+    void getRanChangeSetsReloadsWhenEntryRewritten() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setIncrementalHistoryCache(TRUE);
+
+        final MongoRanChangeSet first = ranChangeSet("1", 1);
+        final MongoRanChangeSet second = ranChangeSet("2", 2);
+        final MongoRanChangeSet secondTagged = new MongoRanChangeSet("fileName", "2", "author", CheckSum.compute("md5sum2"),
+                second.getDateExecuted(), "v1", ChangeSet.ExecType.EXECUTED, "description", "comments", null, null, null,
+                "deploymentId", 2, "liquibase");
+
+        doAnswer(forEach(Arrays.asList(first, second))).doAnswer(forEach(emptyList()))
+                .doAnswer(forEach(Arrays.asList(first, secondTagged)))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        // Tagged in place by another process: same count and max orderExecuted
+        doReturn(HistoryFingerprint.of(Arrays.asList(first, secondTagged)))
+                .when(executorMock).queryForObject(any(GetHistoryFingerprintStatement.class), eq(HistoryFingerprint.class));
+
+        assertThat(historyService.getRanChangeSets()).extracting(RanChangeSet::getTag).containsExactly(null, null);
+
+        historyService.reset();
+        assertThat(historyService.getRanChangeSets()).extracting(RanChangeSet::getTag).containsExactly(null, "v1");
+
+        verify(executorMock, times(3)).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        verify(executorMock, times(1)).queryForObject(any(GetHistoryFingerprintStatement.class), eq(HistoryFingerprint.class));
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    @SneakyThrows
+    @Test
+    void getRanChangeSetsWithoutHistoryCache() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setIncrementalHistoryCache(FALSE);
+
+        final Object first = ranChangeSet("1", 1);
+
+        doAnswer(forEach(singletonList(first)))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+
+        assertThat(historyService.getRanChangeSets()).hasSize(1);
+        historyService.reset();
+        assertThat(historyService.getRanChangeSets()).hasSize(1);
+
+        verify(executorMock, times(2)).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    @SneakyThrows
+    @Test
+    void getRanChangeSetsProjected() {
+        final ArgumentCaptor<FindAllAsStatement> findAllAsStatementArgumentCaptor = ArgumentCaptor.forClass(FindAllAsStatement.class);
+        final ArgumentCaptor<FindAllStatement> findAllStatementArgumentCaptor = ArgumentCaptor.forClass(FindAllStatement.class);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setProjectedHistory(TRUE);
+
+        final MongoRanChangeSet firstProjected = new MongoRanChangeSet("fileName", "1", "author", CheckSum.compute("md5sum1"),
+                new Date(), null, ChangeSet.ExecType.EXECUTED, null, null, null, null, null, "deploymentId", 1, null);
+        final MongoRanChangeSet secondProjected = new MongoRanChangeSet("fileName", "2", "author", CheckSum.compute("md5sum2"),
+                new Date(), null, ChangeSet.ExecType.EXECUTED, null, null, null, null, null, "deploymentId", 2, null);
+
+        doAnswer(forEach(Arrays.asList(firstProjected, secondProjected)))
+                .when(executorMock).queryForEach(findAllAsStatementArgumentCaptor.capture(), eq(MongoRanChangeSet.class), any());
+        doAnswer(forEach(Arrays.asList(historyService.getConverter().toDocument(ranChangeSet("1", 1)),
+                historyService.getConverter().toDocument(ranChangeSet("2", 2)))))
+                .when(executorMock).queryForEach(findAllStatementArgumentCaptor.capture(), eq(Document.class), any());
+
+        final List<RanChangeSet> ranChangeSets = historyService.getRanChangeSets();
+        assertThat(ranChangeSets).extracting(RanChangeSet::getId).containsExactly("1", "2");
+        assertThat(findAllAsStatementArgumentCaptor.getValue().getProjection()).isEqualTo(MongoHistoryService.HISTORY_PROJECTION);
+        verify(executorMock, times(1)).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        verify(executorMock, times(0)).queryForEach(any(FindAllStatement.class), eq(Document.class), any());
+
+        // Left out fields are only read on request, once for all the entries
+        assertThat(ranChangeSets).extracting(RanChangeSet::getDescription).containsOnlyNulls();
+        verify(executorMock, times(0)).queryForEach(any(FindAllStatement.class), eq(Document.class), any());
+
+        historyService.loadHistoryDetails(ranChangeSets);
+        assertThat(ranChangeSets).extracting(RanChangeSet::getDescription).containsExactly("description", "description");
+        assertThat(ranChangeSets).extracting(RanChangeSet::getLiquibaseVersion).containsExactly("liquibase", "liquibase");
+        assertThat(findAllStatementArgumentCaptor.getValue().getProjection()).isEqualTo(MongoHistoryService.DETAILS_PROJECTION);
+        verify(executorMock, times(1)).queryForEach(any(FindAllStatement.class), eq(Document.class), any());
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    @SneakyThrows
+    @Test
+    void getRanChangeSetsForExpectedChangeSets() {
+        final ArgumentCaptor<FindAllAsStatement> findAllAsStatementArgumentCaptor = ArgumentCaptor.forClass(FindAllAsStatement.class);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setServerSidePendingChangeSets(TRUE);
+        database.setProjectedHistory(FALSE);
+        final DatabaseChangeLog changeLog = new DatabaseChangeLog("fileName");
+        changeLog.addChangeSet(changeSet("1"));
+        changeLog.addChangeSet(changeSet("2"));
+        changeLog.addChangeSet(changeSet("3"));
+
+        // Only the entries of the changelog changeSets come back, 3 is pending
+        doAnswer(forEach(Arrays.asList(ranChangeSet("2", 2),
+                ranChangeSet("1", 1))))
+                .when(executorMock).queryForEach(findAllAsStatementArgumentCaptor.capture(), eq(MongoRanChangeSet.class), any());
+        // No baseline archive
+        doReturn(0L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+
+        // Registered by Liquibase with the changelog of the run
+        historyService.upgradeChecksums(changeLog, new Contexts(), new LabelExpression());
+        assertThat(historyService.getExpectedChangeSets()).hasSize(3);
+        assertThat(historyService.getRanChangeSets()).extracting(RanChangeSet::getId).containsExactly("1", "2");
+        assertThat(findAllAsStatementArgumentCaptor.getValue().getFilter()).hasToString(Filters.and(
+                Filters.eq("fileName", "fileName"), Filters.eq("author", "author"),
+                Filters.in("id", new LinkedHashSet<>(Arrays.asList("1", "2", "3")))).toString());
+
+        // Partial history is not refreshed incrementally
+        historyService.reset();
+        assertThat(historyService.getRanChangeSets()).hasSize(2);
+
+        verify(executorMock, times(2)).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        verify(executorMock, times(2)).queryForLong(any(CountCollectionByNameStatement.class));
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    @SneakyThrows
+    @Test
+    void baseline() {
+        final ArgumentCaptor<SqlStatement> updateStatementArgumentCaptor = ArgumentCaptor.forClass(SqlStatement.class);
+        final ArgumentCaptor<FindAllStatement> findAllStatementArgumentCaptor = ArgumentCaptor.forClass(FindAllStatement.class);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+
+        final MongoRanChangeSet tagged = ranChangeSet("2", 2);
+        tagged.setTag("v1");
+        doAnswer(forEach(singletonList(tagged)))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        // Folded entries read from the History, then from the archive to be hashed
+        doAnswer(forEach(Arrays.asList(historyService.getConverter().toDocument(ranChangeSet("1", 1)).append("_id", 1),
+                historyService.getConverter().toDocument(tagged).append("_id", 2))))
+                .when(executorMock).queryForEach(findAllStatementArgumentCaptor.capture(), eq(Document.class), any());
+        doReturn(2).when(executorMock).update(any(BulkWriteStatement.class));
+        doReturn(2).when(executorMock).update(any(DeleteManyStatement.class));
+
+        historyService.baseline("v1");
+
+        // Folded entries are archived, then the checkpoint is upserted, then the folded entries are removed
+        verify(executorMock, times(3)).update(updateStatementArgumentCaptor.capture());
+        final List<SqlStatement> updates = updateStatementArgumentCaptor.getAllValues();
+        assertThat(updates.get(0)).isInstanceOf(BulkWriteStatement.class);
+        assertThat(updates.get(1)).isInstanceOf(BulkWriteStatement.class);
+        assertThat(updates.get(2)).isInstanceOf(DeleteManyStatement.class);
+        final BulkWriteStatement archived = (BulkWriteStatement) updates.get(0);
+        assertThat(archived.getCollectionName()).isEqualTo("DATABASECHANGELOGARCHIVE");
+        assertThat(archived.getRequests()).hasSize(2)
+                .allSatisfy(r -> assertThat(((ReplaceOneModel<Document>) r).getReplacement()
+                        .getString(MongoRanChangeSet.Fields.baselineTag)).isEqualTo("v1"));
+        assertThat(findAllStatementArgumentCaptor.getAllValues().get(1).getCollectionName()).isEqualTo("DATABASECHANGELOGARCHIVE");
+
+        final BulkWriteStatement checkpointUpsert = (BulkWriteStatement) updates.get(1);
+        assertThat(checkpointUpsert.getCollectionName()).isEqualTo("DATABASECHANGELOG");
+        final ReplaceOneModel<Document> checkpointModel = (ReplaceOneModel<Document>) checkpointUpsert.getRequests().get(0);
+        assertThat(checkpointModel.getReplaceOptions().isUpsert()).isTrue();
+        final Document checkpoint = checkpointModel.getReplacement();
+        assertThat(checkpoint.getString(MongoRanChangeSet.Fields.fileName)).isEqualTo(MongoHistoryService.BASELINE_FILE_NAME);
+        assertThat(checkpoint.getString(MongoRanChangeSet.Fields.changeSetId)).isEqualTo("v1");
+        assertThat(checkpoint.getString(MongoRanChangeSet.Fields.tag)).isEqualTo("v1");
+        assertThat(checkpoint.getInteger(MongoRanChangeSet.Fields.orderExecuted)).isEqualTo(2);
+        assertThat(checkpoint.getLong(MongoRanChangeSet.Fields.baselineCount)).isEqualTo(2L);
+        assertThat(checkpoint.getString(MongoRanChangeSet.Fields.baselineHash)).matches("[0-9a-f]{64}");
+        assertThat(checkpoint).doesNotContainKey("_id");
+    }
+
+    @SneakyThrows
+    @Test
+    void baselineUnknownTag() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+
+        doAnswer(forEach(emptyList()))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+
+        assertThatExceptionOfType(DatabaseException.class).isThrownBy(() -> historyService.baseline("v1"));
+
+        verify(executorMock, times(1)).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    private MongoRanChangeSet ranChangeSet(final String id, final Integer orderExecuted) {
+        return new MongoRanChangeSet("fileName", id, "author", CheckSum.compute("md5sum" + id), new Date(), null,
+                ChangeSet.ExecType.EXECUTED, "description", "comments", null, null, null,
+                "deploymentId", orderExecuted, "liquibase");
+    }
+
+    @SneakyThrows
+    @Test
+    void readOnlyReadsMissingHistoryAsEmpty() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setReadOnly(TRUE);
+
+        doReturn(0L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+
+        assertThat(historyService.canCreateChangeLogTable()).isFalse();
+        historyService.init();
+        assertThat(historyService.isServiceInitialized()).isTrue();
+        assertThat(historyService.getRanChangeSets()).isEmpty();
+
+        assertThatExceptionOfType(DatabaseException.class)
+                .isThrownBy(() -> historyService.setExecType(changeSet("1"), ChangeSet.ExecType.EXECUTED));
+        assertThatExceptionOfType(DatabaseException.class).isThrownBy(() -> historyService.tag("v1"));
+        assertThatExceptionOfType(DatabaseException.class).isThrownBy(historyService::clearAllCheckSums);
+        assertThatExceptionOfType(UnexpectedLiquibaseException.class).isThrownBy(historyService::destroy);
+
+        // Only the existence check is sent
+        verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
+        verifyNoMoreInteractions(executorMock);
     }
 
     @Test
     void replaceChecksum() {
     }
 
+    @SneakyThrows
     @Test
-    void setExecType() {
+    void setExecTypeWriteBehind() {
+        final ArgumentCaptor<BulkWriteStatement> bulkWriteStatementArgumentCaptor = ArgumentCaptor.forClass(BulkWriteStatement.class);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setHistoryWriteBehind(TRUE);
+
+        doReturn(0L).when(executorMock).queryForLong(any(GetMaxChangeSetSequenceStatement.class));
+        doReturn(2).when(executorMock).update(bulkWriteStatementArgumentCaptor.capture());
+
+        historyService.setExecType(changeSet("1"), ChangeSet.ExecType.EXECUTED);
+        historyService.setExecType(changeSet("2"), ChangeSet.ExecType.EXECUTED);
+
+        // Entries are only buffered
+        verify(executorMock, times(1)).queryForLong(any(GetMaxChangeSetSequenceStatement.class));
+        verifyNoMoreInteractions(executorMock);
+
+        historyService.flushHistory();
+        assertThat(bulkWriteStatementArgumentCaptor.getValue().getRequests()).hasSize(2);
+        assertThat(bulkWriteStatementArgumentCaptor.getValue().isOrdered()).isFalse();
+
+        // Nothing left to store
+        historyService.flushHistory();
+        verify(executorMock, times(1)).update(any(BulkWriteStatement.class));
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    private ChangeSet changeSet(final String id) {
+        return new ChangeSet(id, "author", false, false, "fileName", null, null, null);
+    }
+
+    @Test
+    void expectedChangeSetsFilter() {
+        final ChangeSet other = new ChangeSet("1", "other", false, false, "otherFile", null, null, null);
+        assertThat(MongoHistoryService.expectedChangeSetsFilter(Arrays.asList(changeSet("1"), other, changeSet("2"))))
+                .hasToString(Filters.or(
+                        Filters.and(Filters.eq("fileName", "fileName"), Filters.eq("author", "author"),
+                                Filters.in("id", new LinkedHashSet<>(Arrays.asList("1", "2")))),
+                        Filters.and(Filters.eq("fileName", "otherFile"), Filters.eq("author", "other"),
+                                Filters.in("id", new LinkedHashSet<>(Arrays.asList("1"))))).toString());
     }
 
     @Test
     void removeFromHistory() {
     }
 
+    @SneakyThrows
     @Test
-    void getNextSequenceValue() {
+    void getNextSequenceValueFromCounter() {
+        final ArgumentCaptor<ReserveChangeSetSequenceStatement> reserveStatementArgumentCaptor =
+                ArgumentCaptor.forClass(ReserveChangeSetSequenceStatement.class);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setChangeSetSequenceCounter(TRUE);
+
+        // Counter already moved by another node to 150 reserving 101..150 for this one
+        doReturn(150L).when(executorMock).queryForLong(reserveStatementArgumentCaptor.capture());
+
+        assertThat(historyService.getNextSequenceValue()).isEqualTo(101);
+        assertThat(historyService.getNextSequenceValue()).isEqualTo(102);
+
+        assertThat(reserveStatementArgumentCaptor.getValue().getCollectionName()).isEqualTo("DATABASECHANGELOGSEQUENCE");
+        assertThat(reserveStatementArgumentCaptor.getValue().getChangeLogCollectionName()).isEqualTo("DATABASECHANGELOG");
+        assertThat(reserveStatementArgumentCaptor.getValue().getBlockSize()).isEqualTo(50);
+        assertThat(reserveStatementArgumentCaptor.getValue().isCatchUp()).isTrue();
+        verify(executorMock, times(1)).queryForLong(any(ReserveChangeSetSequenceStatement.class));
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    @SneakyThrows
+    @Test
+    void getNextSequenceValueWithLockScope() {
+        final ArgumentCaptor<ReserveChangeSetSequenceStatement> reserveStatementArgumentCaptor =
+                ArgumentCaptor.forClass(ReserveChangeSetSequenceStatement.class);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setLockScope("teamA");
+
+        // Another scope reserved 8 in between
+        doReturn(7L, 9L, 10L).when(executorMock).queryForLong(reserveStatementArgumentCaptor.capture());
+
+        assertThat(database.getChangeSetSequenceCounter()).isTrue();
+        assertThat(historyService.getNextSequenceValue()).isEqualTo(7);
+        assertThat(historyService.getNextSequenceValue()).isEqualTo(9);
+        assertThat(historyService.getNextSequenceValue()).isEqualTo(10);
+
+        // One reservation per changeSet, the history max is read by the first one only
+        assertThat(reserveStatementArgumentCaptor.getAllValues()).extracting(ReserveChangeSetSequenceStatement::getBlockSize)
+                .containsExactly(1, 1, 1);
+        assertThat(reserveStatementArgumentCaptor.getAllValues()).extracting(ReserveChangeSetSequenceStatement::isCatchUp)
+                .containsExactly(true, false, false);
+        verify(executorMock, times(3)).queryForLong(any(ReserveChangeSetSequenceStatement.class));
+        verifyNoMoreInteractions(executorMock);
     }
 
     @Test
@@ -391,8 +764,33 @@ class MongoHistoryServiceTest {
     void upgradeChecksums() {
     }
 
+    @SneakyThrows
     @Test
     void getRanChangeSet() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        doReturn(2L).when(executorMock).queryForLong(any(GetMaxChangeSetSequenceStatement.class));
+        doReturn(3L).when(executorMock).queryForLong(any(CountDocumentsInCollectionStatement.class));
+        doAnswer(forEach(Arrays.asList(ranChangeSet("1", 1),
+                ranChangeSet("2", 2))))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
+
+        assertThat(historyService.getRanChangeSet(changeSet("2"))).extracting(RanChangeSet::getId).isEqualTo("2");
+        assertThat(historyService.getRanChangeSet(changeSet("3"))).isNull();
+
+        // The lookup index follows the changes made through the service
+        historyService.setExecType(changeSet("3"), ChangeSet.ExecType.EXECUTED);
+        assertThat(historyService.getRanChangeSet(changeSet("3"))).extracting(RanChangeSet::getId).isEqualTo("3");
+
+        historyService.tag("tag3");
+        assertThat(historyService.getRanChangeSet(changeSet("3"))).extracting(RanChangeSet::getTag).isEqualTo("tag3");
+
+        historyService.removeFromHistory(changeSet("3"));
+        assertThat(historyService.getRanChangeSet(changeSet("3"))).isNull();
+        assertThat(historyService.getRanChangeSet(changeSet("1"))).extracting(RanChangeSet::getId).isEqualTo("1");
+
+        verify(executorMock, times(1)).queryForEach(any(FindAllAsStatement.class), eq(MongoRanChangeSet.class), any());
     }
 
     @Test
@@ -459,4 +857,11 @@ class MongoHistoryServiceTest {
     void updateCheckSum() {
     }
 
-}
\ No newline at end of file
+    private static Answer<Void> forEach(final List<?> documents) {
+        return invocation -> {
+            final Consumer<Object> consumer = invocation.getArgument(2);
+            documents.forEach(consumer);
+            return null;
+        };
+    }
+}
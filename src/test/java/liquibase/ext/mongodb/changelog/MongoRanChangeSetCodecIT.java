@@ -0,0 +1,100 @@
+package liquibase.ext.mongodb.changelog;
+
+import liquibase.Scope;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Decoder;
+import org.bson.codecs.DecoderContext;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+import static liquibase.ext.mongodb.statement.BsonUtils.uuidCodecRegistry;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures decoding the History Change Log entries with the codec against the Document and converter path.
+ * Timings and allocations are logged, only the codec allocating less is asserted as it does not depend on the machine.
+ */
+class MongoRanChangeSetCodecIT {
+
+    private static final int ENTRIES = 50_000;
+
+    private static final int ROUNDS = 3;
+
+    @Test
+    void decode() {
+        final List<RawBsonDocument> stored = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            stored.add(new RawBsonDocument(new Document()
+                    .append("fileName", "liquibase/changelogs/module-" + (i % 300) + "/db.changelog.xml")
+                    .append("id", "cs" + i)
+                    .append("author", "author" + (i % 20))
+                    .append("dateExecuted", new Date())
+                    .append("orderExecuted", i)
+                    .append("execType", "EXECUTED")
+                    .append("md5sum", "9:c3981fa8d26e95d911fe8eaeb6570f2f")
+                    .append("description", "createCollection collectionName=collection" + i)
+                    .append("contexts", "prod")
+                    .append("labels", "release")
+                    .append("deploymentId", "0123456789")
+                    .append("liquibase", "5.0.3"), uuidCodecRegistry().get(Document.class)));
+        }
+
+        final MongoRanChangeSetCodec codec = new MongoRanChangeSetCodec();
+        final MongoRanChangeSetToDocumentConverter converter = new MongoRanChangeSetToDocumentConverter();
+        final Decoder<Document> documentCodec = uuidCodecRegistry().get(Document.class);
+
+        final Measure viaCodec = new Measure();
+        final Measure viaDocument = new Measure();
+        for (int round = 0; round < ROUNDS; round++) {
+            viaCodec.run(stored, raw -> codec.decode(raw.asBsonReader(), DecoderContext.builder().build()));
+            viaDocument.run(stored, raw -> converter.fromDocument(documentCodec.decode(raw.asBsonReader(), DecoderContext.builder().build())));
+        }
+
+        assertThat(viaCodec.decoded).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(viaDocument.decoded);
+
+        Scope.getCurrentScope().getLog(getClass()).info(String.format(
+                "%d entries, best of %d rounds: codec %d ms %d MB allocated, Document and converter %d ms %d MB allocated",
+                ENTRIES, ROUNDS, viaCodec.nanos / 1_000_000, viaCodec.bytes / (1024 * 1024),
+                viaDocument.nanos / 1_000_000, viaDocument.bytes / (1024 * 1024)));
+
+        assumeTrue(viaCodec.bytes >= 0 && viaDocument.bytes >= 0, "Thread allocation is not measured by this JVM");
+        assertThat(viaCodec.bytes).isLessThan(viaDocument.bytes);
+    }
+
+    /**
+     * Keeps the best elapsed time and allocated bytes of the decoding rounds of one path
+     */
+    private static class Measure {
+
+        private long nanos = Long.MAX_VALUE;
+
+        private long bytes = Long.MAX_VALUE;
+
+        private List<MongoRanChangeSet> decoded;
+
+        private void run(final List<RawBsonDocument> stored, final Function<RawBsonDocument, MongoRanChangeSet> decode) {
+            final long bytesStart = allocatedBytes();
+            final long start = System.nanoTime();
+            final List<MongoRanChangeSet> result = new ArrayList<>(stored.size());
+            stored.forEach(raw -> result.add(decode.apply(raw)));
+            nanos = Math.min(nanos, System.nanoTime() - start);
+            bytes = bytesStart < 0 ? -1 : Math.min(bytes, allocatedBytes() - bytesStart);
+            decoded = result;
+        }
+
+        private static long allocatedBytes() {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                        .getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package liquibase.ext.mongodb.changelog;
+
+import liquibase.ContextExpression;
+import liquibase.Labels;
+import liquibase.change.CheckSum;
+import liquibase.changelog.ChangeSet;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static liquibase.ext.mongodb.statement.BsonUtils.uuidCodecRegistry;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MongoRanChangeSetCodecTest {
+
+    protected MongoRanChangeSetCodec codec = new MongoRanChangeSetCodec();
+
+    protected MongoRanChangeSetToDocumentConverter converter = new MongoRanChangeSetToDocumentConverter();
+
+    @Test
+    void encode() {
+        final MongoRanChangeSet ranChangeSet = new MongoRanChangeSet("liquibase/file.xml", "cs4", "Alex",
+                CheckSum.parse("9:c3981fa8d26e95d911fe8eaeb6570f2f"), new Date(), "Tags", ChangeSet.ExecType.EXECUTED,
+                "The Description", "The Comments", new ContextExpression("context1"),
+                Collections.singletonList(new ContextExpression("inhContext1")), new Labels("label1"),
+                "The Deployment Id", 100, "Liquibase Version");
+
+        final BsonDocument encoded = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(encoded), ranChangeSet, EncoderContext.builder().build());
+
+        // Same document as written by the converter
+        assertThat(encoded).isEqualTo(converter.toDocument(ranChangeSet).toBsonDocument(Document.class, uuidCodecRegistry()));
+    }
+
+    @Test
+    void decode() {
+        final Date dateExecuted = new Date();
+        final Document maximal = new Document()
+                .append("_id", "ignored")
+                .append("id", "cs4")
+                .append("author", "Alex")
+                .append("fileName", "liquibase/file.xml")
+                .append("dateExecuted", dateExecuted)
+                .append("orderExecuted", 100L)
+                .append("execType", "EXECUTED")
+                .append("md5sum", "9:c3981fa8d26e95d911fe8eaeb6570f2f")
+                .append("description", "The Description")
+                .append("comments", "The Comments")
+                .append("tag", null)
+                .append("contexts", "context1,context2")
+                .append("labels", "label1,label2")
+                .append("deploymentId", "The Deployment Id")
+                .append("liquibase", "Liquibase Version")
+                .append("unknown", new Document("nested", 1));
+
+        final MongoRanChangeSet decoded = codec.decode(
+                new BsonDocumentReader(maximal.toBsonDocument(Document.class, uuidCodecRegistry())), DecoderContext.builder().build());
+
+        assertThat(decoded)
+                .returns("cs4", MongoRanChangeSet::getId)
+                .returns("Alex", MongoRanChangeSet::getAuthor)
+                .returns("liquibase/file.xml", MongoRanChangeSet::getChangeLog)
+                .returns(dateExecuted, MongoRanChangeSet::getDateExecuted)
+                .returns(100, MongoRanChangeSet::getOrderExecuted)
+                .returns(ChangeSet.ExecType.EXECUTED, MongoRanChangeSet::getExecType)
+                .returns(CheckSum.parse("9:c3981fa8d26e95d911fe8eaeb6570f2f"), MongoRanChangeSet::getLastCheckSum)
+                .returns("The Description", MongoRanChangeSet::getDescription)
+                .returns("The Comments", MongoRanChangeSet::getComments)
+                .returns(null, MongoRanChangeSet::getTag)
+                .returns("The Deployment Id", MongoRanChangeSet::getDeploymentId)
+                .returns("Liquibase Version", MongoRanChangeSet::getLiquibaseVersion);
+        assertThat(decoded.getContextExpression().getContexts()).containsExactlyInAnyOrder("context1", "context2");
+        assertThat(decoded.getLabels().getLabels()).containsExactlyInAnyOrder("label1", "label2");
+
+        // Registered in the default registry
+        assertThat(uuidCodecRegistry().get(MongoRanChangeSet.class)).isInstanceOf(MongoRanChangeSetCodec.class);
+    }
+}
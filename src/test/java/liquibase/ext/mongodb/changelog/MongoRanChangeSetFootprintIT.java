@@ -0,0 +1,94 @@
+package liquibase.ext.mongodb.changelog;
+
+import liquibase.Scope;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static liquibase.ext.mongodb.statement.BsonUtils.uuidCodecRegistry;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the memory taken by the repeated Strings of a large decoded history, shared or copied per entry.
+ * The footprint is estimated from the String instances actually held, as heap usage readings are too noisy to assert.
+ */
+class MongoRanChangeSetFootprintIT {
+
+    private static final int ENTRIES = 80_000;
+
+    private static final int FILES = 300;
+
+    private static final int AUTHORS = 20;
+
+    @Test
+    void sharedStringsFootprint() {
+        final MongoRanChangeSetCodec codec = new MongoRanChangeSetCodec();
+        final List<MongoRanChangeSet> history = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            // Decoded from raw BSON, which reads a new String per value like a query result
+            final RawBsonDocument stored = new RawBsonDocument(new Document()
+                    .append("fileName", "liquibase/changelogs/module-" + (i % FILES) + "/db.changelog.xml")
+                    .append("id", "cs" + i)
+                    .append("author", "author.name" + (i % AUTHORS))
+                    .append("dateExecuted", new Date())
+                    .append("orderExecuted", i)
+                    .append("execType", "EXECUTED")
+                    .append("md5sum", "9:c3981fa8d26e95d911fe8eaeb6570f2f")
+                    .append("description", "createCollection collectionName=collection" + i)
+                    .append("contexts", "prod")
+                    .append("labels", "release")
+                    .append("deploymentId", "0123456789")
+                    .append("liquibase", "5.0.3"), uuidCodecRegistry().get(Document.class));
+            history.add(codec.decode(new BsonDocumentReader(stored.asDocument()), DecoderContext.builder().build()));
+        }
+
+        assertThat(instances(history, MongoRanChangeSet::getChangeLog)).hasSize(FILES);
+        assertThat(instances(history, MongoRanChangeSet::getAuthor)).hasSize(AUTHORS);
+        assertThat(instances(history, MongoRanChangeSet::getDeploymentId)).hasSize(1);
+        assertThat(instances(history, MongoRanChangeSet::getLiquibaseVersion)).hasSize(1);
+
+        long shared = 0;
+        long copied = 0;
+        for (final Function<MongoRanChangeSet, String> field : fields()) {
+            shared += instances(history, field).stream().mapToLong(MongoRanChangeSetFootprintIT::bytes).sum();
+            copied += history.stream().map(field).mapToLong(MongoRanChangeSetFootprintIT::bytes).sum();
+        }
+        assertThat(shared).isLessThan(copied / 100);
+
+        Scope.getCurrentScope().getLog(getClass()).info(String.format(
+                "%d entries, file name, author, deployment id and version Strings: shared %d KB, copied per entry %d KB",
+                ENTRIES, shared / 1024, copied / 1024));
+    }
+
+    private static List<Function<MongoRanChangeSet, String>> fields() {
+        final List<Function<MongoRanChangeSet, String>> fields = new ArrayList<>();
+        fields.add(MongoRanChangeSet::getChangeLog);
+        fields.add(MongoRanChangeSet::getAuthor);
+        fields.add(MongoRanChangeSet::getDeploymentId);
+        fields.add(MongoRanChangeSet::getLiquibaseVersion);
+        return fields;
+    }
+
+    private static Set<String> instances(final List<MongoRanChangeSet> history, final Function<MongoRanChangeSet, String> field) {
+        final Set<String> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        history.stream().map(field).forEach(instances::add);
+        return instances;
+    }
+
+    /**
+     * Shallow size of a Latin-1 String with its byte array on a 64-bit JVM with compressed oops
+     */
+    private static long bytes(final String value) {
+        return 24 + ((16 + value.length() + 7) / 8) * 8;
+    }
+}
@@ -96,4 +96,47 @@ class MongoRanChangeSetToDocumentConverterTest {
                 .isInstanceOf(MongoRanChangeSet.class)
                 .hasAllNullFieldsOrPropertiesExcept("contextExpression", "labels");
     }
+
+    @Test
+    void fromDocumentSharesRepeatedValues() {
+
+        final Document first = new Document()
+                .append("id", "cs1")
+                .append("author", new String("Alex"))
+                .append("fileName", new String("liquibase/file.xml"))
+                .append("contexts", new String("context1"))
+                .append("labels", new String("label1"))
+                .append("liquibase", new String("4.33.0"));
+        final Document second = new Document()
+                .append("id", "cs2")
+                .append("author", new String("Alex"))
+                .append("fileName", new String("liquibase/file.xml"))
+                .append("contexts", new String("context1"))
+                .append("labels", new String("label1"))
+                .append("liquibase", new String("4.33.0"));
+
+        final MongoRanChangeSet firstRanChangeSet = converter.fromDocument(first);
+        final MongoRanChangeSet secondRanChangeSet = converter.fromDocument(second);
+
+        assertThat(secondRanChangeSet.getId()).isEqualTo("cs2");
+        assertThat(secondRanChangeSet.getAuthor()).isSameAs(firstRanChangeSet.getAuthor());
+        assertThat(secondRanChangeSet.getChangeLog()).isSameAs(firstRanChangeSet.getChangeLog());
+        assertThat(secondRanChangeSet.getLiquibaseVersion()).isSameAs(firstRanChangeSet.getLiquibaseVersion());
+        // Mutable, built per entry
+        assertThat(secondRanChangeSet.getContextExpression()).isNotSameAs(firstRanChangeSet.getContextExpression());
+        assertThat(secondRanChangeSet.getLabels()).isNotSameAs(firstRanChangeSet.getLabels());
+        assertThat(secondRanChangeSet.getLabels().getLabels()).containsExactly("label1");
+    }
+
+    @Test
+    void sharedStringsAreBounded() {
+        for (int i = 0; i < MongoRanChangeSetToDocumentConverter.MAX_SHARED_STRINGS; i++) {
+            converter.shared("value" + i);
+        }
+        assertThat(converter.shared(new String("value0"))).isSameAs(converter.shared("value0"));
+
+        final String overflow = new String("overflow");
+        assertThat(converter.shared(overflow)).isSameAs(overflow);
+        assertThat(converter.shared(new String("overflow"))).isNotSameAs(overflow);
+    }
 }
@@ -0,0 +1,100 @@
+package liquibase.ext.mongodb.database;
+
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import liquibase.Scope;
+import lombok.SneakyThrows;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class CommandMetricsTest {
+
+    private static final ConnectionDescription CONNECTION =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    private static final BsonDocument COMMAND = new BsonDocument("insert", new BsonString("collection"));
+
+    private static final BsonDocument RESPONSE = new BsonDocument("ok", new BsonInt32(1));
+
+    private final CommandMetrics metrics = new CommandMetrics();
+
+    @SneakyThrows
+    @Test
+    void attributesCommandsToChangeSetAndStatement() {
+        Scope.child(CommandMetrics.STATEMENT_SCOPE_KEY, "InsertManyStatement", () -> {
+            metrics.commandStarted(started(1));
+        });
+        metrics.commandSucceeded(new CommandSucceededEvent(null, 1L, 1, CONNECTION, "db", "insert",
+                RESPONSE, TimeUnit.MILLISECONDS.toNanos(3L)));
+        metrics.changeSetRecorded("file::1::author");
+
+        metrics.commandStarted(started(2));
+        metrics.commandFailed(new CommandFailedEvent(null, 2L, 2, CONNECTION, "db", "insert",
+                TimeUnit.MILLISECONDS.toNanos(2000L), new MongoException(11000, "duplicate key")));
+
+        assertThat(metrics.getTotal().getCommands()).isEqualTo(2L);
+        assertThat(metrics.getTotal().getFailures()).isEqualTo(1L);
+        assertThat(metrics.getTotal().getRequestBytes()).isEqualTo(2L * sizeOf(COMMAND));
+        assertThat(metrics.getTotal().getResponseBytes()).isEqualTo(sizeOf(RESPONSE));
+        assertThat(metrics.getTotal().getLatencyHistogram()).contains(entry("<5ms", 1L), entry(">=1000ms", 1L));
+
+        assertThat(metrics.getChangeSets()).containsOnlyKeys("file::1::author");
+        final CommandStats changeSet = metrics.getChangeSets().get("file::1::author");
+        assertThat(changeSet.getCommands()).isEqualTo(1L);
+        assertThat(changeSet.getFailures()).isZero();
+        assertThat(changeSet.getElapsedMillis()).isEqualTo(3L);
+
+        assertThat(metrics.getStatements()).containsOnlyKeys("InsertManyStatement", CommandMetrics.OTHER_STATEMENT);
+        assertThat(metrics.getStatements().get(CommandMetrics.OTHER_STATEMENT).getErrorCodes())
+                .containsExactly(entry("11000", 1L));
+        assertThat(metrics.getPendingChangeSet().getFailures()).isEqualTo(1L);
+
+        assertThat(metrics.toJson()).contains("\"file::1::author\"", "\"InsertManyStatement\"", "\"11000\": 1");
+    }
+
+    @SneakyThrows
+    @Test
+    void keepsPinnedChangeSet() {
+        final CommandStats pinned = metrics.getPendingChangeSet();
+        metrics.changeSetRecorded("file::1::author");
+
+        // A statement run on another thread after its changeSet is recorded
+        Scope.child(CommandMetrics.CHANGE_SET_SCOPE_KEY, pinned, () -> {
+            metrics.commandStarted(started(1));
+        });
+        metrics.commandSucceeded(new CommandSucceededEvent(null, 1L, 1, CONNECTION, "db", "insert", RESPONSE, 0L));
+
+        assertThat(metrics.getChangeSets().get("file::1::author").getCommands()).isEqualTo(1L);
+        assertThat(metrics.getPendingChangeSet().getCommands()).isZero();
+    }
+
+    @Test
+    void errorCodeOf() {
+        assertThat(CommandStats.errorCodeOf(new MongoException(11000, "duplicate key"))).isEqualTo("11000");
+        assertThat(CommandStats.errorCodeOf(new MongoException("no code"))).isEqualTo("MongoException");
+        assertThat(CommandStats.errorCodeOf(new IllegalStateException())).isEqualTo("IllegalStateException");
+    }
+
+    private static long sizeOf(final BsonDocument document) {
+        return new RawBsonDocument(document, new BsonDocumentCodec()).getByteBuffer().remaining();
+    }
+
+    private static CommandStartedEvent started(final int requestId) {
+        return new CommandStartedEvent(null, requestId, requestId, CONNECTION, "db", "insert", COMMAND);
+    }
+}
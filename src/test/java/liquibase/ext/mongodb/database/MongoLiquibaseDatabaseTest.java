@@ -1,8 +1,10 @@
 package liquibase.ext.mongodb.database;
 
 import com.mongodb.ConnectionString;
+import com.mongodb.ReadPreference;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.MongoIterable;
 import liquibase.CatalogAndSchema;
 import liquibase.database.DatabaseFactory;
@@ -38,6 +40,12 @@ class MongoLiquibaseDatabaseTest {
     @Mock
     protected MongoCursor<String> mongoCursor;
 
+    @Mock
+    protected MongoDatabase mongoDatabaseMock;
+
+    @Mock
+    protected MongoDatabase secondaryMongoDatabaseMock;
+
     protected MongoLiquibaseDatabase database;
 
     @SneakyThrows
@@ -141,6 +149,22 @@ class MongoLiquibaseDatabaseTest {
                 .containsExactly("catalog1", "catalog1");
     }
 
+    @Test
+    void getMongoDatabaseForTrackingCollections() {
+        database.setConnection(connectionMock);
+        when(connectionMock.getMongoDatabase()).thenReturn(mongoDatabaseMock);
+        when(mongoDatabaseMock.withReadPreference(ReadPreference.secondaryPreferred())).thenReturn(secondaryMongoDatabaseMock);
+
+        assertThat(database.getMongoDatabase("DATABASECHANGELOG")).isSameAs(mongoDatabaseMock);
+
+        database.setReadOnly(true);
+        assertThat(database.getMongoDatabase()).isSameAs(mongoDatabaseMock);
+        assertThat(database.getMongoDatabase("collection")).isSameAs(mongoDatabaseMock);
+        assertThat(database.getMongoDatabase("DATABASECHANGELOG")).isSameAs(secondaryMongoDatabaseMock);
+        assertThat(database.getMongoDatabase("DATABASECHANGELOGLOCK")).isSameAs(secondaryMongoDatabaseMock);
+        assertThat(database.getMongoDatabase("DATABASECHANGELOGARCHIVE")).isSameAs(secondaryMongoDatabaseMock);
+    }
+
     @SneakyThrows
     @Test
     void checkDatabaseConnection() {
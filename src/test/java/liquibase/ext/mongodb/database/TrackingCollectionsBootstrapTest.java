@@ -0,0 +1,112 @@
+package liquibase.ext.mongodb.database;
+
+import liquibase.Scope;
+import liquibase.executor.ExecutorService;
+import liquibase.ext.mongodb.changelog.AdjustChangeLogCollectionStatement;
+import liquibase.ext.mongodb.changelog.CreateChangeLogCollectionStatement;
+import liquibase.ext.mongodb.changelog.MongoHistoryService;
+import liquibase.ext.mongodb.lockservice.AdjustChangeLogLockCollectionStatement;
+import liquibase.ext.mongodb.lockservice.MongoLockService;
+import liquibase.ext.mongodb.statement.CountCollectionByNameStatement;
+import liquibase.ext.mongodb.statement.ListCollectionOptionsStatement;
+import liquibase.nosql.executor.NoSqlExecutor;
+import liquibase.statement.SqlStatement;
+import lombok.SneakyThrows;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static java.lang.Boolean.TRUE;
+import static liquibase.nosql.executor.NoSqlExecutor.EXECUTOR_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@TestInstance(TestInstance.Lifecycle.PER_METHOD)
+class TrackingCollectionsBootstrapTest {
+
+    @Mock
+    protected NoSqlExecutor executorMock;
+
+    @Mock
+    protected MongoConnection connectionMock;
+
+    protected MongoLiquibaseDatabase database;
+
+    protected MongoHistoryService historyService;
+
+    protected MongoLockService lockService;
+
+    @BeforeEach
+    void setUp() {
+        database = new MongoLiquibaseDatabase();
+        database.setConnection(connectionMock);
+        database.setConsolidatedBootstrap(TRUE);
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+
+        historyService = new MongoHistoryService();
+        historyService.setDatabase(database);
+        lockService = new MongoLockService();
+        lockService.setDatabase(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).reset();
+    }
+
+    @SneakyThrows
+    @Test
+    void bootstrapRoundTrips() {
+        final Document historyOptions = new Document("validator", new Document("$jsonSchema", new Document("bsonType", "object")));
+        final Document lockOptions = new Document();
+        doReturn(new Document(database.getDatabaseChangeLogTableName(), historyOptions)
+                .append(database.getDatabaseChangeLogLockTableName(), lockOptions))
+                .when(executorMock).queryForObject(any(ListCollectionOptionsStatement.class), eq(Document.class));
+        final ArgumentCaptor<SqlStatement> adjustCaptor = ArgumentCaptor.forClass(SqlStatement.class);
+
+        lockService.init();
+        historyService.init();
+
+        // Both collections discovered with their options in a single listCollections
+        verify(executorMock, times(1)).queryForObject(any(ListCollectionOptionsStatement.class), eq(Document.class));
+        verify(executorMock, times(2)).execute(adjustCaptor.capture());
+        verify(executorMock, never()).queryForLong(any(CountCollectionByNameStatement.class));
+        verifyNoMoreInteractions(executorMock);
+
+        assertThat(adjustCaptor.getAllValues().get(0)).isInstanceOf(AdjustChangeLogLockCollectionStatement.class)
+                .extracting(s -> ((AdjustChangeLogLockCollectionStatement) s).getCurrentOptions()).isSameAs(lockOptions);
+        assertThat(adjustCaptor.getAllValues().get(1)).isInstanceOf(AdjustChangeLogCollectionStatement.class)
+                .extracting(s -> ((AdjustChangeLogCollectionStatement) s).getCurrentOptions()).isSameAs(historyOptions);
+    }
+
+    @SneakyThrows
+    @Test
+    void bootstrapCreatesMissingCollections() {
+        // Only the Lock Collection exists
+        doReturn(new Document(database.getDatabaseChangeLogLockTableName(), new Document()))
+                .when(executorMock).queryForObject(any(ListCollectionOptionsStatement.class), eq(Document.class));
+
+        historyService.init();
+        lockService.init();
+
+        verify(executorMock, times(1)).queryForObject(any(ListCollectionOptionsStatement.class), eq(Document.class));
+        verify(executorMock, times(1)).execute(any(CreateChangeLogCollectionStatement.class));
+        verify(executorMock, times(1)).execute(any(AdjustChangeLogCollectionStatement.class));
+        verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
+        verifyNoMoreInteractions(executorMock);
+        assertThat(database.getTrackingCollections().getOptions(executorMock, database.getDatabaseChangeLogTableName())).isEmpty();
+
+        // A new invocation discovers the collections again
+        lockService.reset();
+        database.getTrackingCollections().exists(executorMock, database.getDatabaseChangeLogTableName());
+        verify(executorMock, times(2)).queryForObject(any(ListCollectionOptionsStatement.class), eq(Document.class));
+    }
+}
@@ -20,20 +20,158 @@ package liquibase.ext.mongodb.executor;
  * #L%
  */
 
+import com.mongodb.client.model.Filters;
+import liquibase.Scope;
+import liquibase.changelog.ChangeSet;
+import liquibase.exception.DatabaseException;
+import liquibase.ext.mongodb.change.InsertOneChange;
 import liquibase.ext.AbstractMongoIntegrationTest;
+import liquibase.ext.mongodb.statement.CountDocumentsInCollectionStatement;
+import liquibase.ext.mongodb.statement.CreateCollectionStatement;
+import liquibase.ext.mongodb.statement.InsertOneStatement;
 import liquibase.nosql.executor.NoSqlExecutor;
+import liquibase.nosql.executor.RowsAffectedCounters;
+import lombok.SneakyThrows;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
 
+import static java.util.Collections.emptyList;
+import static liquibase.ext.mongodb.TestUtils.COLLECTION_NAME_1;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 class NoSqlExecutorIT extends AbstractMongoIntegrationTest {
 
+    private static final String COLLECTION_NAME_2 = COLLECTION_NAME_1 + "2";
+    private static final String HISTORY_COLLECTION_NAME = "history";
+
+    private static ChangeSet changeSet(final String id) {
+        return new ChangeSet(id, "author", false, false, "file", null, null, null);
+    }
+
     @Test
     void testGetInstance() {
         assertThat(executor).isNotNull()
                 .isInstanceOfAny(NoSqlExecutor.class);
     }
 
+    @SneakyThrows
+    @Test
+    void parallelChangeSets() {
+        database.setParallelChangeSets(true);
+
+        // Collection commands run in their lane
+        executor.execute(new CreateCollectionStatement(COLLECTION_NAME_1), emptyList());
+        executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("n", 1)), emptyList());
+        executor.execute(new InsertOneStatement(COLLECTION_NAME_2, new Document("n", 1)), emptyList());
+        executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("n", 2)), emptyList());
+        executor.executeAfterChangeSet(changeSet("1"), new InsertOneStatement(HISTORY_COLLECTION_NAME, new Document("changeSet", 1)));
+
+        // A query waits for the statements and the history entry
+        assertThat(executor.queryForLong(new CountDocumentsInCollectionStatement(COLLECTION_NAME_1))).isEqualTo(2L);
+        assertThat(mongoDatabase.getCollection(COLLECTION_NAME_2).countDocuments()).isEqualTo(1L);
+        assertThat(mongoDatabase.getCollection(HISTORY_COLLECTION_NAME).countDocuments()).isEqualTo(1L);
+    }
+
+    @SneakyThrows
+    @Test
+    void parallelChangeSetsKeepSubmittingScope() {
+        database.setParallelChangeSets(true);
+        final RowsAffectedCounters counters = new RowsAffectedCounters();
+
+        Scope.child(RowsAffectedCounters.SCOPE_KEY, counters, () ->
+                executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("n", 1)), emptyList()));
+        executor.awaitParallel();
+
+        // Counted on the lane thread in the counters of the submitting scope
+        assertThat(counters.getCollections()).containsEntry(COLLECTION_NAME_1, 1L);
+        assertThat(database.getRowsAffectedCounters().getTotal()).isZero();
+    }
+
+    @SneakyThrows
+    @Test
+    void parallelChangeSetsFailureCancelsLaterChangeSets() {
+        database.setParallelChangeSets(true);
+
+        executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("_id", 1)), emptyList());
+        executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("_id", 1)), emptyList());
+        executor.executeAfterChangeSet(changeSet("1"), new InsertOneStatement(HISTORY_COLLECTION_NAME, new Document("changeSet", 1)));
+
+        executor.execute(new InsertOneStatement(COLLECTION_NAME_2, new Document("_id", 2)), emptyList());
+        executor.executeAfterChangeSet(changeSet("2"), new InsertOneStatement(HISTORY_COLLECTION_NAME, new Document("changeSet", 2)));
+
+        // Waits for the failed changeSet on the same collection
+        executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("_id", 3)), emptyList());
+        executor.executeAfterChangeSet(changeSet("3"), new InsertOneStatement(HISTORY_COLLECTION_NAME, new Document("changeSet", 3)));
+
+        assertThatExceptionOfType(DatabaseException.class).isThrownBy(executor::awaitParallel)
+                .withMessageContaining("file::1::author");
+
+        // Neither the failed changeSet nor the cancelled one are recorded
+        assertThat(mongoDatabase.getCollection(COLLECTION_NAME_1).countDocuments()).isEqualTo(1L);
+        assertThat(mongoDatabase.getCollection(HISTORY_COLLECTION_NAME).countDocuments(Filters.in("changeSet", 1, 3))).isZero();
+        // The independent changeSet is recorded if it was applied before the failure
+        assertThat(mongoDatabase.getCollection(HISTORY_COLLECTION_NAME).countDocuments(Filters.eq("changeSet", 2)))
+                .isEqualTo(mongoDatabase.getCollection(COLLECTION_NAME_2).countDocuments());
+
+        // Reported again until the end of the run, so a later changeSet swallowing it does not hide it
+        assertThatExceptionOfType(DatabaseException.class)
+                .isThrownBy(() -> executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("_id", 4)), emptyList()))
+                .withMessageContaining("file::1::author");
+        assertThatExceptionOfType(DatabaseException.class)
+                .isThrownBy(() -> executor.executeAfterChangeSet(changeSet("4"), new InsertOneStatement(HISTORY_COLLECTION_NAME, new Document("changeSet", 4))))
+                .withMessageContaining("file::1::author");
+        assertThatExceptionOfType(DatabaseException.class).isThrownBy(executor::awaitParallel)
+                .withMessageContaining("file::1::author");
+        assertThatExceptionOfType(DatabaseException.class).isThrownBy(executor::finishParallel)
+                .withMessageContaining("file::1::author");
+
+        // The next run starts over
+        executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("_id", 4)), emptyList());
+        executor.awaitParallel();
+        assertThat(mongoDatabase.getCollection(COLLECTION_NAME_1).countDocuments()).isEqualTo(2L);
+    }
+
+    @SneakyThrows
+    @Test
+    void parallelChangeSetsRunSeriallyWithoutFailOnError() {
+        database.setParallelChangeSets(true);
+
+        final ChangeSet lenient = changeSet("1");
+        lenient.setFailOnError(false);
+        final InsertOneChange duplicate = new InsertOneChange();
+        duplicate.setCollectionName(COLLECTION_NAME_1);
+        duplicate.setDocument("{_id: 1}");
+        duplicate.setChangeSet(lenient);
+        executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("_id", 1)), emptyList());
+
+        // Fails within the changeSet, where Liquibase applies failOnError, instead of in a later one
+        assertThatExceptionOfType(DatabaseException.class)
+                .isThrownBy(() -> executor.execute(duplicate, emptyList()));
+
+        // Recorded right away once the changeSets before it are done
+        executor.executeAfterChangeSet(lenient, new InsertOneStatement(HISTORY_COLLECTION_NAME, new Document("changeSet", 1)));
+        assertThat(mongoDatabase.getCollection(HISTORY_COLLECTION_NAME).countDocuments()).isEqualTo(1L);
+        executor.finishParallel();
+    }
+
+    @SneakyThrows
+    @Test
+    void readOnlyRefusesWrites() {
+        database.setReadOnly(true);
+
+        assertThatExceptionOfType(DatabaseException.class)
+                .isThrownBy(() -> executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("n", 1)), emptyList()))
+                .withMessageContaining("read-only mode");
+        assertThatExceptionOfType(DatabaseException.class)
+                .isThrownBy(() -> executor.execute(new InsertOneStatement(COLLECTION_NAME_1, new Document("n", 1))));
+        assertThat(executor.queryForLong(new CountDocumentsInCollectionStatement(COLLECTION_NAME_1))).isZero();
+        assertThat(mongoDatabase.listCollectionNames()).doesNotContain(COLLECTION_NAME_1);
+
+        // Lets the collections be dropped after the test
+        database.setReadOnly(false);
+    }
+
     @Test
     void setDatabase() {
     }
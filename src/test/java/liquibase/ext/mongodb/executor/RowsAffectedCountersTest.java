@@ -0,0 +1,49 @@
+package liquibase.ext.mongodb.executor;
+
+import liquibase.Scope;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import liquibase.nosql.executor.RowsAffectedCounters;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class RowsAffectedCountersTest {
+
+    @Test
+    void countsPerChangeSetAndCollection() {
+        final RowsAffectedCounters counters = new RowsAffectedCounters();
+
+        counters.add("a", 2L);
+        counters.add("b", 1L);
+        assertThat(counters.changeSetRecorded("file::1::author")).isEqualTo(3L);
+        assertThat(counters.changeSetRecorded("file::2::author")).isZero();
+        counters.add("a", 4L);
+        assertThat(counters.changeSetRecorded("file::3::author")).isEqualTo(4L);
+
+        assertThat(counters.getTotal()).isEqualTo(7L);
+        assertThat(counters.getCollections()).containsExactly(entry("a", 6L), entry("b", 1L));
+        assertThat(counters.getChangeSets()).containsOnlyKeys("file::1::author", "file::3::author");
+        assertThat(counters).hasToString("total=7, changeSets={file::1::author=3, file::3::author=4}, collections={a=6, b=1}");
+
+        counters.reset();
+        assertThat(counters.getTotal()).isZero();
+        assertThat(counters.getCollections()).isEmpty();
+        assertThat(counters.getChangeSets()).isEmpty();
+    }
+
+    @SneakyThrows
+    @Test
+    void scopedCountersAreNotShared() {
+        final MongoLiquibaseDatabase database = new MongoLiquibaseDatabase();
+        final RowsAffectedCounters scoped = new RowsAffectedCounters();
+
+        assertThat(RowsAffectedCounters.current(database)).isSameAs(database.getRowsAffectedCounters());
+        Scope.child(RowsAffectedCounters.SCOPE_KEY, scoped, () ->
+                RowsAffectedCounters.current(database).add("a", 1L));
+
+        assertThat(scoped.getTotal()).isEqualTo(1L);
+        assertThat(database.getRowsAffectedCounters().getTotal()).isZero();
+    }
+}
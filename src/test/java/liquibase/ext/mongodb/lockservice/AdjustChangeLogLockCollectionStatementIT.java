@@ -44,7 +44,7 @@ class AdjustChangeLogLockCollectionStatementIT extends AbstractMongoIntegrationT
                 "db.adjustChangeLogLockCollection({\"collMod\": \"lockCollection\", \"validator\": " +
                         "{\"$jsonSchema\": {\"bsonType\": \"object\", \"description\": \"Database Lock Collection\", " +
                         "\"required\": [\"_id\", \"locked\"], \"properties\": {" +
-                        "\"_id\": {\"bsonType\": \"int\", \"description\": \"Unique lock identifier\"}, " +
+                        "\"_id\": {\"bsonType\": [\"int\", \"string\"], \"description\": \"Unique lock identifier, 1 or the lock scope\"}, " +
                         "\"locked\": {\"bsonType\": \"bool\", \"description\": \"Lock flag\"}, " +
                         "\"lockGranted\": {\"bsonType\": \"date\", \"description\": \"Timestamp when lock acquired\"}, " +
                         "\"lockedBy\": {\"bsonType\": [\"string\", \"null\"], \"description\": \"Owner of the lock\"}}}}, " +
@@ -111,6 +111,18 @@ class AdjustChangeLogLockCollectionStatementIT extends AbstractMongoIntegrationT
                 .returns(FALSE, c -> ((Document) ((Document) c.get("options")).get("validator")).isEmpty())
                 .returns("error", c -> ((Document) c.get("options")).get("validationAction"))
                 .returns("strict", c -> ((Document) c.get("options")).get("validationLevel"));
+
+        // The stored validator is recognised, so the next adjustment skips collMod
+        assertThat(new AdjustChangeLogLockCollectionStatement(LOCK_COLLECTION_NAME)
+                .isValidatorCurrent(collectionInfo.get("options", Document.class))).isFalse();
+        assertThat(new AdjustChangeLogLockCollectionStatement(LOCK_COLLECTION_NAME)
+                .isValidatorCurrent(collectionInfoAdjusted.get("options", Document.class))).isTrue();
+
+        // Both accept the string _id of a lock scope
+        assertThat(AdjustChangeLogLockCollectionStatement.allowsScopedLockId(collectionInfo.get("options", Document.class))).isTrue();
+        assertThat(AdjustChangeLogLockCollectionStatement.allowsScopedLockId(collectionInfoAdjusted.get("options", Document.class))).isTrue();
+        assertThat(AdjustChangeLogLockCollectionStatement.allowsScopedLockId(Document.parse(
+                "{validator: {$jsonSchema: {properties: {_id: {bsonType: \"int\"}}}}}"))).isFalse();
     }
 
     @Test
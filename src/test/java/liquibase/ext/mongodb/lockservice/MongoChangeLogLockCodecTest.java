@@ -0,0 +1,76 @@
+package liquibase.ext.mongodb.lockservice;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static liquibase.ext.mongodb.statement.BsonUtils.uuidCodecRegistry;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MongoChangeLogLockCodecTest {
+
+    protected MongoChangeLogLockCodec codec = new MongoChangeLogLockCodec();
+
+    protected MongoChangeLogLockToDocumentConverter converter = new MongoChangeLogLockToDocumentConverter();
+
+    @Test
+    void encodeDecode() {
+        final MongoChangeLogLock lock = new MongoChangeLogLock(1, new Date(), "lockedBy", true);
+
+        final BsonDocument encoded = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(encoded), lock, EncoderContext.builder().build());
+
+        // Same document as written by the converter
+        assertThat(encoded).isEqualTo(converter.toDocument(lock).toBsonDocument(Document.class, uuidCodecRegistry()));
+
+        assertThat(codec.decode(new BsonDocumentReader(encoded), DecoderContext.builder().build()))
+                .returns(1, MongoChangeLogLock::getId)
+                .returns(lock.getLockGranted(), MongoChangeLogLock::getLockGranted)
+                .returns("lockedBy", MongoChangeLogLock::getLockedBy)
+                .returns(true, MongoChangeLogLock::getLocked);
+
+        // Registered in the default registry
+        assertThat(uuidCodecRegistry().get(MongoChangeLogLock.class)).isInstanceOf(MongoChangeLogLockCodec.class);
+    }
+
+    @Test
+    void encodeDecodeLease() {
+        final MongoChangeLogLock lock = new MongoChangeLogLock(1, new Date(), "lockedBy", true, new Date(), 7L);
+
+        final BsonDocument encoded = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(encoded), lock, EncoderContext.builder().build());
+
+        assertThat(encoded).isEqualTo(converter.toDocument(lock).toBsonDocument(Document.class, uuidCodecRegistry()));
+
+        assertThat(codec.decode(new BsonDocumentReader(encoded), DecoderContext.builder().build()))
+                .returns(lock.getExpiresAt(), MongoChangeLogLock::getExpiresAt)
+                .returns(7L, MongoChangeLogLock::getFencingToken);
+        assertThat(converter.fromDocument(converter.toDocument(lock)))
+                .returns(lock.getExpiresAt(), MongoChangeLogLock::getExpiresAt)
+                .returns(7L, MongoChangeLogLock::getFencingToken);
+    }
+
+    @Test
+    void encodeDecodeScope() {
+        final MongoChangeLogLock lock = new MongoChangeLogLock(1, new Date(), "lockedBy", true, null, null, "teamA");
+
+        final BsonDocument encoded = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(encoded), lock, EncoderContext.builder().build());
+
+        assertThat(encoded).isEqualTo(converter.toDocument(lock).toBsonDocument(Document.class, uuidCodecRegistry()));
+        assertThat(encoded.getString(MongoChangeLogLock.Fields.id).getValue()).isEqualTo("teamA");
+
+        assertThat(codec.decode(new BsonDocumentReader(encoded), DecoderContext.builder().build()))
+                .returns("teamA", MongoChangeLogLock::getScope)
+                .returns(1, MongoChangeLogLock::getId);
+        assertThat(converter.fromDocument(converter.toDocument(lock)))
+                .returns("teamA", MongoChangeLogLock::getScope)
+                .returns(1, MongoChangeLogLock::getId);
+    }
+}
@@ -20,15 +20,19 @@ package liquibase.ext.mongodb.lockservice;
  * #L%
  */
 
+import liquibase.exception.DatabaseException;
 import liquibase.exception.LockException;
 import liquibase.ext.AbstractMongoIntegrationTest;
 import liquibase.lockservice.DatabaseChangeLogLock;
 import liquibase.lockservice.LockServiceFactory;
 import lombok.SneakyThrows;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static java.lang.Boolean.FALSE;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 class MongoLockServiceIT extends AbstractMongoIntegrationTest {
 
@@ -123,4 +127,26 @@ class MongoLockServiceIT extends AbstractMongoIntegrationTest {
         assertThat(lockService.getHasDatabaseChangeLogLockTable()).isNull();
         assertThat(lockService.existsRepository()).isFalse();
     }
+
+    @SneakyThrows
+    @Test
+    void initWithLockScopeRejectedByValidator() {
+        // Validator of a version before lock scopes, never adjusted
+        mongoDatabase.runCommand(Document.parse("{create: \"" + database.getDatabaseChangeLogLockTableName() + "\", "
+                + "validator: {$jsonSchema: {bsonType: \"object\", required: [\"_id\", \"locked\"], "
+                + "properties: {_id: {bsonType: \"int\"}, locked: {bsonType: \"bool\"}}}}}"));
+        database.setAdjustTrackingTablesOnStartup(FALSE);
+        database.setLockScope("teamA");
+
+        assertThatExceptionOfType(DatabaseException.class)
+                .isThrownBy(() -> lockService.init())
+                .withMessageContaining("rejects the string _id of lockScope 'teamA'")
+                .withMessageContaining("adjustTrackingTablesOnStartup");
+
+        // Without a scope the int _id is still accepted
+        database.setLockScope(null);
+        lockService.reset();
+        lockService.init();
+        assertThat(lockService.acquireLock()).isTrue();
+    }
 }
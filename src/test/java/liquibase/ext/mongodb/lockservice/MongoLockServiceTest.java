@@ -13,11 +13,13 @@ import liquibase.ext.mongodb.database.MongoConnection;
 import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
 import liquibase.ext.mongodb.statement.CountCollectionByNameStatement;
 import liquibase.ext.mongodb.statement.DropCollectionStatement;
-import liquibase.ext.mongodb.statement.FindAllStatement;
+import liquibase.ext.mongodb.statement.FindAllAsStatement;
 import liquibase.lockservice.DatabaseChangeLogLock;
 import liquibase.lockservice.LockService;
 import liquibase.lockservice.LockServiceFactory;
+import liquibase.nosql.database.TrackingCollectionCache;
 import liquibase.nosql.executor.NoSqlExecutor;
+import liquibase.nosql.lockservice.LockMetrics;
 import lombok.SneakyThrows;
 import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
@@ -28,12 +30,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
 
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
@@ -294,13 +301,14 @@ class MongoLockServiceTest {
 
         doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
         doNothing().when(executorMock).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        doReturn(lockService.getConverter().toDocument(lockedLock))
-                .when(executorMock).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
-        doReturn(Collections.singletonList((Object) lockService.getConverter().toDocument(lockedLock)))
-                .when(executorMock).queryForList(any(FindAllStatement.class), eq(Document.class));
+        // Another node holds the lock
+        doReturn(0).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
+        doAnswer(forEach(Collections.singletonList(lockedLock)))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoChangeLogLock.class), any());
 
         lockService.setClock(clockMock);
         lockService.setChangeLogLockRecheckTime(0);
+        database.setLockChangeStream(FALSE);
         final Instant instantMock = Clock.systemUTC().instant();
         // On two times will exit as returns a future +24 h timestamp from mock timestamp
         doReturn(instantMock, instantMock, instantMock, instantMock.plusSeconds(60 * 60 * 24)).when(clockMock).instant();
@@ -312,14 +320,189 @@ class MongoLockServiceTest {
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
         verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        verify(executorMock, times(3)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
-        verify(executorMock, times(1)).queryForList(any(FindAllStatement.class), eq(Document.class));
+        verify(executorMock, times(3)).update(any(ReplaceChangeLogLockStatement.class));
+        // Holder recorded when starting to wait, then read for the message
+        verify(executorMock, times(2)).queryForEach(any(FindAllAsStatement.class), eq(MongoChangeLogLock.class), any());
         verifyNoMoreInteractions(executorMock);
 
         assertThat(lockService.getHasDatabaseChangeLogLockTable()).isTrue();
         assertThat(lockService.hasChangeLogLock()).isFalse();
     }
 
+    @SneakyThrows
+    @Test
+    void waitForLockWakesUpOnChangeStream() {
+        final ArgumentCaptor<WatchChangeLogLockStatement> watchStatementArgumentCaptor =
+                ArgumentCaptor.forClass(WatchChangeLogLockStatement.class);
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
+        lockService.setChangeLogLockRecheckTime(2);
+
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        // The holder releases the lock while waiting on the change stream
+        doReturn(TRUE).when(executorMock).queryForObject(watchStatementArgumentCaptor.capture(), eq(Boolean.class));
+        doReturn(0).doReturn(1).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
+
+        lockService.waitForLock();
+
+        verify(executorMock, times(1)).queryForObject(any(WatchChangeLogLockStatement.class), eq(Boolean.class));
+        // A single wait never outlasts the recheck time
+        assertThat(watchStatementArgumentCaptor.getValue().getTimeoutMillis()).isEqualTo(2000L);
+        verify(executorMock, times(2)).update(any(ReplaceChangeLogLockStatement.class));
+        assertThat(lockService.hasChangeLogLock()).isTrue();
+    }
+
+    @SneakyThrows
+    @Test
+    void waitForLockPublishesMetrics() {
+        final MongoChangeLogLock lockedLock = new MongoChangeLogLock(1, new Date(), "lockedByMock", true);
+        final List<LockMetrics> published = new ArrayList<>();
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
+        lockService.setChangeLogLockRecheckTime(0);
+        lockService.addMetricsListener((lockCollectionName, metrics) -> published.add(metrics));
+        database.setLockChangeStream(FALSE);
+
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        doReturn(0).doReturn(0).doReturn(1).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
+        doAnswer(forEach(Collections.singletonList(lockedLock)))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoChangeLogLock.class), any());
+
+        lockService.waitForLock();
+        assertThat(published).isEmpty();
+
+        lockService.releaseLock();
+        assertThat(published).singleElement()
+                .returns(3, LockMetrics::getAttempts)
+                .returns(true, LockMetrics::isAcquired)
+                .returns(0, LockMetrics::getForcedReleases)
+                .returns(Collections.singletonList("lockedByMock"), LockMetrics::getHolders);
+        assertThat(published.get(0).getWaitMillis()).isNotNegative();
+        assertThat(published.get(0).getHeldMillis()).isNotNegative();
+
+        // A new cycle starts after the release
+        lockService.forceReleaseLock();
+        assertThat(published).hasSize(2);
+        assertThat(published.get(1))
+                .returns(0, LockMetrics::getAttempts)
+                .returns(1, LockMetrics::getForcedReleases);
+    }
+
+    @SneakyThrows
+    @Test
+    void waitForLockPollsWithoutChangeStream() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
+        lockService.setChangeLogLockRecheckTime(0);
+
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        // Change streams not supported, like on a standalone server
+        doThrow(DatabaseException.class).when(executorMock).queryForObject(any(WatchChangeLogLockStatement.class), eq(Boolean.class));
+        doReturn(0).doReturn(0).doReturn(1).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
+
+        lockService.waitForLock();
+
+        // Not tried again once unavailable
+        verify(executorMock, times(1)).queryForObject(any(WatchChangeLogLockStatement.class), eq(Boolean.class));
+        verify(executorMock, times(3)).update(any(ReplaceChangeLogLockStatement.class));
+        assertThat(lockService.hasChangeLogLock()).isTrue();
+    }
+
+    @SneakyThrows
+    @Test
+    void acquireLockTakesOverExpiredLease() {
+        final ArgumentCaptor<ReplaceChangeLogLockStatement> replaceLockChangeLogStatementArgumentCaptor =
+                ArgumentCaptor.forClass(ReplaceChangeLogLockStatement.class);
+        // Left by a crashed holder
+        final MongoChangeLogLock expiredLock = new MongoChangeLogLock(1, new Date(), "lockedByMock", true,
+                new Date(System.currentTimeMillis() - 1000L), 4L);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
+        database.setLockLease(TRUE);
+
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        doReturn(lockService.getConverter().toDocument(expiredLock))
+                .when(executorMock).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
+        doReturn(1).when(executorMock).update(replaceLockChangeLogStatementArgumentCaptor.capture());
+
+        assertThat(lockService.acquireLock()).isTrue();
+        assertThat(replaceLockChangeLogStatementArgumentCaptor.getValue())
+                .returns(true, ReplaceChangeLogLockStatement::isLocked)
+                .returns(true, ReplaceChangeLogLockStatement::isLease)
+                .returns(4L, ReplaceChangeLogLockStatement::getFencingToken)
+                .returns(5L, ReplaceChangeLogLockStatement::getNextFencingToken);
+        assertThat(lockService.getFencingToken()).isEqualTo(5L);
+        lockService.checkLease();
+
+        // A holder paused past its lease stops writing
+        lockService.setClock(Clock.offset(Clock.systemUTC(), Duration.ofHours(1)));
+        assertThatExceptionOfType(LockException.class).isThrownBy(lockService::checkLease)
+                .withMessage("Lost the change log lock lease with fencing token 5");
+
+        // Released with the fencing token, so only if not taken over
+        lockService.releaseLock();
+        assertThat(replaceLockChangeLogStatementArgumentCaptor.getValue())
+                .returns(false, ReplaceChangeLogLockStatement::isLocked)
+                .returns(5L, ReplaceChangeLogLockStatement::getFencingToken);
+        assertThat(lockService.getFencingToken()).isNull();
+        assertThat(lockService.hasChangeLogLock()).isFalse();
+    }
+
+    @SneakyThrows
+    @Test
+    void acquireLockWhenLeaseNotExpired() {
+        final MongoChangeLogLock heldLock = new MongoChangeLogLock(1, new Date(), "lockedByMock", true,
+                new Date(System.currentTimeMillis() + 60000L), 4L);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
+        database.setLockLease(TRUE);
+
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        doReturn(lockService.getConverter().toDocument(heldLock))
+                .when(executorMock).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
+
+        assertThat(lockService.acquireLock()).isFalse();
+        verify(executorMock, times(0)).update(any(ReplaceChangeLogLockStatement.class));
+        assertThat(lockService.getFencingToken()).isNull();
+    }
+
+    @SneakyThrows
+    @Test
+    void acquireSharedLock() {
+        final ArgumentCaptor<SharedChangeLogLockStatement> sharedLockStatementArgumentCaptor =
+                ArgumentCaptor.forClass(SharedChangeLogLockStatement.class);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
+        database.setSharedLock(TRUE);
+
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        doReturn(1).when(executorMock).update(sharedLockStatementArgumentCaptor.capture());
+
+        assertThat(lockService.acquireLock()).isTrue();
+        assertThat(sharedLockStatementArgumentCaptor.getValue())
+                .returns(true, SharedChangeLogLockStatement::isLocked)
+                .returns(lockService.getReaderId(), SharedChangeLogLockStatement::getReaderId);
+        assertThat(lockService.getReaderId()).isNotNull();
+
+        // Read-only
+        assertThatExceptionOfType(LockException.class).isThrownBy(lockService::checkWritable);
+
+        final String readerId = lockService.getReaderId();
+        lockService.releaseLock();
+        assertThat(sharedLockStatementArgumentCaptor.getValue())
+                .returns(false, SharedChangeLogLockStatement::isLocked)
+                .returns(readerId, SharedChangeLogLockStatement::getReaderId);
+        assertThat(lockService.getReaderId()).isNull();
+        lockService.checkWritable();
+
+        verify(executorMock, times(2)).update(any(SharedChangeLogLockStatement.class));
+        verify(executorMock, times(0)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
+    }
+
     @SneakyThrows
     @Test
     void waitForLockWithNoWaitAndNoLockInDatabase() {
@@ -339,8 +522,8 @@ class MongoLockServiceTest {
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
         verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        verify(executorMock, times(1)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
-        verify(executorMock, times(0)).queryForList(any(FindAllStatement.class), eq(Document.class));
+        verify(executorMock, times(1)).update(any(ReplaceChangeLogLockStatement.class));
+        verify(executorMock, times(0)).queryForEach(any(FindAllAsStatement.class), eq(MongoChangeLogLock.class), any());
 
         verifyNoMoreInteractions(executorMock);
 
@@ -356,10 +539,9 @@ class MongoLockServiceTest {
         Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
         lockService.setDatabase(database);
 
-        doReturn(lockService.getConverter().toDocument(lockedLock))
-                .when(executorMock).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
-        doReturn(Collections.singletonList((Object) lockService.getConverter().toDocument(lockedLock)))
-                .when(executorMock).queryForList(any(FindAllStatement.class), eq(Document.class));
+        doReturn(0).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
+        doAnswer(forEach(Collections.singletonList(lockedLock)))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoChangeLogLock.class), any());
 
         // Repository already exists
         doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
@@ -374,8 +556,8 @@ class MongoLockServiceTest {
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
         verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        verify(executorMock, times(1)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
-        //verify(executorMock, times(0)).queryForList(any(FindAllStatement.class), eq(Document.class));
+        verify(executorMock, times(1)).update(any(ReplaceChangeLogLockStatement.class));
+        //verify(executorMock, times(0)).queryForEach(any(FindAllAsStatement.class), eq(MongoChangeLogLock.class), any());
 
         verifyNoMoreInteractions(executorMock);
 
@@ -395,7 +577,6 @@ class MongoLockServiceTest {
         database.setAdjustTrackingTablesOnStartup(FALSE);
 
         doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
-        doReturn(null).when(executorMock).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
         doReturn(1).when(executorMock).update(replaceLockChangeLogStatementArgumentCaptor.capture());
 
         assertThat(lockService.hasChangeLogLock()).isFalse();
@@ -403,7 +584,6 @@ class MongoLockServiceTest {
         assertThat(replaceLockChangeLogStatementArgumentCaptor.getValue().isLocked()).isTrue();
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
-        verify(executorMock, times(1)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
         verify(executorMock, times(1)).update(any(ReplaceChangeLogLockStatement.class));
         verifyNoMoreInteractions(executorMock);
 
@@ -418,17 +598,83 @@ class MongoLockServiceTest {
 
     @SneakyThrows
     @Test
-    void acquireLockWhenLocked() {
+    void acquireLockRoundTrips() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
 
-        final MongoChangeLogLock lockedLock = new MongoChangeLogLock(1, new Date(), "lockedByMock", true);
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        doReturn(0).doReturn(1).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
+
+        lockService.init();
+        clearInvocations(executorMock);
+
+        // Locked by another node, then free: a single conditional upsert each, without reading the lock first
+        assertThat(lockService.acquireLock()).isFalse();
+        verify(executorMock, times(1)).update(any(ReplaceChangeLogLockStatement.class));
+        verifyNoMoreInteractions(executorMock);
+
+        assertThat(lockService.acquireLock()).isTrue();
+        verify(executorMock, times(2)).update(any(ReplaceChangeLogLockStatement.class));
+        verifyNoMoreInteractions(executorMock);
+    }
+
+    @SneakyThrows
+    @Test
+    void acquireScopedLock() {
+        final ArgumentCaptor<ReplaceChangeLogLockStatement> replaceLockChangeLogStatementArgumentCaptor =
+                ArgumentCaptor.forClass(ReplaceChangeLogLockStatement.class);
+
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
+        database.setAdjustTrackingTablesOnStartup(FALSE);
+        database.setLockScope(" teamA ");
+
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        doReturn(1).when(executorMock).update(replaceLockChangeLogStatementArgumentCaptor.capture());
+
+        assertThat(lockService.acquireLock()).isTrue();
+        assertThat(replaceLockChangeLogStatementArgumentCaptor.getValue())
+                .returns(true, ReplaceChangeLogLockStatement::isLocked)
+                .returns("teamA", ReplaceChangeLogLockStatement::getScope);
+
+        lockService.releaseLock();
+        assertThat(replaceLockChangeLogStatementArgumentCaptor.getValue())
+                .returns(false, ReplaceChangeLogLockStatement::isLocked)
+                .returns("teamA", ReplaceChangeLogLockStatement::getScope);
+
+        database.setLockScope("");
+        assertThat(lockService.getScope()).isNull();
+    }
+
+    @SneakyThrows
+    @Test
+    void readOnlyNeverWrites() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
+        database.setReadOnly(TRUE);
+
+        lockService.init();
+        assertThat(lockService.acquireLock()).isTrue();
+        assertThat(lockService.hasChangeLogLock()).isTrue();
+        lockService.releaseLock();
+        assertThat(lockService.hasChangeLogLock()).isFalse();
+
+        assertThatExceptionOfType(LockException.class).isThrownBy(lockService::forceReleaseLock);
+        assertThatExceptionOfType(UnexpectedLiquibaseException.class).isThrownBy(lockService::destroy);
+
+        verifyNoInteractions(executorMock);
+    }
+
+    @SneakyThrows
+    @Test
+    void acquireLockWhenLocked() {
 
         Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
         lockService.setDatabase(database);
 
         doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
         doNothing().when(executorMock).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        doReturn(lockService.getConverter().toDocument(lockedLock))
-                .when(executorMock).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
+        doReturn(0).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
 
         assertThat(lockService.getHasDatabaseChangeLogLockTable()).isNull();
         assertThat(lockService.hasChangeLogLock()).isFalse();
@@ -436,7 +682,7 @@ class MongoLockServiceTest {
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
         verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        verify(executorMock, times(1)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
+        verify(executorMock, times(1)).update(any(ReplaceChangeLogLockStatement.class));
         verifyNoMoreInteractions(executorMock);
 
         assertThat(lockService.getHasDatabaseChangeLogLockTable()).isTrue();
@@ -445,6 +691,7 @@ class MongoLockServiceTest {
         // Repeated call should return false and do not enter table creation
         assertThat(lockService.acquireLock()).isFalse();
         assertThat(lockService.hasChangeLogLock()).isFalse();
+        verify(executorMock, times(2)).update(any(ReplaceChangeLogLockStatement.class));
         verifyNoMoreInteractions(executorMock);
     }
 
@@ -452,15 +699,11 @@ class MongoLockServiceTest {
     @Test
     void acquireLockWhenConcurrentLocked() {
 
-        final MongoChangeLogLock lockedLock = new MongoChangeLogLock(1, new Date(), "lockedByMock", FALSE);
-
         Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
         lockService.setDatabase(database);
 
         doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
         doNothing().when(executorMock).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        doReturn(lockService.getConverter().toDocument(lockedLock))
-                .when(executorMock).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
         doReturn(0).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
 
         assertThat(lockService.getHasDatabaseChangeLogLockTable()).isNull();
@@ -469,7 +712,6 @@ class MongoLockServiceTest {
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
         verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        verify(executorMock, times(1)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
         verify(executorMock, times(1)).update(any(ReplaceChangeLogLockStatement.class));
         verifyNoMoreInteractions(executorMock);
 
@@ -495,7 +737,6 @@ class MongoLockServiceTest {
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
         verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        verify(executorMock, times(1)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
         verify(executorMock, times(1)).update(any(ReplaceChangeLogLockStatement.class));
         verifyNoMoreInteractions(executorMock);
 
@@ -512,7 +753,6 @@ class MongoLockServiceTest {
 
         doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
         doNothing().when(executorMock).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        doReturn(null).when(executorMock).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
         doReturn(2).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
 
         assertThat(lockService.getHasDatabaseChangeLogLockTable()).isNull();
@@ -521,7 +761,6 @@ class MongoLockServiceTest {
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
         verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
-        verify(executorMock, times(1)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
         verify(executorMock, times(1)).update(any(ReplaceChangeLogLockStatement.class));
         verifyNoMoreInteractions(executorMock);
 
@@ -553,6 +792,23 @@ class MongoLockServiceTest {
         assertThat(lockService.hasChangeLogLock()).isFalse();
     }
 
+    @SneakyThrows
+    @Test
+    void releaseLostLock() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        lockService.setDatabase(database);
+
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+        // Force released by another instance while held
+        doReturn(1).doReturn(0).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
+
+        assertThat(lockService.acquireLock()).isTrue();
+        assertThatExceptionOfType(LockException.class).isThrownBy(lockService::releaseLock)
+                .withMessageContaining("no longer held");
+
+        assertThat(lockService.hasChangeLogLock()).isFalse();
+    }
+
     @SneakyThrows
     @Test
     void releaseLockOnException() {
@@ -587,16 +843,14 @@ class MongoLockServiceTest {
         lockService.setDatabase(database);
 
         doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
-        doReturn(Arrays.asList(
-                lockService.getConverter().toDocument(lockedLock),
-                (Object) lockService.getConverter().toDocument(unlockedLock)))
-                .when(executorMock).queryForList(any(FindAllStatement.class), eq(Document.class));
+        doAnswer(forEach(Arrays.asList(lockedLock, unlockedLock)))
+                .when(executorMock).queryForEach(any(FindAllAsStatement.class), eq(MongoChangeLogLock.class), any());
 
         DatabaseChangeLogLock[] databaseChangeLogLocks = lockService.listLocks();
         assertThat(databaseChangeLogLocks).hasSize(1).allMatch(l -> ((MongoChangeLogLock) l).getLocked());
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
-        verify(executorMock, times(1)).queryForList(any(FindAllStatement.class), eq(Document.class));
+        verify(executorMock, times(1)).queryForEach(any(FindAllAsStatement.class), eq(MongoChangeLogLock.class), any());
         verifyNoMoreInteractions(executorMock);
 
         assertThat(lockService.getHasDatabaseChangeLogLockTable()).isTrue();
@@ -663,13 +917,11 @@ class MongoLockServiceTest {
 
         doReturn("catalogMock").when(connectionMock).getCatalog();
         doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
-        doReturn(null).when(executorMock).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
         doReturn(1).when(executorMock).update(any(ReplaceChangeLogLockStatement.class));
 
         assertThat(lockService.acquireLock()).isTrue();
 
         verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
-        verify(executorMock, times(1)).queryForObject(any(SelectChangeLogLockStatement.class), eq(Document.class));
         verify(executorMock, times(1)).update(any(ReplaceChangeLogLockStatement.class));
         verifyNoMoreInteractions(executorMock);
 
@@ -717,6 +969,41 @@ class MongoLockServiceTest {
         assertThat(lockService.hasChangeLogLock()).isFalse();
     }
 
+    @SneakyThrows
+    @Test
+    void initUsesTrackingCollectionCache() {
+        Scope.getCurrentScope().getSingleton(ExecutorService.class).setExecutor(EXECUTOR_NAME, database, executorMock);
+        database.setTrackingCollectionCacheTtl(60000L);
+        doReturn("cachedDb").when(connectionMock).getCatalog();
+        doReturn(1L).when(executorMock).queryForLong(any(CountCollectionByNameStatement.class));
+
+        try {
+            lockService.setDatabase(database);
+            lockService.init();
+            verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
+            verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
+
+            // Another invocation in the same JVM skips the startup round trips
+            final MongoLockService otherLockService = new MongoLockService();
+            otherLockService.setDatabase(database);
+            otherLockService.init();
+            assertThat(otherLockService.getHasDatabaseChangeLogLockTable()).isTrue();
+            assertThat(otherLockService.getAdjustedChangeLogLockTable()).isTrue();
+            verify(executorMock, times(1)).queryForLong(any(CountCollectionByNameStatement.class));
+            verify(executorMock, times(1)).execute(any(AdjustChangeLogLockCollectionStatement.class));
+
+            // Dropping the collection invalidates the cache
+            otherLockService.destroy();
+            final MongoLockService nextLockService = new MongoLockService();
+            nextLockService.setDatabase(database);
+            nextLockService.init();
+            verify(executorMock, times(2)).queryForLong(any(CountCollectionByNameStatement.class));
+            verify(executorMock, times(2)).execute(any(AdjustChangeLogLockCollectionStatement.class));
+        } finally {
+            TrackingCollectionCache.clear();
+        }
+    }
+
     @SneakyThrows
     @Test
     void destroyOnException() {
@@ -775,4 +1062,12 @@ class MongoLockServiceTest {
                 .isNotEqualTo(LiquibaseConfiguration.getInstance().getConfiguration(GlobalConfiguration.class).getDatabaseChangeLogLockWaitTime())
                 .isEqualTo(1000L);
     }
+
+    private static Answer<Void> forEach(final List<?> documents) {
+        return invocation -> {
+            final Consumer<Object> consumer = invocation.getArgument(2);
+            documents.forEach(consumer);
+            return null;
+        };
+    }
 }
@@ -1,8 +1,10 @@
 package liquibase.ext.mongodb.lockservice;
 
 import liquibase.ext.AbstractMongoIntegrationTest;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
 
+import static java.lang.Boolean.TRUE;
 import static org.assertj.core.api.Assertions.assertThat;
 
 class ReplaceChangeLogLockStatementIT extends AbstractMongoIntegrationTest {
@@ -29,7 +31,13 @@ class ReplaceChangeLogLockStatementIT extends AbstractMongoIntegrationTest {
     void unlock() {
         final ReplaceChangeLogLockStatement unlockStatement = new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, false);
 
-        assertThat(unlockStatement.update(database)).isOne();
+        // A release never creates the lock
+        assertThat(unlockStatement.update(database)).isZero();
+        assertThat(mongoDatabase.getCollection(LOCK_COLLECTION_NAME).countDocuments()).isZero();
+
+        database.setLockCompareAndSet(TRUE);
+        assertThat(unlockStatement.update(database)).isZero();
+        assertThat(mongoDatabase.getCollection(LOCK_COLLECTION_NAME).countDocuments()).isZero();
     }
 
     @Test
@@ -64,6 +72,83 @@ class ReplaceChangeLogLockStatementIT extends AbstractMongoIntegrationTest {
         assertThat(lockStatement.update(database)).isOne();
     }
 
+    @Test
+    void leaseTakeoverAfterExpiry() throws InterruptedException {
+        final ReplaceChangeLogLockStatement leaseStatement = new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 1L, null);
+
+        assertThat(leaseStatement.update(database)).isOne();
+        Thread.sleep(10L);
+
+        // Only the waiter which read the current fencing token takes over
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 60000L, 0L).update(database)).isZero();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 60000L, 1L).update(database)).isOne();
+
+        // Not expired
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 60000L, 2L).update(database)).isZero();
+
+        // The stale holder can neither renew nor release
+        assertThat(new RenewChangeLogLockStatement(LOCK_COLLECTION_NAME, 60000L, 1L).update(database)).isZero();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, false, 60000L, 1L).update(database)).isZero();
+
+        assertThat(new RenewChangeLogLockStatement(LOCK_COLLECTION_NAME, 60000L, 2L).update(database)).isOne();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, false, 60000L, 2L).update(database)).isOne();
+    }
+
+    @Test
+    void compareAndSet() throws InterruptedException {
+        // Equality filters only, as supported by Amazon DocumentDB
+        database.setLockCompareAndSet(TRUE);
+
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 1L, null).update(database)).isOne();
+        Thread.sleep(10L);
+
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 60000L, 0L).update(database)).isZero();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 60000L, 1L).update(database)).isOne();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 60000L, 2L).update(database)).isZero();
+
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, false, 60000L, 1L).update(database)).isZero();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, false, 60000L, 2L).update(database)).isOne();
+
+        // A shared holder keeps the exclusive lock out
+        assertThat(new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader", 60000L).update(database)).isOne();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database)).isZero();
+        assertThat(new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, false, "reader", 60000L).update(database)).isOne();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database)).isOne();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database)).isZero();
+    }
+
+    @Test
+    void compareAndSetReorderedDocument() {
+        database.setLockCompareAndSet(TRUE);
+
+        // Stored by another tool, fields in another order and an extra one
+        mongoDatabase.getCollection(LOCK_COLLECTION_NAME).insertOne(new Document()
+                .append("note", "restored")
+                .append(MongoChangeLogLock.Fields.lockedBy, "other")
+                .append(MongoChangeLogLock.Fields.locked, false)
+                .append(MongoChangeLogLock.Fields.id, 1));
+
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database)).isOne();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database)).isZero();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, false).update(database)).isOne();
+    }
+
+    @Test
+    void scopedLocksAreIndependent() {
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 0L, null, "teamA").update(database)).isOne();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 0L, null, "teamB").update(database)).isOne();
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database)).isOne();
+
+        // Each scope is still exclusive
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true, 0L, null, "teamA").update(database)).isZero();
+
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, false, 0L, null, "teamA").update(database)).isOne();
+        assertThat(new SelectChangeLogLockStatement(LOCK_COLLECTION_NAME, "teamB").queryForObject(database, Document.class))
+                .returns(true, d -> d.getBoolean(MongoChangeLogLock.Fields.locked));
+        assertThat(new SelectChangeLogLockStatement(LOCK_COLLECTION_NAME, "teamA").queryForObject(database, Document.class))
+                .returns(false, d -> d.getBoolean(MongoChangeLogLock.Fields.locked));
+    }
+
     @Test
     void unlockThenLockByDifferentHost() {
         final ReplaceChangeLogLockStatement unlockStatement = new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, false);
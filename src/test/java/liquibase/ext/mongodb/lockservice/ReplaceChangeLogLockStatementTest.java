@@ -20,13 +20,40 @@ package liquibase.ext.mongodb.lockservice;
  * #L%
  */
 
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.FindOneAndReplaceOptions;
+import liquibase.ext.mongodb.database.MongoConnection;
+import liquibase.ext.mongodb.database.MongoLiquibaseDatabase;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
 
 import static liquibase.ext.mongodb.lockservice.ReplaceChangeLogLockStatement.COMMAND_NAME;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
+@ExtendWith(MockitoExtension.class)
 class ReplaceChangeLogLockStatementTest {
 
+    @Mock
+    protected MongoConnection connectionMock;
+
+    @Mock
+    protected MongoDatabase mongoDatabaseMock;
+
+    @Mock
+    protected MongoCollection<Document> collectionMock;
+
     @Test
     void testToJs() {
         final String collectionName = "testCollection";
@@ -34,4 +61,46 @@ class ReplaceChangeLogLockStatementTest {
         assertThat(replaceChangeLogLockStatement.toJs()).isEqualTo("db.".concat(collectionName).concat(".").concat(COMMAND_NAME).concat("(false);"));
     }
 
+    @Test
+    void lockInSingleRoundTrip() {
+        final MongoLiquibaseDatabase database = database();
+        doReturn(new Document()).when(collectionMock)
+                .findOneAndReplace(any(Bson.class), any(Document.class), any(FindOneAndReplaceOptions.class));
+
+        assertThat(new ReplaceChangeLogLockStatement("lockCollection", true).update(database)).isOne();
+
+        // No existence check before the conditional upsert
+        verify(collectionMock, times(1)).findOneAndReplace(any(Bson.class), any(Document.class), any(FindOneAndReplaceOptions.class));
+        verifyNoMoreInteractions(collectionMock);
+    }
+
+    @Test
+    void lockWhenLockedByAnotherHost() {
+        final MongoLiquibaseDatabase database = database();
+        // The upsert collides with the existing locked document
+        doThrow(new MongoException(11000, "E11000 duplicate key error collection: lockCollection index: _id_"))
+                .when(collectionMock).findOneAndReplace(any(Bson.class), any(Document.class), any(FindOneAndReplaceOptions.class));
+
+        assertThat(new ReplaceChangeLogLockStatement("lockCollection", true).update(database)).isZero();
+
+        verify(collectionMock, times(1)).findOneAndReplace(any(Bson.class), any(Document.class), any(FindOneAndReplaceOptions.class));
+        verifyNoMoreInteractions(collectionMock);
+    }
+
+    @Test
+    void isDuplicateKey() {
+        assertThat(ReplaceChangeLogLockStatement.isDuplicateKey(new MongoException(11000, "duplicate key"))).isTrue();
+        assertThat(ReplaceChangeLogLockStatement.isDuplicateKey(new MongoException(11001, "duplicate key"))).isTrue();
+        // Only the error code is trusted
+        assertThat(ReplaceChangeLogLockStatement.isDuplicateKey(new MongoException(2, "E11000 in a message"))).isFalse();
+    }
+
+    private MongoLiquibaseDatabase database() {
+        final MongoLiquibaseDatabase database = new MongoLiquibaseDatabase();
+        database.setConnection(connectionMock);
+        doReturn(mongoDatabaseMock).when(connectionMock).getMongoDatabase();
+        doReturn(collectionMock).when(mongoDatabaseMock).getCollection("lockCollection");
+        return database;
+    }
+
 }
@@ -0,0 +1,76 @@
+package liquibase.ext.mongodb.lockservice;
+
+import liquibase.ext.AbstractMongoIntegrationTest;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedChangeLogLockStatementIT extends AbstractMongoIntegrationTest {
+
+    private static final String LOCK_COLLECTION_NAME = "lockCollection";
+
+    @Test
+    void sharedLocksCoexist() {
+        assertThat(new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader1", 60000L).update(database)).isOne();
+        assertThat(new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader2", 60000L).update(database)).isOne();
+    }
+
+    @Test
+    void lockWaitsForSharedLocks() {
+        final ReplaceChangeLogLockStatement lockStatement = new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true);
+
+        new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader1", 60000L).update(database);
+        new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader2", 60000L).update(database);
+
+        assertThat(lockStatement.update(database)).isZero();
+        assertThat(new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, false, "reader1", 60000L).update(database)).isOne();
+        assertThat(lockStatement.update(database)).isZero();
+        assertThat(new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, false, "reader2", 60000L).update(database)).isOne();
+        assertThat(lockStatement.update(database)).isOne();
+    }
+
+    @Test
+    void lockIgnoresExpiredSharedLocks() throws InterruptedException {
+        new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader1", 1L).update(database);
+        Thread.sleep(10L);
+
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database)).isOne();
+    }
+
+    @Test
+    void sharedLockWaitsForLock() {
+        new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database);
+
+        assertThat(new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader1", 60000L).update(database)).isZero();
+
+        new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, false).update(database);
+
+        assertThat(new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader1", 60000L).update(database)).isOne();
+    }
+
+    @Test
+    void renewExtendsSharedLock() throws InterruptedException {
+        new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader1", 1L).update(database);
+        assertThat(new RenewSharedChangeLogLockStatement(LOCK_COLLECTION_NAME, "reader1", 60000L, null).update(database)).isOne();
+        Thread.sleep(10L);
+
+        assertThat(new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database)).isZero();
+    }
+
+    @Test
+    void renewFailsOnceSharedLockReleased() {
+        new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader1", 60000L).update(database);
+        new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, false, "reader1", 60000L).update(database);
+
+        assertThat(new RenewSharedChangeLogLockStatement(LOCK_COLLECTION_NAME, "reader1", 60000L, null).update(database)).isZero();
+    }
+
+    @Test
+    void renewFailsOnceExpiredSharedLockTakenOver() throws InterruptedException {
+        new SharedChangeLogLockStatement(LOCK_COLLECTION_NAME, true, "reader1", 1L).update(database);
+        Thread.sleep(10L);
+        new ReplaceChangeLogLockStatement(LOCK_COLLECTION_NAME, true).update(database);
+
+        assertThat(new RenewSharedChangeLogLockStatement(LOCK_COLLECTION_NAME, "reader1", 60000L, null).update(database)).isZero();
+    }
+}
@@ -58,6 +58,37 @@ class BsonUtilsTest {
         assertThat(BsonUtils.orEmptyList("[{id:1}, {id:2}]")).hasSize(2);
     }
 
+    @Test
+    void canonicalHashTest() {
+        assertThat(BsonUtils.canonicalHash(BsonUtils.orEmptyDocument("{a: 1, b: {c: [\"x\", {d: 2, e: 3}]}}")))
+                .hasSize(64)
+                .isEqualTo(BsonUtils.canonicalHash(BsonUtils.orEmptyDocument("{b: {c: [\"x\", {e: 3, d: NumberLong(2)}]}, a: 1.0}")))
+                .isNotEqualTo(BsonUtils.canonicalHash(BsonUtils.orEmptyDocument("{a: 1, b: {c: [{d: 2, e: 3}, \"x\"]}}")));
+    }
+
+    @Test
+    void validatorHashTest() {
+        final Document validator = BsonUtils.orEmptyDocument("{$jsonSchema: {bsonType: \"object\", required: [\"_id\"]}}");
+        final Document command = new Document("collMod", "collection").append("validator", validator)
+                .append("validationLevel", "strict").append("validationAction", "error");
+
+        // Server defaults apply when absent
+        assertThat(BsonUtils.validatorHash(new Document("validator", validator))).isEqualTo(BsonUtils.validatorHash(command));
+        assertThat(BsonUtils.validatorHash(new Document("validator", validator).append("validationAction", "warn")))
+                .isNotEqualTo(BsonUtils.validatorHash(command));
+        assertThat(BsonUtils.validatorHash(new Document())).isNotEqualTo(BsonUtils.validatorHash(command));
+    }
+
+    @Test
+    void indexHashTest() {
+        final Document keys = BsonUtils.orEmptyDocument("{fileName: 1, author: 1, id: 1}");
+
+        assertThat(BsonUtils.indexHash(keys, true))
+                .isEqualTo(BsonUtils.indexHash(BsonUtils.orEmptyDocument("{fileName: 1.0, author: NumberLong(1), id: 1}"), true))
+                .isNotEqualTo(BsonUtils.indexHash(keys, false))
+                .isNotEqualTo(BsonUtils.indexHash(BsonUtils.orEmptyDocument("{author: 1, fileName: 1, id: 1}"), true));
+    }
+
     @Test
     @Disabled
     void uuidParseTest() {
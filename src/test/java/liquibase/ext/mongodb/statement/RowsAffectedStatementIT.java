@@ -1,8 +1,10 @@
 package liquibase.ext.mongodb.statement;
 
+import com.mongodb.client.model.Filters;
 import liquibase.Scope;
 import liquibase.executor.jvm.JdbcExecutor;
 import liquibase.ext.AbstractMongoIntegrationTest;
+import liquibase.ext.mongodb.change.InsertManyChange;
 import lombok.SneakyThrows;
 import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,6 +15,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.util.Collections.emptyList;
 import static liquibase.ext.mongodb.TestUtils.COLLECTION_NAME_1;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -103,6 +106,7 @@ class RowsAffectedStatementIT extends AbstractMongoIntegrationTest {
             insertStatement.execute(database);
 
             assertThat(rowsAffected.get()).isEqualTo(2);
+            assertThat(database.getRowsAffectedCounters().getCollections()).containsEntry(collectionName, 2L);
         });
     }
 
@@ -143,4 +147,69 @@ class RowsAffectedStatementIT extends AbstractMongoIntegrationTest {
             assertThat(rowsAffected.get()).isEqualTo(2);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    @SneakyThrows
+    void shouldTrackRowsAffectedOfExecutorExceptHistoryWrites() {
+        Map<String, Object> scopeValues = new HashMap<>();
+        scopeValues.put(JdbcExecutor.ROWS_AFFECTED_SCOPE_KEY, rowsAffected);
+        scopeValues.put(JdbcExecutor.SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY, true);
+
+        Scope.child(scopeValues, () -> {
+            executor.execute(new InsertOneStatement(collectionName, new Document("test", "value1")));
+            assertThat(rowsAffected.get()).isEqualTo(1);
+
+            executor.executeTracking(new InsertOneStatement(collectionName, new Document("test", "value2")));
+            assertThat(rowsAffected.get()).isEqualTo(1);
+        });
+        assertThat(database.getRowsAffectedCounters().getCollections()).containsEntry(collectionName, 1L);
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldTrackRowsAffectedForCoalescedWrites() {
+        database.setCoalesceWrites(true);
+        final AtomicInteger otherRowsAffected = new AtomicInteger(0);
+        executor.execute(new CreateCollectionStatement(collectionName));
+
+        Map<String, Object> scopeValues = new HashMap<>();
+        scopeValues.put(JdbcExecutor.ROWS_AFFECTED_SCOPE_KEY, rowsAffected);
+        scopeValues.put(JdbcExecutor.SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY, true);
+
+        Scope.child(scopeValues, () -> {
+            executor.execute(new InsertOneStatement(collectionName, new Document("test", "value1")), emptyList());
+            executor.execute(new InsertManyStatement(collectionName,
+                    Arrays.asList(new Document("test", "value2"), new Document("test", "value3"))), emptyList());
+
+            // Only buffered so far
+            assertThat(mongoDatabase.getCollection(collectionName).countDocuments()).isZero();
+
+            // Sent at the end of the change, still in its scope
+            final InsertManyChange change = new InsertManyChange();
+            change.setCollectionName(collectionName);
+            change.setDocuments("[{test: \"value4\"}]");
+            executor.execute(change, emptyList());
+            assertThat(rowsAffected.get()).isEqualTo(4);
+            assertThat(mongoDatabase.getCollection(collectionName).countDocuments()).isEqualTo(4L);
+
+            executor.execute(new DeleteManyStatement(collectionName, Filters.eq("test", "value1")), emptyList());
+        });
+
+        Map<String, Object> otherScopeValues = new HashMap<>();
+        otherScopeValues.put(JdbcExecutor.ROWS_AFFECTED_SCOPE_KEY, otherRowsAffected);
+        otherScopeValues.put(JdbcExecutor.SHOULD_UPDATE_ROWS_AFFECTED_SCOPE_KEY, true);
+
+        Scope.child(otherScopeValues, () -> {
+            executor.execute(new InsertOneStatement(collectionName, new Document("test", "value5")), emptyList());
+        });
+
+        // Another counter in scope sends the previous writes
+        assertThat(rowsAffected.get()).isEqualTo(4);
+        assertThat(mongoDatabase.getCollection(collectionName).countDocuments()).isEqualTo(3L);
+
+        database.commit();
+        assertThat(otherRowsAffected.get()).isEqualTo(1);
+        assertThat(mongoDatabase.getCollection(collectionName).countDocuments()).isEqualTo(4L);
+        assertThat(database.getRowsAffectedCounters().getCollections()).containsEntry(collectionName, 5L);
+    }
+}
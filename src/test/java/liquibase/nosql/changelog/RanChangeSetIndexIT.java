@@ -0,0 +1,82 @@
+package liquibase.nosql.changelog;
+
+import liquibase.Scope;
+import liquibase.change.CheckSum;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.RanChangeSet;
+import liquibase.ext.mongodb.changelog.MongoRanChangeSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the indexed lookup against the linear scan of the core history service it replaces.
+ * Timings are logged, only the index being faster on large histories is asserted to keep the test stable.
+ */
+class RanChangeSetIndexIT {
+
+    private static final int LOOKUPS = 200;
+
+    @Test
+    void lookup1k() {
+        measure(1_000);
+    }
+
+    @Test
+    void lookup10k() {
+        assertThat(measure(10_000)).isLessThan(1.0d);
+    }
+
+    @Test
+    void lookup100k() {
+        assertThat(measure(100_000)).isLessThan(1.0d);
+    }
+
+    /**
+     * @return the indexed lookup time relative to the linear scan
+     */
+    private double measure(final int historySize) {
+        final List<RanChangeSet> history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            history.add(new MongoRanChangeSet("liquibase/changelog-" + (i % 300) + ".xml", "cs" + i, "author" + (i % 20),
+                    CheckSum.compute("md5sum" + i), new Date(), null, ChangeSet.ExecType.EXECUTED, "description", null,
+                    null, null, null, "deploymentId", i, "liquibase"));
+        }
+        final List<ChangeSet> changeSets = new ArrayList<>(LOOKUPS);
+        for (int i = 0; i < LOOKUPS; i++) {
+            // Spread over the history, with a missing changeSet scanning all of it
+            final int n = i == 0 ? historySize : (int) ((long) i * historySize / LOOKUPS);
+            changeSets.add(new ChangeSet("cs" + n, "author" + (n % 20), false, false,
+                    "liquibase/changelog-" + (n % 300) + ".xml", null, null, null));
+        }
+
+        final long indexStart = System.nanoTime();
+        final RanChangeSetIndex index = new RanChangeSetIndex(history);
+        final List<RanChangeSet> indexed = lookup(changeSets, index::find);
+        final long indexNanos = System.nanoTime() - indexStart;
+
+        final long linearStart = System.nanoTime();
+        final List<RanChangeSet> scanned = lookup(changeSets,
+                changeSet -> history.stream().filter(r -> r.isSameAs(changeSet)).findFirst().orElse(null));
+        final long linearNanos = System.nanoTime() - linearStart;
+
+        assertThat(indexed).containsExactlyElementsOf(scanned);
+        assertThat(indexed.get(0)).isNull();
+
+        Scope.getCurrentScope().getLog(getClass()).info(String.format(
+                "%d lookups in %d entries: index (built included) %d µs, linear scan %d µs",
+                LOOKUPS, historySize, indexNanos / 1_000, linearNanos / 1_000));
+        return (double) indexNanos / linearNanos;
+    }
+
+    private static List<RanChangeSet> lookup(final List<ChangeSet> changeSets, final Function<ChangeSet, RanChangeSet> find) {
+        final List<RanChangeSet> found = new ArrayList<>(changeSets.size());
+        changeSets.forEach(changeSet -> found.add(find.apply(changeSet)));
+        return found;
+    }
+}
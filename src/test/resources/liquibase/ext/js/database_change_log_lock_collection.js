@@ -27,8 +27,8 @@ db.createCollection("databaseChangeLogLock",
             required: ["_id", "locked"],
             properties: {
                 _id: {
-                    bsonType: "int",
-                    description: "Unique lock identifier"
+                    bsonType: ["int", "string"],
+                    description: "Unique lock identifier, 1 or the lock scope"
                 },
                 locked: {
                     bsonType: "bool",